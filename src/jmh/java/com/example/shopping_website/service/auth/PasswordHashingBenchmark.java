@@ -0,0 +1,114 @@
+package com.example.shopping_website.service.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 密码哈希基准测试（mvn -P jmh test-compile exec:exec，见 pom.xml）
+ * - hashCost：单次校验耗时（直接调用，不经过线程池），用于选择 BCrypt 强度
+ * - poolThroughput：大量请求线程同时登录时经过有界线程池的校验吞吐量（-t 调整请求线程数）
+ * 参数默认取 application.properties 中的配置，可用 -p bcryptStrength=12 等覆盖
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PasswordHashingBenchmark {
+
+    private static final String CONFIGURED = "configured";
+
+    private static final String PASSWORD = "benchmark-password-123";
+
+    @Param(CONFIGURED)
+    private String algorithm;
+
+    @Param(CONFIGURED)
+    private String bcryptStrength;
+
+    @Param(CONFIGURED)
+    private String threads;
+
+    @Param(CONFIGURED)
+    private String queueCapacity;
+
+    private PasswordHashingService service;
+
+    private PasswordEncoder pooledEncoder;
+
+    private PasswordEncoder directEncoder;
+
+    private String encodedPassword;
+
+    @Setup
+    public void setUp() throws IOException {
+        Properties configured = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        service = new PasswordHashingService();
+        ReflectionTestUtils.setField(service, "algorithm",
+            value(algorithm, configured, "app.security.password.algorithm", "bcrypt"));
+        ReflectionTestUtils.setField(service, "bcryptStrength",
+            Integer.parseInt(value(bcryptStrength, configured, "app.security.password.bcrypt-strength", "10")));
+        ReflectionTestUtils.setField(service, "threads",
+            Integer.parseInt(value(threads, configured, "app.security.password.threads", "0")));
+        ReflectionTestUtils.setField(service, "queueCapacity",
+            Integer.parseInt(value(queueCapacity, configured, "app.security.password.queue-capacity", "200")));
+        ReflectionTestUtils.setField(service, "timeoutMillis",
+            Long.parseLong(configured.getProperty("app.security.password.timeout-ms", "5000")));
+        service.start();
+
+        pooledEncoder = service.getPasswordEncoder();
+        directEncoder = (PasswordEncoder) ReflectionTestUtils.getField(service, "delegate");
+        encodedPassword = pooledEncoder.encode(PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        // 排队满、超时的次数也是吞吐量结果的一部分
+        System.out.println();
+        System.out.println("密码哈希统计: " + service.getMetrics());
+        service.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(1)
+    public boolean hashCost() {
+        return directEncoder.matches(PASSWORD, encodedPassword);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(32)
+    public boolean poolThroughput() {
+        try {
+            return pooledEncoder.matches(PASSWORD, encodedPassword);
+        } catch (RuntimeException e) {
+            // 排队已满或等待超时，按登录失败处理
+            return false;
+        }
+    }
+
+    private static String value(String param, Properties configured, String key, String defaultValue) {
+        return CONFIGURED.equals(param) ? configured.getProperty(key, defaultValue) : param;
+    }
+}
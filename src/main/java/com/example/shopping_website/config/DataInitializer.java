@@ -7,8 +7,11 @@ import com.example.shopping_website.repository.UserRepository;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @Component
@@ -26,7 +29,9 @@ public class DataInitializer implements CommandLineRunner {
         this.passwordEncoder = passwordEncoder;
     }
     
+    // 整个初始化在一个事务中完成，插入语句按批提交
     @Override
+    @Transactional
     public void run(String... args) throws Exception {
         System.out.println("=== 开始初始化数据 ===");
         
@@ -52,19 +57,21 @@ public class DataInitializer implements CommandLineRunner {
         Role roleAdmin = new Role();
         roleAdmin.setName(Role.RoleName.ROLE_ADMIN);
         
-        // 保存角色
+        // 保存角色（缺少的角色一次批量插入）
+        List<Role> missingRoles = new ArrayList<>();
         if (roleRepository.findByName(Role.RoleName.ROLE_USER).isEmpty()) {
-            roleRepository.save(roleUser);
+            missingRoles.add(roleUser);
             System.out.println("✅ 普通用户角色已创建");
         }
         if (roleRepository.findByName(Role.RoleName.ROLE_SELLER).isEmpty()) {
-            roleRepository.save(roleSeller);
+            missingRoles.add(roleSeller);
             System.out.println("✅ 卖家角色已创建");
         }
         if (roleRepository.findByName(Role.RoleName.ROLE_ADMIN).isEmpty()) {
-            roleRepository.save(roleAdmin);
+            missingRoles.add(roleAdmin);
             System.out.println("✅ 管理员角色已创建");
         }
+        roleRepository.saveAll(missingRoles);
     }
     
     private void initializeUsers() {
@@ -0,0 +1,62 @@
+package com.example.shopping_website.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 主键生成方式从 IDENTITY 切换到表生成器（id_generators）后的迁移
+ * 启动时（建表之后、任何插入之前）把每个生成器的 next_val 提升到现有最大ID之上，
+ * 避免新分配的主键与 IDENTITY 时期的旧数据冲突；只会调大，不会调小，可重复执行
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdGeneratorMigration {
+    
+    // 预留余量，需大于两倍的最大分配步长（pooled 优化器分配的区间在 next_val 之前）
+    private static final long HEADROOM = 101;
+    
+    // 生成器名称（@TableGenerator 的 pkColumnValue）-> 表名
+    private static final Map<String, String> GENERATORS = new LinkedHashMap<>();
+    
+    static {
+        GENERATORS.put("roles", "roles");
+        GENERATORS.put("users", "users");
+        GENERATORS.put("products", "products");
+        GENERATORS.put("cart_items", "cart_items");
+        GENERATORS.put("stock_buckets", "stock_buckets");
+    }
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @PostConstruct
+    public void migrate() {
+        for (Map.Entry<String, String> entry : GENERATORS.entrySet()) {
+            String generator = entry.getKey();
+            Long maxId = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM " + entry.getValue(), Long.class);
+            if (maxId == null || maxId == 0) {
+                continue;
+            }
+            long floor = maxId + HEADROOM;
+            
+            int updated = jdbcTemplate.update(
+                "UPDATE id_generators SET next_val = ? WHERE gen_name = ? AND next_val < ?",
+                floor, generator, floor);
+            int inserted = jdbcTemplate.update(
+                "INSERT INTO id_generators (gen_name, next_val) SELECT ?, ? FROM DUAL " +
+                "WHERE NOT EXISTS (SELECT 1 FROM id_generators WHERE gen_name = ?)",
+                generator, floor, generator);
+            
+            if (updated + inserted > 0) {
+                System.out.println("✅ 主键生成器 " + generator + " 起始值已调整为 " + floor + "（现有最大ID: " + maxId + "）");
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.shopping_website.config;
+
+import com.example.shopping_website.service.auth.LoginThrottle;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * 登录限流过滤器，放在 UsernamePasswordAuthenticationFilter 之前
+ * 只处理 POST /login：超过限制时直接跳回登录页，不进入认证（不查询用户、不计算密码哈希）
+ * 来源IP由 LoginThrottle 按受信任代理解析 X-Forwarded-For（见 app.security.login-throttle.trusted-proxies）
+ * 只注册在 Spring Security 过滤器链中，不声明为 Bean，避免被 Servlet 容器重复注册
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    private final LoginThrottle loginThrottle;
+
+    private final String loginProcessingUrl;
+
+    public LoginThrottleFilter(LoginThrottle loginThrottle, String loginProcessingUrl) {
+        this.loginThrottle = loginThrottle;
+        this.loginProcessingUrl = loginProcessingUrl;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+            || !loginProcessingUrl.equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String forwardedFor = String.join(",", Collections.list(request.getHeaders(FORWARDED_FOR)));
+        String clientIp = loginThrottle.resolveClientIp(request.getRemoteAddr(), forwardedFor);
+        long retryAfter = loginThrottle.tryAcquire(clientIp, request.getParameter("username"));
+        if (retryAfter > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.sendRedirect(request.getContextPath() + loginProcessingUrl + "?throttled=" + retryAfter);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -1,13 +1,22 @@
 package com.example.shopping_website.config;
 
+import com.example.shopping_website.service.auth.LoginThrottle;
+import com.example.shopping_website.service.auth.PasswordHashingService;
+import com.example.shopping_website.service.auth.SignedCookieSecurityContextRepository;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.DelegatingSecurityContextRepository;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
 
 @Configuration
 @EnableWebSecurity
@@ -15,7 +24,9 @@ import org.springframework.security.web.SecurityFilterChain;
 public class SecurityConfig {
     
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, LoginThrottle loginThrottle,
+                                                   SecurityContextRepository securityContextRepository,
+                                                   SignedCookieSecurityContextRepository signedCookieRepository) throws Exception {
         http
             .authorizeHttpRequests(authz -> authz
                 // 允许公开访问的路径
@@ -65,19 +76,42 @@ public class SecurityConfig {
                 .logoutUrl("/logout")
                 .logoutSuccessUrl("/login?logout=true")
                 .invalidateHttpSession(true)
-                .deleteCookies("JSESSIONID")
+                .deleteCookies("JSESSIONID", signedCookieRepository.getCookieName())
                 .permitAll()
             )
             .exceptionHandling(exception -> exception
                 .accessDeniedPage("/access-denied")
             )
+            // 与 CurrentUser 共用，资料修改后更新会话中的认证主体
+            .securityContext(context -> context
+                .securityContextRepository(securityContextRepository)
+            )
+            // 无状态会话模式下 Spring Security 不创建也不读取 HttpSession
+            .sessionManagement(session -> session
+                .sessionCreationPolicy(signedCookieRepository.isEnabled()
+                    ? SessionCreationPolicy.STATELESS
+                    : SessionCreationPolicy.IF_REQUIRED)
+            )
+            // 登录限流在认证（密码哈希）之前执行
+            .addFilterBefore(new LoginThrottleFilter(loginThrottle, "/login"), UsernamePasswordAuthenticationFilter.class)
             .csrf(csrf -> csrf.disable());
         
         return http.build();
     }
     
+    // 认证信息保存在 HttpSession 中，或启用无状态会话时保存在签名 Cookie 中（见 app.security.stateless.*）
+    @Bean
+    @Primary
+    public SecurityContextRepository securityContextRepository(SignedCookieSecurityContextRepository signedCookieRepository) {
+        return new DelegatingSecurityContextRepository(
+            new RequestAttributeSecurityContextRepository(),
+            signedCookieRepository.isEnabled() ? signedCookieRepository : new HttpSessionSecurityContextRepository()
+        );
+    }
+    
+    // 算法、强度和哈希线程池见 app.security.password.*
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(PasswordHashingService passwordHashingService) {
+        return passwordHashingService.getPasswordEncoder();
     }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.example.shopping_website.config;
+
+import com.example.shopping_website.service.session.SessionRepository;
+import com.example.shopping_website.service.session.SessionRepositoryFilter;
+import jakarta.servlet.DispatcherType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * 外部会话存储（app.session.store=jdbc）：注册替换 HttpSession 的过滤器
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.session.store", havingValue = "jdbc")
+public class SessionStoreConfig {
+    
+    @Bean
+    public FilterRegistrationBean<SessionRepositoryFilter> sessionRepositoryFilter(SessionRepository sessionRepository) {
+        FilterRegistrationBean<SessionRepositoryFilter> registration =
+            new FilterRegistrationBean<>(new SessionRepositoryFilter(sessionRepository));
+        // 必须在 Spring Security 过滤器链之前，安全上下文和闪存属性才会保存到外部会话中
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 50);
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC, DispatcherType.ERROR);
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+}
\ No newline at end of file
@@ -1,24 +1,30 @@
 package com.example.shopping_website.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.WebProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+import java.time.Duration;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     
-    @Value("${app.upload.dir:/home/shopping-website/uploads}")
-    private String uploadDir;
+    @Autowired
+    private WebProperties webProperties;
     
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 映射上传目录到 /uploads/**
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadDir + "/");
+        // 上传目录 /uploads/** 由 UploadResourceController 处理（ETag、Range、零拷贝发送）
         
-        // 映射静态资源
+        // 映射静态资源：缓存时间与 spring.web.resources.cache.period 一致，存在 .br/.gz 预压缩文件时直接返回
+        Duration cachePeriod = webProperties.getResources().getCache().getPeriod();
         registry.addResourceHandler("/static/**")
-                .addResourceLocations("classpath:/static/");
+                .addResourceLocations("classpath:/static/")
+                .setCachePeriod(cachePeriod != null ? (int) cachePeriod.getSeconds() : 0)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
     }
 }
\ No newline at end of file
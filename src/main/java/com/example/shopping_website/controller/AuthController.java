@@ -8,6 +8,7 @@ import com.example.shopping_website.model.User;
 import com.example.shopping_website.service.CartService;
 import com.example.shopping_website.service.ProductService;
 import com.example.shopping_website.service.UserService;
+import com.example.shopping_website.service.auth.CurrentUser;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
@@ -33,6 +34,14 @@ public class AuthController {
     @Autowired
     private CartService cartService;  // 添加 CartService 依赖
     
+    @Autowired
+    private CurrentUser currentUser;
+    
+    // 获取当前用户（读用户缓存），未登录时返回 null
+    private User getCurrentUserOrNull() {
+        return currentUser.getUserOrNull();
+    }
+    
     @GetMapping("/login")
     public String loginPage(Model model) {
         model.addAttribute("pageTitle", "登录");
@@ -97,8 +106,8 @@ public class AuthController {
                 return "redirect:/login";
             }
             
-            // 从数据库获取用户信息
-            User user = userService.getUserByUsername(username).orElse(null);
+            // 获取用户信息（按认证主体中的用户ID读缓存）
+            User user = getCurrentUserOrNull();
             
             if (user == null) {
                 System.out.println("用户未找到: " + username);
@@ -162,8 +171,7 @@ public class AuthController {
                 return "redirect:/login";
             }
             
-            String username = auth.getName();
-            User user = userService.getUserByUsername(username).orElse(null);
+            User user = getCurrentUserOrNull();
             
             if (user == null) {
                 model.addAttribute("error", "用户信息不存在");
@@ -199,12 +207,8 @@ public class AuthController {
                                BindingResult result,
                                Model model) {
         try {
-            // 获取当前认证信息
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            
             // 获取当前用户
-            User currentUser = userService.getUserByUsername(username).orElse(null);
+            User currentUser = getCurrentUserOrNull();
             if (currentUser == null) {
                 return "redirect:/login";
             }
@@ -217,7 +221,10 @@ public class AuthController {
             }
             
             // 更新用户信息
-            User updatedUser = userService.updateUser(currentUser.getId(), updateDto);
+            userService.updateUser(currentUser.getId(), updateDto);
+            
+            // 用户名可能已修改，更新会话中的认证主体
+            userService.getUserById(currentUser.getId()).ifPresent(this.currentUser::refresh);
             
             // 更新成功后重定向到个人资料页
             model.addAttribute("success", "资料更新成功！");
@@ -225,9 +232,7 @@ public class AuthController {
             
         } catch (RuntimeException e) {
             // 获取当前用户以显示在错误页面
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            User currentUser = userService.getUserByUsername(username).orElse(null);
+            User currentUser = getCurrentUserOrNull();
             
             model.addAttribute("error", e.getMessage());
             model.addAttribute("currentUser", currentUser);
@@ -240,9 +245,7 @@ public class AuthController {
             e.printStackTrace();
             
             // 获取当前用户以显示在错误页面
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            User currentUser = userService.getUserByUsername(username).orElse(null);
+            User currentUser = getCurrentUserOrNull();
             
             model.addAttribute("error", "服务器内部错误: " + e.getMessage());
             model.addAttribute("currentUser", currentUser);
@@ -264,8 +267,7 @@ public class AuthController {
                 return "redirect:/login";
             }
             
-            String username = auth.getName();
-            User user = userService.getUserByUsername(username).orElse(null);
+            User user = getCurrentUserOrNull();
             
             if (user == null) {
                 model.addAttribute("error", "用户信息不存在");
@@ -301,7 +303,7 @@ public class AuthController {
             String username = auth.getName();
             
             // 获取当前用户
-            User currentUser = userService.getUserByUsername(username).orElse(null);
+            User currentUser = getCurrentUserOrNull();
             if (currentUser == null) {
                 return "redirect:/login";
             }
@@ -340,9 +342,7 @@ public class AuthController {
             
         } catch (RuntimeException e) {
             // 获取当前用户以显示在错误页面
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            User currentUser = userService.getUserByUsername(username).orElse(null);
+            User currentUser = getCurrentUserOrNull();
             
             model.addAttribute("error", e.getMessage());
             model.addAttribute("currentUser", currentUser);
@@ -355,9 +355,7 @@ public class AuthController {
             e.printStackTrace();
             
             // 获取当前用户以显示在错误页面
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            User currentUser = userService.getUserByUsername(username).orElse(null);
+            User currentUser = getCurrentUserOrNull();
             
             model.addAttribute("error", "服务器内部错误: " + e.getMessage());
             model.addAttribute("currentUser", currentUser);
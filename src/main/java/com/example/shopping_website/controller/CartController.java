@@ -1,18 +1,23 @@
 package com.example.shopping_website.controller;
 
-import com.example.shopping_website.model.CartItem;
+import com.example.shopping_website.dto.CartLineDto;
+import com.example.shopping_website.dto.CartSummary;
 import com.example.shopping_website.model.User;
 import com.example.shopping_website.service.CartService;
-import com.example.shopping_website.service.UserService;
+import com.example.shopping_website.service.OrderService;
+import com.example.shopping_website.service.auth.CurrentUser;
+import com.example.shopping_website.service.checkout.CheckoutPipeline;
+import com.example.shopping_website.service.checkout.CheckoutTicket;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/cart")
@@ -22,7 +27,13 @@ public class CartController {
     private CartService cartService;
     
     @Autowired
-    private UserService userService;
+    private CurrentUser currentUser;
+    
+    @Autowired
+    private CheckoutPipeline checkoutPipeline;
+    
+    @Autowired
+    private OrderService orderService;
     
     // 查看购物车
     @GetMapping
@@ -30,17 +41,15 @@ public class CartController {
         try {
             System.out.println("=== 开始查看购物车 ===");
             
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            System.out.println("当前用户名: " + username);
-            
-            User user = userService.getUserByUsername(username)
-                .orElseThrow(() -> new RuntimeException("用户未登录"));
-            
+            // 用户资料来自认证主体对应的用户缓存
+            User user = currentUser.getUser();
+            System.out.println("当前用户名: " + user.getUsername());
             System.out.println("用户ID: " + user.getId());
             
-            List<CartItem> cartItems = cartService.getCartItemsByUser(user.getId());
-            Double totalPrice = cartService.calculateTotalPrice(user.getId());
+            // 购物车行、总价和总件数来自同一份汇总
+            CartSummary summary = cartService.getCartSummary(user.getId());
+            List<CartLineDto> cartItems = summary.getLines();
+            Double totalPrice = summary.getTotalPrice();
             
             System.out.println("购物车商品数量: " + cartItems.size());
             System.out.println("购物车总价: " + totalPrice);
@@ -50,10 +59,7 @@ public class CartController {
             model.addAttribute("user", user);
             model.addAttribute("pageTitle", "购物车 - Shopping Mall");
             model.addAttribute("currentUser", user);
-            int totalItemsCount = cartItems.stream()
-            .mapToInt(CartItem::getQuantity)
-            .sum();
-            model.addAttribute("totalItemsCount", totalItemsCount);
+            model.addAttribute("totalItemsCount", summary.getTotalQuantity());
             
             return "cart/cart";
             
@@ -75,23 +81,18 @@ public class CartController {
             System.out.println("商品ID: " + productId);
             System.out.println("数量: " + quantity);
             
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            System.out.println("当前用户名: " + username);
-            
-            if ("anonymousUser".equals(username)) {
+            if (currentUser.getPrincipal() == null) {
                 System.out.println("用户未登录，重定向到登录页");
                 redirectAttributes.addFlashAttribute("error", "请先登录");
                 return "redirect:/login";
             }
             
-            User user = userService.getUserByUsername(username)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-            
-            System.out.println("用户ID: " + user.getId());
+            // 用户ID直接取自认证主体，不查询用户表
+            Long userId = currentUser.getId();
+            System.out.println("用户ID: " + userId);
             
             // 添加商品到购物车
-            cartService.addToCart(user.getId(), productId, quantity);
+            cartService.addToCart(userId, productId, quantity);
             
             // 添加成功消息
             redirectAttributes.addFlashAttribute("success", "商品已成功添加到购物车！");
@@ -108,16 +109,16 @@ public class CartController {
     }
     
     // 更新购物车商品数量
-    @PostMapping("/update/{cartItemId}")
-    public String updateQuantity(@PathVariable Long cartItemId,
+    @PostMapping("/update/{productId}")
+    public String updateQuantity(@PathVariable Long productId,
                                 @RequestParam Integer quantity,
                                 RedirectAttributes redirectAttributes) {
         try {
             System.out.println("=== 开始更新购物车商品数量 ===");
-            System.out.println("购物车项ID: " + cartItemId);
+            System.out.println("商品ID: " + productId);
             System.out.println("新数量: " + quantity);
             
-            cartService.updateCartItemQuantity(cartItemId, quantity);
+            cartService.updateCartItemQuantity(currentUser.getId(), productId, quantity);
             redirectAttributes.addFlashAttribute("success", "购物车已更新");
             System.out.println("更新成功");
             
@@ -130,14 +131,14 @@ public class CartController {
     }
     
     // 从购物车移除商品
-    @PostMapping("/remove/{cartItemId}")
-    public String removeItem(@PathVariable Long cartItemId,
+    @PostMapping("/remove/{productId}")
+    public String removeItem(@PathVariable Long productId,
                             RedirectAttributes redirectAttributes) {
         try {
             System.out.println("=== 开始移除购物车商品 ===");
-            System.out.println("购物车项ID: " + cartItemId);
+            System.out.println("商品ID: " + productId);
             
-            cartService.removeFromCart(cartItemId);
+            cartService.removeFromCart(currentUser.getId(), productId);
             redirectAttributes.addFlashAttribute("success", "商品已从购物车移除");
             System.out.println("移除成功");
             
@@ -155,13 +156,7 @@ public class CartController {
         try {
             System.out.println("=== 开始清空购物车 ===");
             
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            
-            User user = userService.getUserByUsername(username)
-                .orElseThrow(() -> new RuntimeException("用户未登录"));
-            
-            cartService.clearCart(user.getId());
+            cartService.clearCart(currentUser.getId());
             redirectAttributes.addFlashAttribute("success", "购物车已清空");
             System.out.println("清空成功");
             
@@ -179,42 +174,27 @@ public class CartController {
         try {
             System.out.println("=== 开始结算购物车 ===");
             
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String username = auth.getName();
-            System.out.println("当前用户名: " + username);
-            
-            User user = userService.getUserByUsername(username)
-                .orElseThrow(() -> new RuntimeException("用户未登录"));
-            
-            System.out.println("用户ID: " + user.getId());
+            Long userId = currentUser.getId();
+            System.out.println("用户ID: " + userId);
             
             // 检查购物车是否为空
-            List<CartItem> cartItems = cartService.getCartItemsByUser(user.getId());
-            if (cartItems == null || cartItems.isEmpty()) {
+            CartSummary summary = cartService.getCartSummary(userId);
+            if (summary.isEmpty()) {
                 redirectAttributes.addFlashAttribute("error", "购物车为空，无法结算");
                 System.out.println("购物车为空");
                 return "redirect:/cart";
             }
             
-            // 计算总件数和总价（在结算前计算，用于显示）
-            int totalItemsCount = cartItems.stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
-            Double totalPrice = cartService.calculateTotalPrice(user.getId());
-            
-            System.out.println("结算信息 - 总件数: " + totalItemsCount + " 件");
-            System.out.println("结算总价: ¥" + totalPrice);
-            System.out.println("商品种类: " + cartItems.size() + " 种");
+            // 同步扣减库存并提交结算单，购物车清理等后续步骤由后台完成
+            CheckoutTicket ticket = checkoutPipeline.submit(userId);
             
-            // 关键修改：调用结算方法，扣减库存 - 不再接收返回值
-            cartService.checkoutAndUpdateStock(user.getId());
+            System.out.println("结算单已提交 - 单号: " + ticket.getOrderNo() +
+                               ", 总件数: " + ticket.getTotalQuantity() + " 件, 总价: ¥" + ticket.getTotalPrice());
             
-            // 添加成功消息（使用我们计算好的值）
             redirectAttributes.addFlashAttribute("success", 
-                "结算成功！共结算 " + totalItemsCount + " 件商品，总计 ¥" + 
-                String.format("%.2f", totalPrice));
-            
-            System.out.println("结算成功，库存已更新，购物车已清空");
+                "库存已锁定，订单 " + ticket.getOrderNo() + " 正在处理：共 " + ticket.getTotalQuantity() +
+                " 件商品，总计 ¥" + String.format("%.2f", ticket.getTotalPrice()));
+            redirectAttributes.addFlashAttribute("checkoutOrderNo", ticket.getOrderNo());
             
             return "redirect:/cart";
             
@@ -225,4 +205,55 @@ public class CartController {
             return "redirect:/cart";
         }
     }
+    
+    // 查询结算单处理状态（页面轮询）
+    @GetMapping("/checkout/status/{orderNo}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> checkoutStatus(@PathVariable String orderNo) {
+        if (currentUser.getPrincipal() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Long userId = currentUser.getId();
+        
+        CheckoutTicket ticket = checkoutPipeline.getTicket(orderNo, userId);
+        if (ticket == null) {
+            // 结算单状态已过期或不在本节点，按已保存的订单状态返回
+            return orderService.getOrderByOrderNo(orderNo)
+                .filter(order -> order.getUser().getId().equals(userId))
+                .map(order -> {
+                    Map<String, Object> status = new LinkedHashMap<>();
+                    status.put("orderNo", order.getOrderNo());
+                    switch (order.getStatus()) {
+                        case PLACED -> {
+                            status.put("status", CheckoutTicket.Status.COMPLETED);
+                            status.put("finished", true);
+                            status.put("message", "订单 " + order.getOrderNo() + " 已完成");
+                        }
+                        case FAILED -> {
+                            status.put("status", CheckoutTicket.Status.FAILED);
+                            status.put("finished", true);
+                            status.put("message", "结算处理失败，库存已归还，商品仍保留在购物车中");
+                        }
+                        default -> {
+                            status.put("status", CheckoutTicket.Status.PENDING);
+                            status.put("finished", false);
+                            status.put("message", "订单 " + order.getOrderNo() + " 正在处理");
+                        }
+                    }
+                    status.put("totalQuantity", order.getTotalQuantity());
+                    status.put("totalPrice", order.getTotalPrice());
+                    return ResponseEntity.ok(status);
+                })
+                .orElse(ResponseEntity.notFound().build());
+        }
+        
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("orderNo", ticket.getOrderNo());
+        status.put("status", ticket.getStatus());
+        status.put("finished", ticket.isFinished());
+        status.put("totalQuantity", ticket.getTotalQuantity());
+        status.put("totalPrice", ticket.getTotalPrice());
+        status.put("message", ticket.getMessage());
+        return ResponseEntity.ok(status);
+    }
 }
\ No newline at end of file
@@ -1,14 +1,21 @@
 package com.example.shopping_website.controller;
 
-import com.example.shopping_website.model.Product;
+import com.example.shopping_website.dto.ProductSlice;
 import com.example.shopping_website.service.ProductService;
-import com.example.shopping_website.util.FileUploadUtil;
+import com.example.shopping_website.service.cache.ProductGridCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 @Controller
 public class HomeController {
@@ -17,35 +24,39 @@ public class HomeController {
     private ProductService productService;
     
     @Autowired
-    private FileUploadUtil fileUploadUtil; // 添加这个依赖
+    private ProductGridCache productGridCache;
     
     @GetMapping("/")
-    public String home(Model model) {
+    public String home(@RequestParam(value = "cursor", required = false) String cursor,
+                       @RequestParam(value = "size", required = false) Integer size,
+                       Model model,
+                       HttpServletRequest request,
+                       HttpServletResponse response,
+                       WebRequest webRequest) {
         try {
-            List<Product> products = productService.getAllProducts();
+            String cacheKey = "home|" + cursor + "|" + size;
             
-            // 确保每个商品都有正确的图片URL
-            for (Product product : products) {
-                String imageUrl = product.getImageUrl();
-                if (imageUrl == null || imageUrl.isEmpty()) {
-                    product.setImageUrl(fileUploadUtil.getDefaultImageUrl());
-                } else {
-                    // 使用FileUploadUtil确保路径正确
-                    product.setImageUrl(fileUploadUtil.getImageUrl(imageUrl));
-                }
+            // 匿名用户的页面内容只取决于商品网格，可以直接返回 304
+            if (isCacheableRequest(model, response) &&
+                webRequest.checkNotModified(productGridCache.currentEtag(cacheKey), productGridCache.getLastModified())) {
+                return null;
             }
             
-            model.addAttribute("products", products);
+            // 商品网格优先使用预渲染缓存，未命中时才查询当前页的精简商品卡片
+            String gridHtml = productGridCache.getOrRender(cacheKey, () -> {
+                ProductSlice page = productService.getProductPage(cursor, size);
+                Map<String, Object> variables = new HashMap<>();
+                variables.put("products", page.getContent());
+                variables.put("nextCursor", page.getNextCursor());
+                variables.put("pageSize", size);
+                variables.put("searchMode", false);
+                return variables;
+            }, request, response);
+            
+            model.addAttribute("productGridHtml", gridHtml);
             model.addAttribute("pageTitle", "购物商城首页");
             model.addAttribute("searchMode", false);
             
-            // 调试信息 - 检查图片URL
-            System.out.println("=== 主页图片URL检查 ===");
-            for (Product product : products) {
-                System.out.println("商品: " + product.getName() + 
-                                ", 图片URL: " + product.getImageUrl());
-            }
-            
             return "layout/base";
             
         } catch (Exception e) {
@@ -57,35 +68,46 @@ public class HomeController {
     }
 
     @GetMapping("/search")
-    public String searchProducts(@RequestParam(value = "keyword", required = false) String keyword, Model model) {
+    public String searchProducts(@RequestParam(value = "keyword", required = false) String keyword,
+                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                 @RequestParam(value = "size", required = false) Integer size,
+                                 Model model,
+                                 HttpServletRequest request,
+                                 HttpServletResponse response,
+                                 WebRequest webRequest) {
         try {
-            List<Product> products;
             String pageTitle;
             boolean searchMode = false;
             
             if (keyword != null && !keyword.trim().isEmpty()) {
                 // 执行搜索
-                products = productService.searchProducts(keyword);
                 pageTitle = "搜索结果: " + keyword + " - Shopping Mall";
                 model.addAttribute("keyword", keyword);
                 searchMode = true;
             } else {
                 // 如果没有关键词，显示所有商品
-                products = productService.getAllProducts();
                 pageTitle = "所有商品";
             }
             
-            // 处理图片路径
-            for (Product product : products) {
-                String imageUrl = product.getImageUrl();
-                if (imageUrl == null || imageUrl.isEmpty()) {
-                    product.setImageUrl(fileUploadUtil.getDefaultImageUrl());
-                } else {
-                    product.setImageUrl(fileUploadUtil.getImageUrl(imageUrl));
-                }
+            String cacheKey = "search|" + keyword + "|" + cursor + "|" + size;
+            if (isCacheableRequest(model, response) &&
+                webRequest.checkNotModified(productGridCache.currentEtag(cacheKey), productGridCache.getLastModified())) {
+                return null;
             }
             
-            model.addAttribute("products", products);
+            boolean gridSearchMode = searchMode;
+            String gridHtml = productGridCache.getOrRender(cacheKey, () -> {
+                ProductSlice page = productService.searchProductPage(keyword, cursor, size);
+                Map<String, Object> variables = new HashMap<>();
+                variables.put("products", page.getContent());
+                variables.put("nextCursor", page.getNextCursor());
+                variables.put("pageSize", size);
+                variables.put("searchMode", gridSearchMode);
+                variables.put("keyword", keyword);
+                return variables;
+            }, request, response);
+            
+            model.addAttribute("productGridHtml", gridHtml);
             model.addAttribute("pageTitle", pageTitle);
             model.addAttribute("searchMode", searchMode);
             
@@ -107,4 +129,18 @@ public class HomeController {
     public String testCart() {
         return "test-cart";
     }
+
+    /**
+     * 只有匿名且没有闪存消息的请求才使用条件请求（登录用户的导航栏内容不同）
+     */
+    private boolean isCacheableRequest(Model model, HttpServletResponse response) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        boolean anonymous = auth == null || auth instanceof AnonymousAuthenticationToken || !auth.isAuthenticated();
+        if (!anonymous || model.containsAttribute("success") || model.containsAttribute("error")) {
+            return false;
+        }
+        // 浏览器每次都带上 ETag 重新验证
+        response.setHeader("Cache-Control", "no-cache");
+        return true;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.example.shopping_website.controller;
+
+import com.example.shopping_website.service.inventory.HotSkuInventory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 热点商品库存分桶管理（仅管理员），返回 JSON
+ */
+@RestController
+@RequestMapping("/admin/inventory/hot-skus")
+@PreAuthorize("hasRole('ADMIN')")
+public class InventoryController {
+    
+    @Autowired
+    private HotSkuInventory hotSkuInventory;
+    
+    /**
+     * 各分桶商品的桶库存明细
+     */
+    @GetMapping
+    public Map<String, Object> list() {
+        return hotSkuInventory.stats();
+    }
+    
+    /**
+     * 为商品开启库存分桶
+     */
+    @PostMapping("/{productId}")
+    public ResponseEntity<Map<String, Object>> enable(@PathVariable Long productId,
+                                                      @RequestParam(defaultValue = "8") Integer buckets) {
+        try {
+            hotSkuInventory.enable(productId, buckets);
+            return ResponseEntity.ok(result(productId, "已开启库存分桶，桶数: " + buckets));
+        } catch (Exception e) {
+            System.err.println("开启库存分桶失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(result(productId, e.getMessage()));
+        }
+    }
+    
+    /**
+     * 关闭商品的库存分桶
+     */
+    @DeleteMapping("/{productId}")
+    public ResponseEntity<Map<String, Object>> disable(@PathVariable Long productId) {
+        try {
+            hotSkuInventory.disable(productId);
+            return ResponseEntity.ok(result(productId, "已关闭库存分桶"));
+        } catch (Exception e) {
+            System.err.println("关闭库存分桶失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(result(productId, e.getMessage()));
+        }
+    }
+    
+    private Map<String, Object> result(Long productId, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("productId", productId);
+        result.put("message", message);
+        return result;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.shopping_website.controller;
+
+import com.example.shopping_website.service.SellerStatsService;
+import com.example.shopping_website.service.auth.LoginThrottle;
+import com.example.shopping_website.service.auth.PasswordHashingService;
+import com.example.shopping_website.service.auth.SignedCookieSecurityContextRepository;
+import com.example.shopping_website.service.cache.CartSummaryCache;
+import com.example.shopping_website.service.cache.ProductCache;
+import com.example.shopping_website.service.cache.ProductGridCache;
+import com.example.shopping_website.service.cache.UserCache;
+import com.example.shopping_website.service.cart.CartStore;
+import com.example.shopping_website.service.catalog.ProductExportService;
+import com.example.shopping_website.service.catalog.ProductImportService;
+import com.example.shopping_website.service.checkout.CheckoutPipeline;
+import com.example.shopping_website.service.event.ProductChangePublisher;
+import com.example.shopping_website.service.image.ContentAddressedImageStore;
+import com.example.shopping_website.service.image.ImageVariantPipeline;
+import com.example.shopping_website.service.image.ProductImageIndex;
+import com.example.shopping_website.service.search.ProductSearchIndex;
+import com.example.shopping_website.service.session.SessionRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行时统计信息（仅管理员可见），返回 JSON
+ */
+@RestController
+@RequestMapping("/admin/metrics")
+@PreAuthorize("hasRole('ADMIN')")
+public class MetricsController {
+    
+    @Autowired
+    private ProductChangePublisher productChangePublisher;
+    
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    
+    @Autowired
+    private ProductCache productCache;
+    
+    @Autowired
+    private ProductGridCache productGridCache;
+    
+    @Autowired
+    private CartSummaryCache cartSummaryCache;
+    
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    
+    @Autowired
+    private LoginThrottle loginThrottle;
+    
+    @Autowired
+    private SignedCookieSecurityContextRepository signedCookieRepository;
+    
+    // 只在 app.session.store=jdbc 时存在
+    @Autowired
+    private ObjectProvider<SessionRepository> sessionRepository;
+    
+    @Autowired
+    private CartStore cartStore;
+    
+    @Autowired
+    private CheckoutPipeline checkoutPipeline;
+    
+    @Autowired
+    private SellerStatsService sellerStatsService;
+    
+    @Autowired
+    private ProductImportService productImportService;
+    
+    @Autowired
+    private ProductExportService productExportService;
+    
+    @Autowired
+    private ProductImageIndex productImageIndex;
+    
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+    
+    @Autowired
+    private ImageVariantPipeline imageVariantPipeline;
+    
+    @Autowired
+    private UploadResourceController uploadResourceController;
+    
+    /**
+     * 商品变更事件队列：队列深度、处理量、合并数、消费延迟
+     */
+    @GetMapping("/product-events")
+    public Map<String, Object> productEvents() {
+        return productChangePublisher.getMetrics();
+    }
+    
+    /**
+     * 商品搜索索引状态
+     */
+    @GetMapping("/search")
+    public Map<String, Object> search() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ready", productSearchIndex.isReady());
+        metrics.put("documents", productSearchIndex.size());
+        return metrics;
+    }
+    
+    /**
+     * 商品详情缓存：命中/未命中/淘汰计数
+     */
+    @GetMapping("/product-cache")
+    public Map<String, Object> productCache() {
+        return productCache.stats();
+    }
+    
+    /**
+     * 首页商品网格片段缓存
+     */
+    @GetMapping("/product-grid")
+    public Map<String, Object> productGrid() {
+        return productGridCache.stats();
+    }
+    
+    /**
+     * 购物车汇总缓存
+     */
+    @GetMapping("/cart-summary")
+    public Map<String, Object> cartSummary() {
+        return cartSummaryCache.stats();
+    }
+    
+    /**
+     * 用户资料缓存：命中/未命中/淘汰计数
+     */
+    @GetMapping("/user-cache")
+    public Map<String, Object> userCache() {
+        return userCache.stats();
+    }
+    
+    /**
+     * 密码哈希：线程池占用、排队、拒绝和平均耗时
+     */
+    @GetMapping("/password-hashing")
+    public Map<String, Object> passwordHashing() {
+        return passwordHashingService.getMetrics();
+    }
+    
+    /**
+     * 登录限流：放行/拒绝次数、令牌桶数量
+     */
+    @GetMapping("/login-throttle")
+    public Map<String, Object> loginThrottle() {
+        return loginThrottle.getMetrics();
+    }
+    
+    /**
+     * 无状态会话：签发、校验通过、过期和签名无效的 Cookie 数
+     */
+    @GetMapping("/stateless-session")
+    public Map<String, Object> statelessSession() {
+        return signedCookieRepository.getMetrics();
+    }
+    
+    /**
+     * 外部会话存储：近端缓存命中、存储读取、增量写入次数
+     */
+    @GetMapping("/sessions")
+    public Map<String, Object> sessions() {
+        SessionRepository repository = sessionRepository.getIfAvailable();
+        if (repository == null) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("store", "container");
+            return metrics;
+        }
+        return repository.getMetrics();
+    }
+    
+    /**
+     * 购物车存储（内存模式下含脏用户数、回写次数等）
+     */
+    @GetMapping("/cart-store")
+    public Map<String, Object> cartStore() {
+        return cartStore.stats();
+    }
+    
+    /**
+     * 结算后台处理：积压数、完成/失败数、批次耗时
+     */
+    @GetMapping("/checkout")
+    public Map<String, Object> checkout() {
+        return checkoutPipeline.getMetrics();
+    }
+    
+    /**
+     * 商品批量导入：任务数、导入/失败行数、限流等待时间
+     */
+    @GetMapping("/product-import")
+    public Map<String, Object> productImport() {
+        return productImportService.getMetrics();
+    }
+    
+    /**
+     * 商家商品导出：导出次数、行数、中途断开次数
+     */
+    @GetMapping("/product-export")
+    public Map<String, Object> productExport() {
+        return productExportService.getMetrics();
+    }
+    
+    /**
+     * 商品图片元数据索引：图片数、查询次数、回填数；内容寻址存储：写入、去重、删除数；缩放图生成
+     */
+    @GetMapping("/product-images")
+    public Map<String, Object> productImages() {
+        Map<String, Object> metrics = new LinkedHashMap<>(productImageIndex.getMetrics());
+        metrics.put("store", imageStore.getMetrics());
+        metrics.put("variants", imageVariantPipeline.getMetrics());
+        return metrics;
+    }
+    
+    /**
+     * 商家统计：待写入的库存增量、汇总写入次数
+     */
+    @GetMapping("/seller-stats")
+    public Map<String, Object> sellerStats() {
+        return sellerStatsService.getMetrics();
+    }
+    
+    /**
+     * 上传文件下载：请求数、304/206 次数、预压缩与 sendfile 次数、发送字节数
+     */
+    @GetMapping("/uploads")
+    public Map<String, Object> uploads() {
+        return uploadResourceController.getMetrics();
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.shopping_website.controller;
 
+import com.example.shopping_website.dto.ProductSlice;
+import com.example.shopping_website.dto.ProductStockSnapshot;
 import com.example.shopping_website.model.Product;
+import com.example.shopping_website.model.SellerStats;
 import com.example.shopping_website.model.User;
 import com.example.shopping_website.service.ProductService;
-import com.example.shopping_website.service.UserService;
+import com.example.shopping_website.service.SellerStatsService;
+import com.example.shopping_website.service.auth.CurrentUser;
 import com.example.shopping_website.util.FileUploadUtil;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,17 +31,17 @@ public class ProductController {
     private ProductService productService;
     
     @Autowired
-    private UserService userService;
+    private CurrentUser currentUser;
+    
+    @Autowired
+    private SellerStatsService sellerStatsService;
     
     @Autowired
     private FileUploadUtil fileUploadUtil;
     
     // 获取当前用户
     private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = auth.getName();
-        return userService.getUserByUsername(username)
-            .orElseThrow(() -> new RuntimeException("用户未登录"));
+        return currentUser.getUser();
     }
     
     // ============== 商家后台：我的商品 ==============
@@ -54,10 +58,11 @@ public class ProductController {
             // 获取该商家的所有商品
             List<Product> products = productService.getProductsByUserId(user.getId());
             
-            // 计算统计信息
-            int productCount = products.size();
-            int totalStock = products.stream().mapToInt(Product::getStockQuantity).sum();
-            double totalValue = products.stream().mapToDouble(p -> p.getPrice() * p.getStockQuantity()).sum();
+            // 统计信息（增量维护的商家统计行，不在内存中汇总）
+            SellerStats stats = sellerStatsService.getStats(user.getId());
+            long productCount = stats.getProductCount();
+            long totalStock = stats.getTotalStock();
+            double totalValue = stats.getTotalValue();
             
             model.addAttribute("products", products);
             model.addAttribute("seller", user);
@@ -71,21 +76,6 @@ public class ProductController {
             System.out.println("用户: " + user.getUsername());
             System.out.println("商品数量: " + productCount);
             
-            for (Product product : products) {
-                System.out.println("商品: " + product.getName() + 
-                                ", ID: " + product.getId() + 
-                                ", 图片URL: " + product.getImageUrl());
-                
-                // 检查图片文件是否存在 - 使用兼容的方法
-                String existingImage = fileUploadUtil.checkProductImageExists(product.getId());
-                if (existingImage != null) {
-                    System.out.println("  图片文件存在: " + existingImage);
-                    System.out.println("  完整URL: " + fileUploadUtil.getImageUrl(existingImage));
-                } else {
-                    System.out.println("  图片文件不存在");
-                }
-            }
-            
             return "product/my-products";
             
         } catch (Exception e) {
@@ -205,10 +195,9 @@ public class ProductController {
     @PreAuthorize("hasRole('SELLER')")
     public String showEditProductForm(@PathVariable Long id, Model model) {
         try {
-            Product product = productService.findProductById(id);
+            Product product = productService.findProductForUpdate(id);
             
             // 检查当前用户是否有权限编辑此商品
-            User currentUser = getCurrentUser();
             if (!product.getUser().getId().equals(currentUser.getId())) {
                 model.addAttribute("error", "您没有权限编辑此商品");
                 return "error/403";
@@ -245,25 +234,25 @@ public class ProductController {
             // 验证表单
             if (result.hasErrors()) {
                 // 重新加载商品信息以显示在表单中
-                Product existingProduct = productService.findProductById(id);
+                Product existingProduct = productService.findProductForUpdate(id);
                 model.addAttribute("product", existingProduct);
                 model.addAttribute("pageTitle", "编辑商品");
                 return "product/edit";
             }
             
             // 获取原始商品
-            Product existingProduct = productService.findProductById(id);
+            Product existingProduct = productService.findProductForUpdate(id);
             System.out.println("原始商品名称: " + existingProduct.getName());
             System.out.println("原始图片URL: " + existingProduct.getImageUrl());
             
             // 检查当前用户是否有权限编辑此商品
-            User currentUser = getCurrentUser();
             if (!existingProduct.getUser().getId().equals(currentUser.getId())) {
                 redirectAttributes.addFlashAttribute("error", "您没有权限编辑此商品");
                 return "redirect:/products/my-products";
             }
             
-            // 更新商品信息
+            // 更新商品信息（先记录修改前的库存和价格，用于商家统计增量）
+            ProductStockSnapshot before = productService.snapshotOf(existingProduct);
             existingProduct.setName(product.getName());
             existingProduct.setDescription(product.getDescription());
             existingProduct.setPrice(product.getPrice());
@@ -301,8 +290,8 @@ public class ProductController {
                 System.out.println("没有上传新图片，保持原有图片");
             }
             
-            // 保存更新
-            Product updatedProduct = productService.saveProduct(existingProduct);
+            // 保存更新（分桶的热点商品在同一事务中按新库存重新拆分）
+            Product updatedProduct = productService.saveProduct(existingProduct, before);
             System.out.println("商品更新成功");
             System.out.println("更新后图片URL: " + updatedProduct.getImageUrl());
             
@@ -313,7 +302,7 @@ public class ProductController {
         } catch (Exception e) {
             System.err.println("更新商品失败: " + e.getMessage());
             e.printStackTrace();
-            Product existingProduct = productService.findProductById(id);
+            Product existingProduct = productService.findProductForUpdate(id);
             model.addAttribute("product", existingProduct);
             model.addAttribute("error", "更新商品失败: " + e.getMessage());
             model.addAttribute("pageTitle", "编辑商品");
@@ -334,12 +323,11 @@ public class ProductController {
             System.out.println("商品ID: " + id);
             
             // 获取商品
-            Product product = productService.findProductById(id);
+            Product product = productService.findProductForUpdate(id);
             System.out.println("商品名称: " + product.getName());
             System.out.println("商品图片URL: " + product.getImageUrl());
             
             // 检查当前用户是否有权限删除此商品
-            User currentUser = getCurrentUser();
             if (!product.getUser().getId().equals(currentUser.getId())) {
                 redirectAttributes.addFlashAttribute("error", "您没有权限删除此商品");
                 return "redirect:/products/my-products";
@@ -392,19 +380,16 @@ public class ProductController {
      * 查看所有商品（公共页面）
      */
     @GetMapping("/list")
-    public String listProducts(Model model) {
+    public String listProducts(@RequestParam(value = "cursor", required = false) String cursor,
+                               @RequestParam(value = "size", required = false) Integer size,
+                               Model model) {
         try {
-            List<Product> products = productService.getAllProducts();
-            
-            // 确保每个商品都有正确的图片URL
-            for (Product product : products) {
-                if (product.getImageUrl() == null || product.getImageUrl().isEmpty()) {
-                    // 设置默认图片路径
-                    product.setImageUrl(fileUploadUtil.getDefaultImageUrl());
-                }
-            }
+            // 游标分页，图片URL（含默认图片）已在Service中处理
+            ProductSlice page = productService.getProductPage(cursor, size);
             
-            model.addAttribute("products", products);
+            model.addAttribute("products", page.getContent());
+            model.addAttribute("nextCursor", page.getNextCursor());
+            model.addAttribute("pageSize", size);
             model.addAttribute("pageTitle", "所有商品");
             return "product/list";
         } catch (Exception e) {
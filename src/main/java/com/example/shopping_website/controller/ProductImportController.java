@@ -0,0 +1,141 @@
+package com.example.shopping_website.controller;
+
+import com.example.shopping_website.dto.ImportRowError;
+import com.example.shopping_website.service.auth.CurrentUser;
+import com.example.shopping_website.service.catalog.ProductImportJob;
+import com.example.shopping_website.service.catalog.ProductImportService;
+import com.example.shopping_website.util.CsvUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 商品批量导入（CSV / NDJSON）
+ * 上传后在后台逐行处理，页面通过状态接口轮询进度，失败的行可下载错误报告
+ */
+@Controller
+@RequestMapping("/products/import")
+@PreAuthorize("hasRole('SELLER')")
+public class ProductImportController {
+
+    // 状态接口中附带的错误预览条数
+    private static final int ERROR_PREVIEW = 20;
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private CurrentUser currentUser;
+
+    /**
+     * 显示批量导入页面
+     */
+    @GetMapping
+    public String showImportForm(Model model) {
+        model.addAttribute("pageTitle", "批量导入商品");
+        return "product/import";
+    }
+
+    /**
+     * 页面表单上传：提交后跳回导入页面轮询进度
+     */
+    @PostMapping
+    public String importProducts(@RequestParam("file") MultipartFile file,
+                                 @RequestParam(value = "format", required = false) String format,
+                                 RedirectAttributes redirectAttributes) {
+        try {
+            ProductImportJob job = productImportService.submit(currentUser.getId(), file, format);
+            redirectAttributes.addFlashAttribute("importJobId", job.getJobId());
+            redirectAttributes.addFlashAttribute("success", "文件已上传，正在后台导入");
+        } catch (Exception e) {
+            System.err.println("提交商品导入失败: " + e.getMessage());
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        }
+        return "redirect:/products/import";
+    }
+
+    /**
+     * 接口上传（Accept: application/json）：返回 202 和任务状态
+     */
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> importProductsApi(@RequestParam("file") MultipartFile file,
+                                                                 @RequestParam(value = "format", required = false) String format) {
+        try {
+            ProductImportJob job = productImportService.submit(currentUser.getId(), file, format);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/products/import/" + job.getJobId())
+                .body(toStatus(job));
+        } catch (Exception e) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(body);
+        }
+    }
+
+    /**
+     * 导入进度（JSON）
+     */
+    @GetMapping("/{jobId}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> importStatus(@PathVariable String jobId) {
+        ProductImportJob job = productImportService.getJob(jobId, currentUser.getId());
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(toStatus(job));
+    }
+
+    /**
+     * 下载错误报告（CSV：行号,字段,错误信息）
+     */
+    @GetMapping("/{jobId}/errors")
+    @ResponseBody
+    public ResponseEntity<byte[]> errorReport(@PathVariable String jobId) {
+        ProductImportJob job = productImportService.getJob(jobId, currentUser.getId());
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        StringBuilder csv = new StringBuilder(CsvUtil.BOM + "行号,字段,错误信息\n");
+        for (ImportRowError error : job.getErrors()) {
+            csv.append(error.getRowNumber()).append(',')
+                .append(CsvUtil.escape(error.getField())).append(',')
+                .append(CsvUtil.escape(error.getMessage())).append('\n');
+        }
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"import-errors-" + jobId + ".csv\"")
+            .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+            .body(csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, Object> toStatus(ProductImportJob job) {
+        List<ImportRowError> errors = job.getErrors();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", job.getJobId());
+        status.put("fileName", job.getFileName());
+        status.put("format", job.getFormat());
+        status.put("status", job.getStatus());
+        status.put("finished", job.isFinished());
+        status.put("processedRows", job.getProcessedRows());
+        status.put("importedRows", job.getImportedRows());
+        status.put("failedRows", job.getFailedRows());
+        status.put("message", job.getMessage());
+        status.put("errors", errors.subList(0, Math.min(errors.size(), ERROR_PREVIEW)));
+        status.put("errorReportUrl", "/products/import/" + job.getJobId() + "/errors");
+        return status;
+    }
+}
@@ -1,16 +1,30 @@
 package com.example.shopping_website.controller;
 
+import com.example.shopping_website.dto.ProductCardDto;
+import com.example.shopping_website.model.SellerStats;
 import com.example.shopping_website.model.User;
 import com.example.shopping_website.service.ProductService;
-import com.example.shopping_website.service.UserService;
+import com.example.shopping_website.service.SellerStatsService;
+import com.example.shopping_website.service.auth.CurrentUser;
+import com.example.shopping_website.service.catalog.CatalogFormat;
+import com.example.shopping_website.service.catalog.ProductExportService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 @Controller
 @RequestMapping("/seller")
@@ -20,21 +34,87 @@ public class SellerController {
     private ProductService productService;
     
     @Autowired
-    private UserService userService;
+    private CurrentUser currentUser;
+    
+    @Autowired
+    private ProductExportService productExportService;
+    
+    @Autowired
+    private SellerStatsService sellerStatsService;
+    
+    // 库存预警列表显示的商品数
+    private static final int LOW_STOCK_LIMIT = 10;
+    
+    // 导出名额已满时建议的重试等待秒数
+    private static final int EXPORT_RETRY_AFTER_SECONDS = 30;
     
     private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = auth.getName();
-        return userService.getUserByUsername(username)
-            .orElseThrow(() -> new RuntimeException("用户未找到: " + username));
+        return currentUser.getUser();
     }
     
     /**
-     * 商家后台首页 - 重定向到我的商品页面
+     * 商家后台首页：商家统计和库存预警
      */
     @GetMapping("/dashboard")
     @PreAuthorize("hasRole('SELLER')")
-    public String dashboard() {
-        return "redirect:/products/my-products";
+    public String dashboard(Model model) {
+        try {
+            User user = getCurrentUser();
+            SellerStats stats = sellerStatsService.getStats(user.getId());
+            List<ProductCardDto> lowStockProducts = productService.getLowStockProducts(user.getId(), LOW_STOCK_LIMIT);
+            
+            model.addAttribute("seller", user);
+            model.addAttribute("stats", stats);
+            model.addAttribute("lowStockProducts", lowStockProducts);
+            model.addAttribute("lowStockThreshold", productService.getLowStockThreshold());
+            model.addAttribute("pageTitle", "商家后台");
+            return "seller/dashboard";
+        } catch (Exception e) {
+            model.addAttribute("error", "加载商家后台失败: " + e.getMessage());
+            return "error/403";
+        }
+    }
+    
+    /**
+     * 立即重新统计（按数据库中的商品全量重算）
+     */
+    @PostMapping("/dashboard/refresh")
+    @PreAuthorize("hasRole('SELLER')")
+    public String refreshStats(RedirectAttributes redirectAttributes) {
+        sellerStatsService.rebuild(currentUser.getId());
+        redirectAttributes.addFlashAttribute("success", "统计数据已更新");
+        return "redirect:/seller/dashboard";
+    }
+    
+    /**
+     * 导出我的全部商品（format=csv 或 ndjson）
+     * 响应体在异步线程中边查询边写出，不会先把商品加载到内存
+     */
+    @GetMapping("/products/export")
+    @PreAuthorize("hasRole('SELLER')")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(value = "format", defaultValue = "csv") String format) {
+        CatalogFormat resolved = CatalogFormat.resolve(format, null);
+        Long userId = currentUser.getId();
+        String fileName = "products-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + "." + resolved.getExtension();
+        
+        // 导出在下载期间占用数据库连接，同时进行的导出已满时直接拒绝
+        if (!productExportService.tryAcquireSlot()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(EXPORT_RETRY_AFTER_SECONDS))
+                .build();
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                productExportService.export(userId, resolved, out);
+            } finally {
+                productExportService.releaseSlot();
+            }
+        };
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+            .header(HttpHeaders.CACHE_CONTROL, "no-store")
+            .contentType(resolved.getMediaType())
+            .body(body);
     }
 }
\ No newline at end of file
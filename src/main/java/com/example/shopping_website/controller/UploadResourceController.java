@@ -0,0 +1,370 @@
+package com.example.shopping_website.controller;
+
+import com.example.shopping_website.util.FileUploadUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 上传文件（/uploads/**）的下载处理
+ * - 内容寻址的文件（products/ab/cd/{sha256}...）以文件名作强 ETag，返回一年的 immutable 缓存头
+ * - 其他文件用大小+修改时间作弱 ETag，按 app.upload.cache-seconds 缓存
+ * - 支持 If-None-Match / If-Modified-Since（304）、单段 Range 与 If-Range（206/416）
+ * - css/js 等文本文件存在 .br/.gz 预压缩文件时按 Accept-Encoding 直接返回
+ * - Tomcat 支持 sendfile 时由容器零拷贝发送，否则用 FileChannel.transferTo 写出，不经过堆内存缓冲
+ */
+@Controller
+public class UploadResourceController {
+
+    private static final String ACCESS_PREFIX = "/uploads/";
+
+    // 内容寻址的文件（含缩放图）：.../ab/cd/{sha256}[_{variant}].{ext}
+    private static final Pattern CONTENT_ADDRESSED =
+        Pattern.compile("(?:.*/)?[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}(?:_[a-z]+)?\\.[a-z]+");
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // 可能有预压缩文件的扩展名
+    private static final Set<String> COMPRESSIBLE = Set.of("css", "js", "svg", "json", "txt");
+
+    // 预压缩文件：编码名 -> 文件后缀，按优先级排列
+    private static final String[][] ENCODINGS = {{"br", ".br"}, {"gzip", ".gz"}};
+
+    // Tomcat sendfile 的请求属性（见 org.apache.catalina.Globals）
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // 小于该大小的文件直接写出，sendfile 的系统调用开销不划算（与 Tomcat DefaultServlet 的默认值一致）
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    // Range 解析结果：范围无法满足
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    // 非内容寻址文件（头像、旧格式商品图片）的缓存时间（秒）
+    @Value("${app.upload.cache-seconds:3600}")
+    private long cacheSeconds;
+
+    // 统计信息
+    private final AtomicLong servedCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong partialCount = new AtomicLong();
+    private final AtomicLong precompressedCount = new AtomicLong();
+    private final AtomicLong sendfileCount = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relativePath = relativePath(request);
+        Path root = Paths.get(fileUploadUtil.getUploadDir()).toAbsolutePath().normalize();
+        Path file = relativePath != null ? root.resolve(relativePath).normalize() : null;
+        if (file == null || !file.startsWith(root)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String fileName = file.getFileName().toString();
+        String extension = extensionOf(fileName);
+        boolean immutable = CONTENT_ADDRESSED.matcher(relativePath).matches();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = immutable
+            ? "\"" + fileName + "\""
+            : "W/\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+
+        // 预压缩文件（同一资源的不同编码使用不同的 ETag）
+        Path body = file;
+        long length = attributes.size();
+        String encoding = null;
+        if (COMPRESSIBLE.contains(extension)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            for (String[] candidate : ENCODINGS) {
+                Path sidecar = file.resolveSibling(fileName + candidate[1]);
+                if (accepts(acceptEncoding, candidate[0]) && Files.isRegularFile(sidecar)) {
+                    encoding = candidate[0];
+                    body = sidecar;
+                    length = Files.size(sidecar);
+                    etag = etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+                    break;
+                }
+            }
+        }
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE_CACHE_CONTROL : "public, max-age=" + cacheSeconds);
+        response.setContentType(contentType(request, fileName, extension));
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+        } else {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        }
+
+        if (isNotModified(request, etag, lastModified)) {
+            notModifiedCount.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // 单段 Range；多段或格式错误时忽略，返回整个文件
+        long start = 0;
+        long end = length - 1;
+        String range = encoding == null ? request.getHeader(HttpHeaders.RANGE) : null;
+        if (range != null && ifRangeMatches(request, etag, lastModified)) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == UNSATISFIABLE) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (parsed != null) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                partialCount.incrementAndGet();
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        servedCount.incrementAndGet();
+        if (encoding != null) {
+            precompressedCount.incrementAndGet();
+        }
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+        send(request, response, body, start, count);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("served", servedCount.get());
+        metrics.put("notModified", notModifiedCount.get());
+        metrics.put("partial", partialCount.get());
+        metrics.put("precompressed", precompressedCount.get());
+        metrics.put("sendfile", sendfileCount.get());
+        metrics.put("sentBytes", sentBytes.get());
+        return metrics;
+    }
+
+    /**
+     * 写出文件内容：优先交给 Tomcat sendfile，否则 FileChannel.transferTo
+     */
+    private void send(HttpServletRequest request, HttpServletResponse response,
+                      Path body, long start, long count) throws IOException {
+        if (count >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, body.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            // 结束位置不包含
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            sendfileCount.incrementAndGet();
+            sentBytes.addAndGet(count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(body, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+            sentBytes.addAndGet(count - remaining);
+        }
+    }
+
+    /**
+     * 请求路径中 /uploads/ 之后的部分（已解码）；包含隐藏目录（如写入中的临时文件 .tmp）或非法字符时返回 null
+     */
+    private static String relativePath(HttpServletRequest request) {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        if (!uri.startsWith(ACCESS_PREFIX)) {
+            return null;
+        }
+        String path = UriUtils.decode(uri.substring(ACCESS_PREFIX.length()), StandardCharsets.UTF_8);
+        if (path.isEmpty() || path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0) {
+            return null;
+        }
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.startsWith(".")) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * If-None-Match（弱比较）优先；没有时按 If-Modified-Since 判断
+     */
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            String opaque = stripWeak(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if (trimmed.equals("*") || stripWeak(trimmed).equals(opaque)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified / 1000 * 1000 <= ifModifiedSince;
+    }
+
+    /**
+     * If-Range：ETag 必须是强 ETag 且完全相同，或日期与最后修改时间一致
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return !etag.startsWith("W/") && ifRange.trim().equals(etag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 * 1000 == date;
+    }
+
+    /**
+     * 解析 bytes=a-b / bytes=a- / bytes=-n
+     * @return {start, end}（含 end）；格式错误或多段时返回 null；无法满足时返回 UNSATISFIABLE
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // 最后 n 个字节
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[] {Math.max(0, length - suffixLength), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new long[] {start, Math.min(end, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase(encoding)) {
+                // q=0 表示明确不接受
+                return tokens.length < 2 || !tokens[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static String contentType(HttpServletRequest request, String fileName, String extension) {
+        switch (extension) {
+            case "jpg":
+            case "jpeg":
+                return "image/jpeg";
+            case "png":
+                return "image/png";
+            case "gif":
+                return "image/gif";
+            case "webp":
+                return "image/webp";
+            case "bmp":
+                return "image/bmp";
+            case "svg":
+                return "image/svg+xml";
+            case "css":
+                return "text/css;charset=UTF-8";
+            case "js":
+                return "text/javascript;charset=UTF-8";
+            default:
+                String mimeType = request.getServletContext().getMimeType(fileName);
+                return mimeType != null ? mimeType : "application/octet-stream";
+        }
+    }
+
+    private static String extensionOf(String fileName) {
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex >= 0 ? fileName.substring(dotIndex + 1).toLowerCase() : "";
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
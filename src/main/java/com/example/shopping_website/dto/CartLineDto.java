@@ -0,0 +1,37 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 购物车页面使用的行投影（单条 JOIN 查询得到）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartLineDto {
+
+    // 购物车项ID
+    private Long id;
+
+    private Long productId;
+
+    private String name;
+
+    private Double price;
+
+    private String imageUrl;
+
+    private Integer stockQuantity;
+
+    private Integer quantity;
+
+    // 计算小计
+    public Double getSubtotal() {
+        if (price != null && quantity != null) {
+            return price * quantity;
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 购物车汇总：购物车行、总件数、总价、商品种类数
+ * 由同一次查询结果一次遍历计算得到，可能来自缓存，调用方只读使用
+ */
+@Data
+@AllArgsConstructor
+public class CartSummary {
+
+    private List<CartLineDto> lines;
+
+    private int totalQuantity;
+
+    private double totalPrice;
+
+    private int distinctProductCount;
+
+    public static CartSummary empty() {
+        return new CartSummary(Collections.emptyList(), 0, 0.0, 0);
+    }
+
+    /**
+     * 一次遍历计算汇总
+     */
+    public static CartSummary of(List<CartLineDto> lines) {
+        int quantity = 0;
+        double price = 0.0;
+        for (CartLineDto line : lines) {
+            quantity += line.getQuantity() != null ? line.getQuantity() : 0;
+            price += line.getSubtotal();
+        }
+        return new CartSummary(List.copyOf(lines), quantity, price, lines.size());
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+}
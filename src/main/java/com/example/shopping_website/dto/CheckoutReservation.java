@@ -0,0 +1,24 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结算时已扣减库存的购物车快照：商品ID -> 数量、下单时的商品行，以及总件数和总价
+ */
+@Data
+@AllArgsConstructor
+public class CheckoutReservation {
+
+    private Map<Long, Integer> quantities;
+
+    // 下单时的名称和单价快照，用于生成订单行
+    private List<CartLineDto> lines;
+
+    private int totalQuantity;
+
+    private double totalPrice;
+}
@@ -0,0 +1,22 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量导入时未能导入的行
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRowError {
+
+    // 行号（CSV 为记录起始的物理行号，NDJSON 为所在行号）
+    private Long rowNumber;
+
+    // 出错的字段，整行错误（如格式错误、写库失败）时为 null
+    private String field;
+
+    private String message;
+}
@@ -0,0 +1,20 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一组商品的数据库端聚合结果：商品数、库存总数、库存总价值
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductAggregate {
+
+    private Long productCount;
+
+    private Long totalStock;
+
+    private Double totalValue;
+}
@@ -0,0 +1,32 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 商品列表（卡片网格）使用的精简投影
+ * 不包含完整的 description（TEXT 字段），只保留截断后的摘要
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCardDto {
+
+    private Long id;
+
+    private String name;
+
+    // 描述摘要（数据库端截断）
+    private String summary;
+
+    private Double price;
+
+    private String imageUrl;
+
+    private Integer stockQuantity;
+
+    private LocalDateTime createdAt;
+}
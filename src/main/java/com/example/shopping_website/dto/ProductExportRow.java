@@ -0,0 +1,33 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 商家商品导出行（查询投影，不进入持久化上下文）
+ * 列名与批量导入的字段一致，导出的文件可以直接重新导入
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductExportRow {
+
+    private Long id;
+
+    private String name;
+
+    private String description;
+
+    private Double price;
+
+    private Integer stockQuantity;
+
+    private String imageUrl;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,20 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 商品的所有者和当前价格（汇总库存增量到商家统计时使用）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductOwnerPrice {
+
+    private Long productId;
+
+    private Long userId;
+
+    private Double price;
+}
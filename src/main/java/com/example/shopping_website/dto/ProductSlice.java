@@ -0,0 +1,102 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 游标（keyset）分页结果
+ * 按 createdAt DESC, id DESC 排序，nextCursor 编码了本页最后一条记录的位置
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSlice {
+
+    private List<ProductCardDto> content;
+
+    // 下一页游标，为 null 表示没有更多数据
+    private String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean isEmpty() {
+        return content == null || content.isEmpty();
+    }
+
+    /**
+     * 由最后一条记录生成游标
+     */
+    public static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标；游标无效时返回 null（从第一页开始）
+     */
+    public static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            if (sep <= 0) {
+                return null;
+            }
+            LocalDateTime createdAt = LocalDateTime.parse(raw.substring(0, sep));
+            Long id = Long.parseLong(raw.substring(sep + 1));
+            return new Cursor(createdAt, id);
+        } catch (Exception e) {
+            System.err.println("无效的分页游标: " + cursor);
+            return null;
+        }
+    }
+
+    /**
+     * 由结果偏移量生成游标（用于按相关度排序的搜索结果）
+     */
+    public static String encodeOffsetCursor(int offset) {
+        String raw = "offset:" + offset;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析偏移量游标；游标为空或无效时返回 0
+     */
+    public static int decodeOffsetCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith("offset:")) {
+                return 0;
+            }
+            return Math.max(0, Integer.parseInt(raw.substring("offset:".length())));
+        } catch (Exception e) {
+            System.err.println("无效的分页游标: " + cursor);
+            return 0;
+        }
+    }
+
+    /**
+     * 游标位置：上一页最后一条记录的 createdAt 和 id
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Cursor {
+        private LocalDateTime createdAt;
+        private Long id;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 商品修改前的所有者、价格和库存（用于计算商家统计的增量）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStockSnapshot {
+
+    private Long userId;
+
+    private Double price;
+
+    private Integer stockQuantity;
+}
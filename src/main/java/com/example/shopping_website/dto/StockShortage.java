@@ -0,0 +1,25 @@
+package com.example.shopping_website.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 扣减库存失败的明细行
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockShortage {
+
+    private Long productId;
+
+    // 商品已被删除时为 null
+    private String productName;
+
+    // 需要扣减的数量
+    private Integer requested;
+
+    // 当前可用库存
+    private Integer available;
+}
@@ -0,0 +1,42 @@
+package com.example.shopping_website.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 按内容寻址存储的图片文件（每个不同内容一行）
+ * 相同内容的图片只存一份，ref_count 记录引用它的商品图片数，降到 0 时删除文件
+ */
+@Entity
+@Table(name = "image_blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageBlob {
+    
+    // 文件内容的 SHA-256（十六进制）
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    // 相对于 products/ 的存储路径，如 ab/cd/abcd....jpg
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+    
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+    
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0;
+    
+    // 已生成的缩放图后缀，逗号分隔（如 grid.jpg,details.jpg），空字符串表示无需生成，null 表示尚未处理
+    @Column(length = 500)
+    private String variants;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
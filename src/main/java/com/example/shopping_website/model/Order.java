@@ -0,0 +1,83 @@
+package com.example.shopping_website.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单（写入后只有状态会变化，订单行只追加）
+ * 与库存扣减在同一事务中以 PENDING 写入，后台完成后改为 PLACED，失败时改为 FAILED 并归还库存
+ * 主键使用表生成器按 50 个一段预分配，Hibernate 可以批量插入订单和订单行
+ */
+@Entity
+@Table(name = "orders", indexes = {
+    @Index(name = "idx_orders_user_id", columnList = "user_id, id"),
+    @Index(name = "idx_orders_status_created_at", columnList = "status, created_at")
+})
+@Data
+@NoArgsConstructor
+public class Order {
+    
+    public enum Status {
+        // 库存已扣减，等待后台清理购物车
+        PENDING,
+        // 已下单（库存已扣减，购物车已清理）
+        PLACED,
+        // 后台处理失败，库存已归还，购物车未清理
+        FAILED
+    }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_id_gen")
+    @TableGenerator(name = "order_id_gen", table = "id_generators",
+                    pkColumnName = "gen_name", valueColumnName = "next_val",
+                    pkColumnValue = "orders", allocationSize = 50)
+    private Long id;
+    
+    @Column(name = "order_no", nullable = false, unique = true, length = 32)
+    private String orderNo;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User user;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.PENDING;
+    
+    @Column(name = "total_quantity", nullable = false)
+    private Integer totalQuantity;
+    
+    @Column(name = "total_price", nullable = false)
+    private Double totalPrice;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @OneToMany(mappedBy = "order", cascade = CascadeType.PERSIST)
+    @OrderBy("id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<OrderLine> lines = new ArrayList<>();
+    
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+    
+    // 添加订单行并维护双向关联
+    public void addLine(OrderLine line) {
+        line.setOrder(this);
+        lines.add(line);
+    }
+}
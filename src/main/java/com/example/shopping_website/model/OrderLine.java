@@ -0,0 +1,55 @@
+package com.example.shopping_website.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * 订单行：保存下单时的商品名称和单价快照，商品之后修改或删除不影响订单
+ */
+@Entity
+@Immutable
+@Table(name = "order_lines", indexes = {
+    @Index(name = "idx_order_lines_order_id", columnList = "order_id")
+})
+@Data
+@NoArgsConstructor
+public class OrderLine {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_line_id_gen")
+    @TableGenerator(name = "order_line_id_gen", table = "id_generators",
+                    pkColumnName = "gen_name", valueColumnName = "next_val",
+                    pkColumnValue = "order_lines", allocationSize = 50)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Order order;
+    
+    // 不建外键，商品删除后订单行仍保留
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    
+    @Column(name = "product_name", nullable = false)
+    private String productName;
+    
+    @Column(name = "unit_price", nullable = false)
+    private Double unitPrice;
+    
+    @Column(nullable = false)
+    private Integer quantity;
+    
+    // 计算小计
+    public Double getSubtotal() {
+        if (unitPrice != null && quantity != null) {
+            return unitPrice * quantity;
+        }
+        return 0.0;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.shopping_website.model;
 
+import com.example.shopping_website.service.event.ProductEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -10,14 +11,22 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+@EntityListeners(ProductEntityListener.class)
+@Table(name = "products", indexes = {
+    // 首页游标分页按 (created_at, id) 排序与定位
+    @Index(name = "idx_products_created_at_id", columnList = "created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Product {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // 表生成器按段预分配主键，支持批量插入（已有数据的起始值见 IdGeneratorMigration）
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "product_id_gen")
+    @TableGenerator(name = "product_id_gen", table = "id_generators",
+                    pkColumnName = "gen_name", valueColumnName = "next_val",
+                    pkColumnValue = "products", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "商品名称不能为空")
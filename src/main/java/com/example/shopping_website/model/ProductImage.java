@@ -0,0 +1,49 @@
+package com.example.shopping_website.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 商品图片元数据（每个商品一行）
+ * 上传时写入，启动时整表加载到内存（见 ProductImageIndex），
+ * 请求路径上判断图片是否存在、解析图片URL都不再访问文件系统
+ */
+@Entity
+@Table(name = "product_images")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImage {
+    
+    // 商品ID（即 products.id，不建外键关联，商品删除时由 ProductImageIndex 清理）
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+    
+    // 存储的文件名（相对于上传目录下的 products/）
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+    
+    // 文件大小（字节）
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+    
+    // 文件内容的 SHA-256（十六进制）
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+    
+    @Column(name = "content_type", length = 50)
+    private String contentType;
+    
+    // 图片宽高（像素），无法解析时为空
+    private Integer width;
+    
+    private Integer height;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -13,7 +13,10 @@ import lombok.AllArgsConstructor;
 public class Role {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "role_id_gen")
+    @TableGenerator(name = "role_id_gen", table = "id_generators",
+                    pkColumnName = "gen_name", valueColumnName = "next_val",
+                    pkColumnValue = "roles", allocationSize = 10)
     private Long id;
     
     @Enumerated(EnumType.STRING)
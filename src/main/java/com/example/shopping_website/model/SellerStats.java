@@ -0,0 +1,44 @@
+package com.example.shopping_website.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 商家统计（每个商家一行）
+ * 商品保存/删除、结算扣库存时在同一事务中增量更新，商家后台直接读取，不再每次汇总全部商品；
+ * 增量更新遗漏或浮点误差由定期全量重算（SQL 聚合）修正，见 SellerStatsService
+ */
+@Entity
+@Table(name = "seller_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SellerStats {
+    
+    // 商家ID（即 users.id，不单独生成主键）
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "product_count", nullable = false)
+    private Long productCount = 0L;
+    
+    // 库存总数
+    @Column(name = "total_stock", nullable = false)
+    private Long totalStock = 0L;
+    
+    // 库存总价值（价格 × 库存之和）
+    @Column(name = "total_value", nullable = false)
+    private Double totalValue = 0.0;
+    
+    // 最近一次全量重算时间
+    @Column(name = "rebuilt_at")
+    private LocalDateTime rebuiltAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,38 @@
+package com.example.shopping_website.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 热点商品的库存分桶
+ * 商品开启分桶后，可售库存分散在多行中，结算按桶扣减以分散行锁；
+ * products.stock_quantity 仅作展示，由后台定时汇总各桶得到
+ */
+@Entity
+@Table(name = "stock_buckets",
+       uniqueConstraints = @UniqueConstraint(name = "uk_stock_buckets_product_bucket",
+                                             columnNames = {"product_id", "bucket_index"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBucket {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "stock_bucket_id_gen")
+    @TableGenerator(name = "stock_bucket_id_gen", table = "id_generators",
+                    pkColumnName = "gen_name", valueColumnName = "next_val",
+                    pkColumnValue = "stock_buckets", allocationSize = 50)
+    private Long id;
+    
+    // 不建外键关联，商品删除时由 HotSkuInventory 清理
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    
+    @Column(name = "bucket_index", nullable = false)
+    private Integer bucketIndex;
+    
+    @Column(nullable = false)
+    private Integer quantity = 0;
+}
@@ -22,7 +22,10 @@ import java.util.Set;
 public class User {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_id_gen")
+    @TableGenerator(name = "user_id_gen", table = "id_generators",
+                    pkColumnName = "gen_name", valueColumnName = "next_val",
+                    pkColumnValue = "users", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "用户名不能为空")
@@ -52,7 +55,8 @@ public class User {
     @Column(name = "avatar_url")
     private String avatarUrl = "https://via.placeholder.com/150?text=User";
     
-    @ManyToMany(fetch = FetchType.EAGER)
+    // 懒加载；需要角色的查询（如按用户名登录）通过 @EntityGraph 一并加载
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "user_roles",
         joinColumns = @JoinColumn(name = "user_id"),
@@ -1,21 +1,37 @@
 package com.example.shopping_website.repository;
 
+import com.example.shopping_website.dto.CartLineDto;
 import com.example.shopping_website.model.CartItem;
 import com.example.shopping_website.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     
-    // 根据用户ID查找购物车商品
+    // 根据用户ID查找购物车商品（一并加载商品，避免逐行查询）
+    @EntityGraph(attributePaths = "product")
     List<CartItem> findByUserId(Long userId);
     
+    // 购物车页面读模型：一次 JOIN 查询返回展示所需的全部字段
+    @Query("SELECT new com.example.shopping_website.dto.CartLineDto(" +
+           "ci.id, p.id, p.name, p.price, p.imageUrl, p.stockQuantity, ci.quantity) " +
+           "FROM CartItem ci JOIN ci.product p WHERE ci.user.id = :userId ORDER BY ci.id")
+    List<CartLineDto> findCartLinesByUserId(@Param("userId") Long userId);
+    
+    // 批量读取多个用户的购物车项（内存购物车回写时比对）
+    List<CartItem> findByUserIdIn(Collection<Long> userIds);
+    
+    // 查找用户购物车中指定商品的行（结算后扣减购物车数量）
+    List<CartItem> findByUserIdAndProductIdIn(Long userId, Collection<Long> productIds);
+    
     // 根据用户ID和商品ID查找购物车项
     Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId);
     
@@ -0,0 +1,42 @@
+package com.example.shopping_website.repository;
+
+import com.example.shopping_website.model.ImageBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, String> {
+    
+    // 增加引用计数，内容第一次出现时插入（一条语句完成）
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO image_blobs (content_hash, file_name, size_bytes, ref_count, created_at) " +
+                   "VALUES (:contentHash, :fileName, :sizeBytes, 1, NOW()) " +
+                   "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    int acquire(@Param("contentHash") String contentHash,
+                @Param("fileName") String fileName,
+                @Param("sizeBytes") long sizeBytes);
+    
+    // 减少引用计数
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImageBlob b SET b.refCount = b.refCount - 1 " +
+           "WHERE b.contentHash = :contentHash AND b.refCount > 0")
+    int release(@Param("contentHash") String contentHash);
+    
+    // 记录已生成的缩放图
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImageBlob b SET b.variants = :variants WHERE b.contentHash = :contentHash")
+    int updateVariants(@Param("contentHash") String contentHash, @Param("variants") String variants);
+    
+    // 删除已没有引用的记录，返回 1 时调用方删除文件
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ImageBlob b WHERE b.contentHash = :contentHash AND b.refCount <= 0")
+    int deleteUnreferenced(@Param("contentHash") String contentHash);
+}
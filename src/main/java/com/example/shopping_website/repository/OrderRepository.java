@@ -0,0 +1,39 @@
+package com.example.shopping_website.repository;
+
+import com.example.shopping_website.model.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OrderRepository extends JpaRepository<Order, Long> {
+    
+    // 根据订单号查找订单（含订单行）
+    @EntityGraph(attributePaths = "lines")
+    Optional<Order> findByOrderNo(String orderNo);
+    
+    // 用户的订单，最新的在前
+    List<Order> findByUserIdOrderByIdDesc(Long userId, Pageable pageable);
+    
+    // 订单状态
+    @Query("SELECT o.status FROM Order o WHERE o.orderNo = :orderNo")
+    Optional<Order.Status> findStatusByOrderNo(@Param("orderNo") String orderNo);
+    
+    // 某状态下创建时间早于 before 的订单，最早的在前
+    List<Order> findByStatusAndCreatedAtBeforeOrderById(Order.Status status, LocalDateTime before, Pageable pageable);
+    
+    // 条件修改订单状态：当前状态为 from 才修改，返回受影响行数（并发处理同一订单时只有一个成功）
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :to WHERE o.orderNo = :orderNo AND o.status = :from")
+    int updateStatus(@Param("orderNo") String orderNo,
+                     @Param("from") Order.Status from,
+                     @Param("to") Order.Status to);
+}
@@ -0,0 +1,49 @@
+package com.example.shopping_website.repository;
+
+import com.example.shopping_website.model.ProductImage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProductImageRepository extends JpaRepository<ProductImage, Long> {
+    
+    // 加写锁读取图片元数据（替换或删除图片前锁定，保证原图片的引用只释放一次）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM ProductImage i WHERE i.productId = :productId")
+    Optional<ProductImage> findByProductIdForUpdate(@Param("productId") Long productId);
+    
+    // 按商品ID顺序加写锁读取（批量删除时固定加锁顺序，避免死锁）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM ProductImage i WHERE i.productId IN :productIds ORDER BY i.productId")
+    List<ProductImage> findByProductIdInForUpdate(@Param("productIds") Collection<Long> productIds);
+    
+    // 插入新记录（商品还没有图片时）：已有记录时主键冲突，不会像 save 那样合并成更新
+    @Modifying
+    @Query(value = "INSERT INTO product_images (product_id, file_name, size_bytes, content_hash, content_type, " +
+                   "width, height, updated_at) VALUES (:#{#image.productId}, :#{#image.fileName}, :#{#image.sizeBytes}, " +
+                   ":#{#image.contentHash}, :#{#image.contentType}, :#{#image.width}, :#{#image.height}, " +
+                   ":#{#image.updatedAt})", nativeQuery = true)
+    int insert(@Param("image") ProductImage image);
+    
+    // 删除商品的图片元数据，返回受影响行数（不存在时为 0，不抛异常）
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProductImage i WHERE i.productId = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+    
+    // 批量删除图片元数据（商品删除事件）
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProductImage i WHERE i.productId IN :productIds")
+    int deleteByProductIdIn(@Param("productIds") Collection<Long> productIds);
+}
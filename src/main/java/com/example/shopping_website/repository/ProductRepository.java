@@ -1,12 +1,28 @@
 package com.example.shopping_website.repository;
 
+import com.example.shopping_website.dto.ProductAggregate;
+import com.example.shopping_website.dto.ProductCardDto;
+import com.example.shopping_website.dto.ProductExportRow;
+import com.example.shopping_website.dto.ProductOwnerPrice;
+import com.example.shopping_website.dto.ProductStockSnapshot;
 import com.example.shopping_website.model.Product;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -29,4 +45,120 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
            "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
            "p.stockQuantity > 0")
     List<Product> searchAvailableProducts(@Param("keyword") String keyword);
-}
\ No newline at end of file
+    
+    // ============== 游标分页（keyset）查询 ==============
+    // 只投影网格需要的列，description 在数据库端截断，避免整列 TEXT 进入堆内存
+    
+    // 第一页
+    @Query("SELECT new com.example.shopping_website.dto.ProductCardDto(" +
+           "p.id, p.name, SUBSTRING(p.description, 1, 120), p.price, p.imageUrl, p.stockQuantity, p.createdAt) " +
+           "FROM Product p ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductCardDto> findCardsFirstPage(Pageable pageable);
+    
+    // 游标之后的下一页（seek on created_at, id）
+    @Query("SELECT new com.example.shopping_website.dto.ProductCardDto(" +
+           "p.id, p.name, SUBSTRING(p.description, 1, 120), p.price, p.imageUrl, p.stockQuantity, p.createdAt) " +
+           "FROM Product p WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductCardDto> findCardsAfter(@Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+    
+    // 关键词搜索的第一页
+    @Query("SELECT new com.example.shopping_website.dto.ProductCardDto(" +
+           "p.id, p.name, SUBSTRING(p.description, 1, 120), p.price, p.imageUrl, p.stockQuantity, p.createdAt) " +
+           "FROM Product p WHERE " +
+           "LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductCardDto> searchCardsFirstPage(@Param("keyword") String keyword, Pageable pageable);
+    
+    // 关键词搜索的下一页
+    @Query("SELECT new com.example.shopping_website.dto.ProductCardDto(" +
+           "p.id, p.name, SUBSTRING(p.description, 1, 120), p.price, p.imageUrl, p.stockQuantity, p.createdAt) " +
+           "FROM Product p WHERE " +
+           "(LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
+           "(p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductCardDto> searchCardsAfter(@Param("keyword") String keyword,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") Long id,
+                                          Pageable pageable);
+    
+    // 条件扣减库存：库存足够且商品未开启分桶才扣减，返回受影响行数（0 表示库存不足、已分桶或商品不存在）
+    // 执行后清空持久化上下文，之后读取到的是最新库存
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity, p.updatedAt = LOCAL DATETIME " +
+           "WHERE p.id = :id AND p.stockQuantity >= :quantity " +
+           "AND NOT EXISTS (SELECT b.id FROM StockBucket b WHERE b.productId = p.id)")
+    int decrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+    
+    // 归还库存（结算失败时补偿）：商品未开启分桶才修改，返回受影响行数
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity, p.updatedAt = LOCAL DATETIME " +
+           "WHERE p.id = :id AND NOT EXISTS (SELECT b.id FROM StockBucket b WHERE b.productId = p.id)")
+    int incrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+    
+    // 写入展示库存（分桶商品由后台汇总后调用），值未变化时不更新
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = :quantity, p.updatedAt = LOCAL DATETIME " +
+           "WHERE p.id = :id AND p.stockQuantity <> :quantity")
+    int updateDisplayStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+    
+    // 加写锁读取商品（开启分桶时锁定库存）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+    
+    // 返回仍存在的商品ID（批量校验外键引用）
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    // 商家商品导出：只进只读的流式结果（需在事务内消费并关闭）
+    // fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行读取结果，不会把整个结果集缓存在内存中
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT new com.example.shopping_website.dto.ProductExportRow(" +
+           "p.id, p.name, p.description, p.price, p.stockQuantity, p.imageUrl, p.createdAt, p.updatedAt) " +
+           "FROM Product p WHERE p.user.id = :userId ORDER BY p.id")
+    Stream<ProductExportRow> streamExportRowsByUserId(@Param("userId") Long userId);
+    
+    // ============== 商家统计 ==============
+    
+    // 商家全部商品的数据库端聚合（商品数、库存总数、库存总价值）
+    @Query("SELECT new com.example.shopping_website.dto.ProductAggregate(" +
+           "COUNT(p), COALESCE(SUM(p.stockQuantity), 0L), COALESCE(SUM(p.price * p.stockQuantity), 0.0)) " +
+           "FROM Product p WHERE p.user.id = :userId")
+    ProductAggregate aggregateByUserId(@Param("userId") Long userId);
+    
+    // 商品当前的所有者、价格和库存（修改前读取，用于计算统计增量）
+    // 查询前不自动刷新：调用方已修改的托管实体不会先写入数据库，读到的仍是修改前的值
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query("SELECT new com.example.shopping_website.dto.ProductStockSnapshot(p.user.id, p.price, p.stockQuantity) " +
+           "FROM Product p WHERE p.id = :id")
+    Optional<ProductStockSnapshot> findStockSnapshot(@Param("id") Long id);
+    
+    // 加写锁读取所有者、价格和库存（改写库存前调整商家统计，锁到改写库存的事务结束）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.example.shopping_website.dto.ProductStockSnapshot(p.user.id, p.price, p.stockQuantity) " +
+           "FROM Product p WHERE p.id = :id")
+    Optional<ProductStockSnapshot> findStockSnapshotForUpdate(@Param("id") Long id);
+    
+    // 一批商品的所有者和当前价格（汇总库存增量到商家统计时使用）
+    @Query("SELECT new com.example.shopping_website.dto.ProductOwnerPrice(p.id, p.user.id, p.price) " +
+           "FROM Product p WHERE p.id IN :ids")
+    List<ProductOwnerPrice> findOwnerPrices(@Param("ids") Collection<Long> ids);
+    
+    // 商家库存最少的商品（商家后台的库存预警）
+    @Query("SELECT new com.example.shopping_website.dto.ProductCardDto(" +
+           "p.id, p.name, SUBSTRING(p.description, 1, 120), p.price, p.imageUrl, p.stockQuantity, p.createdAt) " +
+           "FROM Product p WHERE p.user.id = :userId AND p.stockQuantity <= :threshold " +
+           "ORDER BY p.stockQuantity, p.id")
+    List<ProductCardDto> findLowStockCards(@Param("userId") Long userId,
+                                           @Param("threshold") Integer threshold,
+                                           Pageable pageable);
+}
@@ -0,0 +1,35 @@
+package com.example.shopping_website.repository;
+
+import com.example.shopping_website.model.SellerStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SellerStatsRepository extends JpaRepository<SellerStats, Long> {
+    
+    // 增量更新商家统计，返回受影响行数（0 表示该商家还没有统计行，等下次读取时全量重算）
+    // 使用原生 SQL：JPQL 会把浮点参数包成 CAST，部分方言（如 H2）生成的 CAST 语法有误
+    @Modifying
+    @Query(value = "UPDATE seller_stats SET product_count = product_count + :count, " +
+                   "total_stock = total_stock + :stock, total_value = total_value + :value, " +
+                   "updated_at = NOW() WHERE user_id = :userId", nativeQuery = true)
+    int applyDelta(@Param("userId") Long userId,
+                   @Param("count") long count,
+                   @Param("stock") long stock,
+                   @Param("value") double value);
+    
+    // 写入全量重算结果（不存在则插入），并发重算时不会因主键冲突失败
+    @Modifying
+    @Query(value = "INSERT INTO seller_stats (user_id, product_count, total_stock, total_value, rebuilt_at, updated_at) " +
+                   "VALUES (:userId, :count, :stock, :value, NOW(), NOW()) " +
+                   "ON DUPLICATE KEY UPDATE product_count = VALUES(product_count), total_stock = VALUES(total_stock), " +
+                   "total_value = VALUES(total_value), rebuilt_at = VALUES(rebuilt_at), updated_at = VALUES(updated_at)",
+           nativeQuery = true)
+    int upsert(@Param("userId") Long userId,
+               @Param("count") long count,
+               @Param("stock") long stock,
+               @Param("value") double value);
+}
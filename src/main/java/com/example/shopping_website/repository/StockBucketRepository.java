@@ -0,0 +1,67 @@
+package com.example.shopping_website.repository;
+
+import com.example.shopping_website.model.StockBucket;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockBucketRepository extends JpaRepository<StockBucket, Long> {
+    
+    // 按桶序号读取商品的所有分桶
+    List<StockBucket> findByProductIdOrderByBucketIndex(Long productId);
+    
+    // 加写锁读取商品的所有分桶（调整分桶或关闭分桶时使用）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StockBucket b WHERE b.productId = :productId ORDER BY b.bucketIndex")
+    List<StockBucket> findByProductIdForUpdate(@Param("productId") Long productId);
+    
+    // 加写锁读取商品序号不小于 fromIndex 的分桶（按桶序号升序加锁）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StockBucket b WHERE b.productId = :productId AND b.bucketIndex >= :fromIndex " +
+           "ORDER BY b.bucketIndex")
+    List<StockBucket> findFromIndexForUpdate(@Param("productId") Long productId,
+                                             @Param("fromIndex") Integer fromIndex);
+    
+    // 单个桶的库存（不加锁），桶不存在返回 null
+    @Query("SELECT b.quantity FROM StockBucket b WHERE b.productId = :productId AND b.bucketIndex = :bucketIndex")
+    Integer findQuantity(@Param("productId") Long productId, @Param("bucketIndex") Integer bucketIndex);
+    
+    // 商品的分桶数（0 表示未开启分桶）
+    long countByProductId(Long productId);
+    
+    // 已开启分桶的商品ID
+    @Query("SELECT DISTINCT b.productId FROM StockBucket b")
+    List<Long> findShardedProductIds();
+    
+    // 商品各桶库存之和
+    @Query("SELECT COALESCE(SUM(b.quantity), 0) FROM StockBucket b WHERE b.productId = :productId")
+    Integer sumQuantityByProductId(@Param("productId") Long productId);
+    
+    // 条件扣减单个桶：库存足够才扣减，返回受影响行数
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE StockBucket b SET b.quantity = b.quantity - :quantity " +
+           "WHERE b.productId = :productId AND b.bucketIndex = :bucketIndex AND b.quantity >= :quantity")
+    int decrement(@Param("productId") Long productId,
+                  @Param("bucketIndex") Integer bucketIndex,
+                  @Param("quantity") Integer quantity);
+    
+    // 归还单个桶的库存（借用失败时回滚已扣减的部分）
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE StockBucket b SET b.quantity = b.quantity + :quantity " +
+           "WHERE b.productId = :productId AND b.bucketIndex = :bucketIndex")
+    int increment(@Param("productId") Long productId,
+                  @Param("bucketIndex") Integer bucketIndex,
+                  @Param("quantity") Integer quantity);
+    
+    // 删除商品的所有分桶
+    @Modifying
+    @Query("DELETE FROM StockBucket b WHERE b.productId = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+}
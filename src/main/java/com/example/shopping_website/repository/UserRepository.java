@@ -1,7 +1,11 @@
 package com.example.shopping_website.repository;
 
 import com.example.shopping_website.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,11 +13,22 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     
+    // 登录和权限判断都需要角色，一次 JOIN 加载
+    @EntityGraph(attributePaths = "roles")
     Optional<User> findByUsername(String username);
     
+    // 按ID加载用户及其角色（用户缓存未命中时使用）
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesById(Long id);
+    
     Optional<User> findByEmail(String email);
     
     Boolean existsByUsername(String username);
     
     Boolean existsByEmail(String email);
+    
+    // 只更新密码哈希（登录时按新的哈希配置升级）
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
 }
\ No newline at end of file
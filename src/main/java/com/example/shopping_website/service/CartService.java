@@ -1,16 +1,24 @@
 package com.example.shopping_website.service;
 
+import com.example.shopping_website.dto.CartLineDto;
+import com.example.shopping_website.dto.CartSummary;
+import com.example.shopping_website.dto.CheckoutReservation;
 import com.example.shopping_website.model.CartItem;
 import com.example.shopping_website.model.Product;
-import com.example.shopping_website.model.User;
 import com.example.shopping_website.repository.CartItemRepository;
-import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.service.cache.CartSummaryCache;
+import com.example.shopping_website.service.cart.CartStore;
+import com.example.shopping_website.service.inventory.InventoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 @Service
 public class CartService {
@@ -19,27 +27,49 @@ public class CartService {
     private CartItemRepository cartItemRepository;
     
     @Autowired
-    private ProductRepository productRepository;
+    private ProductService productService;
     
     @Autowired
-    private UserService userService;
+    private CartSummaryCache cartSummaryCache;
+    
+    @Autowired
+    private CartStore cartStore;
+    
+    @Autowired
+    private InventoryService inventoryService;
     
     // 获取用户的购物车商品
     public List<CartItem> getCartItemsByUser(Long userId) {
         return cartItemRepository.findByUserId(userId);
     }
     
+    // 获取购物车页面展示用的行
+    public List<CartLineDto> getCartLines(Long userId) {
+        return cartStore.getLines(userId);
+    }
+    
+    // 获取购物车汇总（行、总件数、总价、种类数），按用户缓存，购物车或其中的商品变更时失效
+    public CartSummary getCartSummary(Long userId) {
+        CartSummary cached = cartSummaryCache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = cartSummaryCache.stamp();
+        CartSummary summary = CartSummary.of(getCartLines(userId));
+        cartSummaryCache.put(userId, summary, stamp);
+        return summary;
+    }
+    
     // 获取用户的购物车商品数量
     public Integer getCartItemCount(Long userId) {
-        Integer count = cartItemRepository.countTotalItemsByUserId(userId);
-        return count != null ? count : 0;
+        return getCartSummary(userId).getTotalQuantity();
     }
     
     // 添加商品到购物车
     @Transactional
-    public CartItem addToCart(Long userId, Long productId, Integer quantity) {
-        // 检查商品是否存在
-        Product product = productRepository.findById(productId)
+    public void addToCart(Long userId, Long productId, Integer quantity) {
+        // 检查商品是否存在（读商品缓存，结算时会再次校验库存）
+        Product product = productService.getProductById(productId)
             .orElseThrow(() -> new RuntimeException("商品不存在"));
         
         // 检查库存
@@ -47,105 +77,122 @@ public class CartService {
             throw new RuntimeException("库存不足，当前库存: " + product.getStockQuantity());
         }
         
-        // 检查是否已经在购物车中
-        Optional<CartItem> existingItem = cartItemRepository.findByUserIdAndProductId(userId, productId);
-        
-        if (existingItem.isPresent()) {
-            // 如果已存在，更新数量
-            CartItem cartItem = existingItem.get();
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-            return cartItemRepository.save(cartItem);
-        } else {
-            // 如果不存在，创建新的购物车项
-            User user = userService.getUserById(userId)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-            
-            CartItem cartItem = new CartItem();
-            cartItem.setUser(user);
-            cartItem.setProduct(product);
-            cartItem.setQuantity(quantity);
-            
-            return cartItemRepository.save(cartItem);
-        }
+        // 已在购物车中则累加数量，否则新增
+        cartStore.add(userId, productId, quantity);
+        invalidateSummary(userId);
     }
     
     // 更新购物车商品数量
     @Transactional
-    public CartItem updateCartItemQuantity(Long cartItemId, Integer quantity) {
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-            .orElseThrow(() -> new RuntimeException("购物车商品不存在"));
-        
-        // 检查库存
-        if (cartItem.getProduct().getStockQuantity() < quantity) {
-            throw new RuntimeException("库存不足，当前库存: " + cartItem.getProduct().getStockQuantity());
+    public void updateCartItemQuantity(Long userId, Long productId, Integer quantity) {
+        if (cartStore.getQuantity(userId, productId) == 0) {
+            throw new RuntimeException("购物车商品不存在");
         }
         
-        if (quantity <= 0) {
-            // 如果数量小于等于0，删除该商品
-            cartItemRepository.delete(cartItem);
-            return null;
+        // 检查库存
+        Product product = productService.getProductById(productId)
+            .orElseThrow(() -> new RuntimeException("商品不存在"));
+        if (product.getStockQuantity() < quantity) {
+            throw new RuntimeException("库存不足，当前库存: " + product.getStockQuantity());
         }
         
-        cartItem.setQuantity(quantity);
-        return cartItemRepository.save(cartItem);
+        // 数量小于等于0时删除该商品
+        cartStore.setQuantity(userId, productId, quantity);
+        invalidateSummary(userId);
     }
     
     // 从购物车中移除商品
     @Transactional
-    public void removeFromCart(Long cartItemId) {
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-            .orElseThrow(() -> new RuntimeException("购物车商品不存在"));
+    public void removeFromCart(Long userId, Long productId) {
+        if (cartStore.getQuantity(userId, productId) == 0) {
+            throw new RuntimeException("购物车商品不存在");
+        }
         
-        cartItemRepository.delete(cartItem);
+        cartStore.remove(userId, productId);
+        invalidateSummary(userId);
     }
     
     // 清空购物车
     @Transactional
     public void clearCart(Long userId) {
-        cartItemRepository.deleteByUserId(userId);
+        cartStore.clear(userId);
+        invalidateSummary(userId);
     }
     
     // 计算购物车总价
     public Double calculateTotalPrice(Long userId) {
-        Double total = cartItemRepository.calculateTotalPriceByUserId(userId);
-        return total != null ? total : 0.0;
+        return getCartSummary(userId).getTotalPrice();
     }
     
     // 检查购物车是否为空
     public boolean isCartEmpty(Long userId) {
-        return !cartItemRepository.existsByUserId(userId);
+        return getCartSummary(userId).isEmpty();
     }
 
-    // 结算并更新库存
+    // 结算第一步：读取购物车权威快照并扣减库存（同步执行，任一商品库存不足则整体回滚）
     @Transactional
-    public void checkoutAndUpdateStock(Long userId) {
-        // 1. 获取用户购物车中的所有商品
+    public CheckoutReservation reserveCheckout(Long userId) {
+        // 内存购物车先在本事务内回写，读到的是权威快照
+        cartStore.beforeCheckout(userId);
         List<CartItem> cartItems = getCartItemsByUser(userId);
         
         if (cartItems == null || cartItems.isEmpty()) {
             throw new RuntimeException("购物车为空，无法结算");
         }
         
-        // 2. 验证库存并扣减
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        List<CartLineDto> lines = new ArrayList<>(cartItems.size());
+        int totalQuantity = 0;
+        double totalPrice = 0.0;
         for (CartItem cartItem : cartItems) {
             Product product = cartItem.getProduct();
-            Integer quantity = cartItem.getQuantity();
-            
-            // 再次验证库存（防止在加入购物车后库存发生变化）
-            if (product.getStockQuantity() < quantity) {
-                throw new RuntimeException("商品【" + product.getName() + "】库存不足，当前库存: " + product.getStockQuantity());
+            quantities.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
+            lines.add(new CartLineDto(cartItem.getId(), product.getId(), product.getName(), product.getPrice(),
+                product.getImageUrl(), product.getStockQuantity(), cartItem.getQuantity()));
+            totalQuantity += cartItem.getQuantity();
+            totalPrice += cartItem.getSubtotal();
+        }
+        
+        // 按商品ID顺序条件扣减库存，库存不足时报告每个不足的商品
+        inventoryService.reserve(quantities, userId);
+        
+        System.out.println("扣减库存成功 - 用户ID: " + userId + ", 商品种类: " + quantities.size() +
+                           ", 总件数: " + totalQuantity);
+        return new CheckoutReservation(quantities, lines, totalQuantity, totalPrice);
+    }
+    
+    // 结算第二步：从购物车中减去已结算的数量（期间又加购的部分保留）
+    @Transactional
+    public void completeCheckout(Long userId, Map<Long, Integer> quantities) {
+        List<CartItem> toSave = new ArrayList<>();
+        List<CartItem> toDelete = new ArrayList<>();
+        for (CartItem cartItem : cartItemRepository.findByUserIdAndProductIdIn(userId, quantities.keySet())) {
+            int remaining = cartItem.getQuantity() - quantities.getOrDefault(cartItem.getProduct().getId(), 0);
+            if (remaining > 0) {
+                cartItem.setQuantity(remaining);
+                toSave.add(cartItem);
+            } else {
+                toDelete.add(cartItem);
             }
-            
-            // 扣减库存
-            product.setStockQuantity(product.getStockQuantity() - quantity);
-            productRepository.save(product);
-            
-            System.out.println("扣减库存成功 - 商品: " + product.getName() + 
-                            ", 扣减数量: " + quantity + 
-                            ", 剩余库存: " + product.getStockQuantity());
         }
+        cartItemRepository.saveAll(toSave);
+        cartItemRepository.deleteAllInBatch(toDelete);
         
-        // 3. 清空购物车
-        clearCart(userId);
+        cartStore.afterCheckout(userId, quantities);
+        invalidateSummary(userId);
+    }
+    
+    // 使购物车汇总缓存失效：立即失效一次，事务提交后再失效一次，
+    // 避免提交前有并发读取把旧数据重新放回缓存
+    private void invalidateSummary(Long userId) {
+        cartSummaryCache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cartSummaryCache.invalidate(userId);
+                }
+            });
+        }
     }
 }
\ No newline at end of file
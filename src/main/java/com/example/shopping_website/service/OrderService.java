@@ -0,0 +1,82 @@
+package com.example.shopping_website.service;
+
+import com.example.shopping_website.dto.CartLineDto;
+import com.example.shopping_website.model.Order;
+import com.example.shopping_website.model.OrderLine;
+import com.example.shopping_website.repository.OrderRepository;
+import com.example.shopping_website.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class OrderService {
+    
+    @Autowired
+    private OrderRepository orderRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    // 根据结算时的购物车快照构建待处理订单（不保存）
+    public Order buildOrder(String orderNo, Long userId, List<CartLineDto> lines) {
+        Order order = new Order();
+        order.setOrderNo(orderNo);
+        order.setUser(userRepository.getReferenceById(userId));
+        
+        int totalQuantity = 0;
+        double totalPrice = 0.0;
+        for (CartLineDto line : lines) {
+            OrderLine orderLine = new OrderLine();
+            orderLine.setProductId(line.getProductId());
+            orderLine.setProductName(line.getName());
+            orderLine.setUnitPrice(line.getPrice());
+            orderLine.setQuantity(line.getQuantity());
+            order.addLine(orderLine);
+            
+            totalQuantity += line.getQuantity();
+            totalPrice += line.getSubtotal();
+        }
+        order.setTotalQuantity(totalQuantity);
+        order.setTotalPrice(totalPrice);
+        return order;
+    }
+    
+    // 批量保存订单：主键预分配，订单和订单行分别按批插入
+    @Transactional
+    public List<Order> placeOrders(List<Order> orders) {
+        return orderRepository.saveAll(orders);
+    }
+    
+    // 根据订单号查找订单
+    public Optional<Order> getOrderByOrderNo(String orderNo) {
+        return orderRepository.findByOrderNo(orderNo);
+    }
+    
+    // 订单状态，订单不存在返回 null
+    public Order.Status getOrderStatus(String orderNo) {
+        return orderRepository.findStatusByOrderNo(orderNo).orElse(null);
+    }
+    
+    // 条件修改订单状态，当前状态不是 from 时返回 false
+    @Transactional
+    public boolean updateStatus(String orderNo, Order.Status from, Order.Status to) {
+        return orderRepository.updateStatus(orderNo, from, to) == 1;
+    }
+    
+    // 创建时间早于 before 的待处理订单，最早的在前
+    public List<Order> getPendingOrders(LocalDateTime before, int limit) {
+        return orderRepository.findByStatusAndCreatedAtBeforeOrderById(Order.Status.PENDING, before,
+            PageRequest.of(0, limit));
+    }
+    
+    // 获取用户最近的订单
+    public List<Order> getRecentOrdersByUser(Long userId, int limit) {
+        return orderRepository.findByUserIdOrderByIdDesc(userId, PageRequest.of(0, limit));
+    }
+}
@@ -1,12 +1,26 @@
 package com.example.shopping_website.service;
 
+import com.example.shopping_website.dto.ProductCardDto;
+import com.example.shopping_website.dto.ProductSlice;
+import com.example.shopping_website.dto.ProductStockSnapshot;
 import com.example.shopping_website.model.Product;
 import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.service.cache.ProductCache;
+import com.example.shopping_website.service.inventory.HotSkuInventory;
+import com.example.shopping_website.service.search.ProductSearchIndex;
+import com.example.shopping_website.util.FileUploadUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
@@ -14,30 +28,99 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
     
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+    
+    @Autowired
+    private ProductSearchIndex searchIndex;
+    
+    @Autowired
+    private ProductCache productCache;
+    
+    @Autowired
+    private SellerStatsService sellerStatsService;
+    
+    @Autowired
+    private HotSkuInventory hotSkuInventory;
+    
+    // 每页默认商品数
+    @Value("${app.catalog.page-size:24}")
+    private int defaultPageSize;
+    
+    // 每页最大商品数
+    @Value("${app.catalog.max-page-size:100}")
+    private int maxPageSize;
+    
+    // 库存预警阈值（库存不超过该值的商品显示在商家后台）
+    @Value("${app.seller-stats.low-stock-threshold:5}")
+    private int lowStockThreshold;
+    
     // 获取所有商品
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
     
-    // 获取商品详情（返回Optional）
+    // 获取商品详情（返回Optional，优先读缓存）；返回的是只读副本，修改商品请使用 findProductForUpdate
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        Product cached = productCache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long generation = productCache.generation(id);
+        Optional<Product> product = productRepository.findById(id);
+        product.ifPresent(p -> productCache.put(p, generation));
+        return product;
     }
     
     // 获取商品详情（返回Product，如果不存在则抛出异常）
     public Product findProductById(Long id) {
+        return getProductById(id)
+            .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + id));
+    }
+    
+    // 读取要修改或删除的商品（不经过缓存，返回数据库中的实体）
+    public Product findProductForUpdate(Long id) {
         return productRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + id));
     }
     
-    // 保存商品
+    // 商品当前的所有者、价格和库存（修改商品前调用，用于计算商家统计的增量）
+    // 修改要在读取之后：同一请求中的托管实体被修改后，再查询数据库会先自动刷新，读到的是修改后的值
+    public ProductStockSnapshot snapshotOf(Product product) {
+        Long userId = product.getUser() != null ? product.getUser().getId() : null;
+        return new ProductStockSnapshot(userId, product.getPrice(), product.getStockQuantity());
+    }
+    
+    // 保存商品（新建或未托管的商品，修改前的统计快照从数据库读取）
+    @Transactional
     public Product saveProduct(Product product) {
-        return productRepository.save(product);
+        ProductStockSnapshot before = product.getId() != null
+            ? productRepository.findStockSnapshot(product.getId()).orElse(null)
+            : null;
+        return saveProduct(product, before);
+    }
+    
+    // 保存修改后的商品（缓存同步失效，搜索索引由提交后的变更事件异步更新，商家统计和分桶库存在同一事务中更新）
+    // @param before 修改前用 snapshotOf 读取的快照，新商品为 null
+    @Transactional
+    public Product saveProduct(Product product, ProductStockSnapshot before) {
+        Product saved = productRepository.save(product);
+        sellerStatsService.onProductSaved(before, saved);
+        if (before != null && saved.getStockQuantity() != null
+                && !Objects.equals(before.getStockQuantity(), saved.getStockQuantity())) {
+            // 分桶的热点商品按新库存重新拆分，与商品库存一起提交或回滚
+            hotSkuInventory.resetStock(saved.getId(), saved.getStockQuantity());
+        }
+        productCache.invalidate(saved.getId());
+        return saved;
     }
     
     // 删除商品
+    @Transactional
     public void deleteProduct(Long id) {
+        productRepository.findStockSnapshot(id).ifPresent(sellerStatsService::onProductDeleted);
         productRepository.deleteById(id);
+        productCache.invalidate(id);
     }
     
     // 获取用户的所有商品
@@ -45,11 +128,110 @@ public class ProductService {
         return productRepository.findByUserId(userId);
     }
     
-    // 搜索商品
+    // 商家库存最少的商品（最多 limit 个）
+    public List<ProductCardDto> getLowStockProducts(Long userId, int limit) {
+        List<ProductCardDto> cards = productRepository.findLowStockCards(userId, lowStockThreshold, PageRequest.of(0, limit));
+        for (ProductCardDto card : cards) {
+            card.setImageUrl(fileUploadUtil.getImageUrl(card.getImageUrl()));
+        }
+        return cards;
+    }
+    
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+    
+    // 搜索商品（按相关度排序，索引未就绪时回退到数据库查询）
     public List<Product> searchProducts(String keyword) {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllProducts();
         }
-        return productRepository.searchProducts(keyword.trim());
+        if (!searchIndex.isReady()) {
+            return productRepository.searchProducts(keyword.trim());
+        }
+        
+        List<Long> ids = searchIndex.search(keyword.trim(), 0, Integer.MAX_VALUE).getHits().stream()
+            .map(ProductCardDto::getId)
+            .collect(Collectors.toList());
+        Map<Long, Product> byId = productRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+            .map(byId::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+    
+    // ============== 游标分页 ==============
+    
+    /**
+     * 按发布时间倒序分页获取商品卡片
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     * @param size 每页数量，为空或非法时使用默认值
+     */
+    public ProductSlice getProductPage(String cursor, Integer size) {
+        int pageSize = resolvePageSize(size);
+        // 多取一条用于判断是否还有下一页
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+    
+        ProductSlice.Cursor position = ProductSlice.decodeCursor(cursor);
+        List<ProductCardDto> rows = position == null
+            ? productRepository.findCardsFirstPage(limit)
+            : productRepository.findCardsAfter(position.getCreatedAt(), position.getId(), limit);
+    
+        return toSlice(rows, pageSize);
+    }
+    
+    /**
+     * 按关键词分页搜索商品卡片，关键词为空时等同于 getProductPage
+     * 索引就绪时完全在内存中按 BM25 相关度排序，否则回退到数据库 LIKE 查询
+     */
+    public ProductSlice searchProductPage(String keyword, String cursor, Integer size) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return getProductPage(cursor, size);
+        }
+        
+        int pageSize = resolvePageSize(size);
+        String trimmed = keyword.trim();
+        
+        if (searchIndex.isReady()) {
+            int offset = ProductSlice.decodeOffsetCursor(cursor);
+            ProductSearchIndex.SearchHits result = searchIndex.search(trimmed, offset, pageSize);
+            int nextOffset = offset + result.getHits().size();
+            String nextCursor = nextOffset < result.getTotal()
+                ? ProductSlice.encodeOffsetCursor(nextOffset)
+                : null;
+            return new ProductSlice(result.getHits(), nextCursor);
+        }
+        
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        ProductSlice.Cursor position = ProductSlice.decodeCursor(cursor);
+        List<ProductCardDto> rows = position == null
+            ? productRepository.searchCardsFirstPage(trimmed, limit)
+            : productRepository.searchCardsAfter(trimmed, position.getCreatedAt(), position.getId(), limit);
+        
+        return toSlice(rows, pageSize);
+    }
+    
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
+    
+    private ProductSlice toSlice(List<ProductCardDto> rows, int pageSize) {
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            ProductCardDto last = rows.get(pageSize - 1);
+            nextCursor = ProductSlice.encodeCursor(last.getCreatedAt(), last.getId());
+        }
+    
+        // 统一处理图片URL
+        for (ProductCardDto card : rows) {
+            card.setImageUrl(fileUploadUtil.getImageUrl(card.getImageUrl()));
+        }
+    
+        return new ProductSlice(rows, nextCursor);
     }
 }
\ No newline at end of file
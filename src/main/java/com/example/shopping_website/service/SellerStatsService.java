@@ -0,0 +1,287 @@
+package com.example.shopping_website.service;
+
+import com.example.shopping_website.dto.ProductAggregate;
+import com.example.shopping_website.dto.ProductOwnerPrice;
+import com.example.shopping_website.dto.ProductStockSnapshot;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.model.SellerStats;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.SellerStatsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商家统计（商品数、库存总数、库存总价值）
+ * - 商品增删改在调用方事务中增量更新 seller_stats，读取时不汇总商品
+ * - 结算扣减/归还库存不在结算事务中更新：提交后按商品累计，后台线程定时按商家汇总，
+ *   按商家ID升序在一个短事务中写入（结算事务不再锁商家统计行，热门商家的统计行也不会成为热点）
+ * - 统计行不存在或距上次全量重算超过 rebuild-interval 时，用一条 SQL 聚合重算
+ *   （修正增量更新期间并发重算造成的遗漏、未写入的库存增量以及浮点累计误差）
+ */
+@Service
+public class SellerStatsService {
+
+    @Autowired
+    private SellerStatsRepository sellerStatsRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 全量重算间隔（分钟）
+    @Value("${app.seller-stats.rebuild-interval-minutes:60}")
+    private long rebuildIntervalMinutes;
+
+    // 库存增量写入商家统计的间隔（毫秒）
+    @Value("${app.seller-stats.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService flusher;
+
+    // 已提交、尚未写入商家统计的库存增量：商品ID -> 增量
+    private final ConcurrentHashMap<Long, Long> pendingStockDeltas = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedProductCount = new AtomicLong();
+    private final AtomicLong flushedSellerCount = new AtomicLong();
+    private final AtomicLong flushFailureCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "seller-stats-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        flushQuietly();
+    }
+
+    /**
+     * 读取商家统计，必要时全量重算
+     */
+    @Transactional
+    public SellerStats getStats(Long userId) {
+        SellerStats stats = sellerStatsRepository.findById(userId).orElse(null);
+        if (stats == null || stats.getRebuiltAt() == null
+                || stats.getRebuiltAt().isBefore(LocalDateTime.now().minusMinutes(rebuildIntervalMinutes))) {
+            return rebuild(userId);
+        }
+        return stats;
+    }
+
+    /**
+     * 用 SQL 聚合全量重算商家统计
+     */
+    @Transactional
+    public SellerStats rebuild(Long userId) {
+        ProductAggregate aggregate = productRepository.aggregateByUserId(userId);
+        long count = aggregate.getProductCount() != null ? aggregate.getProductCount() : 0;
+        long stock = aggregate.getTotalStock() != null ? aggregate.getTotalStock() : 0;
+        double value = aggregate.getTotalValue() != null ? aggregate.getTotalValue() : 0.0;
+        sellerStatsRepository.upsert(userId, count, stock, value);
+
+        LocalDateTime now = LocalDateTime.now();
+        return new SellerStats(userId, count, stock, value, now, now);
+    }
+
+    // ============== 增量更新（在调用方事务中执行） ==============
+
+    /**
+     * 商品保存后调用
+     * @param before 保存前的状态，新商品为 null
+     */
+    @Transactional
+    public void onProductSaved(ProductStockSnapshot before, Product saved) {
+        Long userId = saved.getUser() != null ? saved.getUser().getId() : null;
+        ProductStockSnapshot after = new ProductStockSnapshot(userId, saved.getPrice(), saved.getStockQuantity());
+        if (before != null && Objects.equals(before.getUserId(), after.getUserId())) {
+            long stockDelta = stockOf(after) - stockOf(before);
+            double valueDelta = valueOf(after) - valueOf(before);
+            if (stockDelta != 0 || valueDelta != 0) {
+                applyDelta(userId, 0, stockDelta, valueDelta);
+            }
+            return;
+        }
+        if (before != null) {
+            onProductDeleted(before);
+        }
+        applyDelta(userId, 1, stockOf(after), valueOf(after));
+    }
+
+    /**
+     * 一批新商品保存后调用（批量导入）
+     */
+    @Transactional
+    public void onProductsCreated(Long userId, List<Product> products) {
+        long stock = 0;
+        double value = 0;
+        for (Product product : products) {
+            ProductStockSnapshot snapshot = new ProductStockSnapshot(userId, product.getPrice(), product.getStockQuantity());
+            stock += stockOf(snapshot);
+            value += valueOf(snapshot);
+        }
+        applyDelta(userId, products.size(), stock, value);
+    }
+
+    /**
+     * 商品删除时调用
+     */
+    @Transactional
+    public void onProductDeleted(ProductStockSnapshot before) {
+        applyDelta(before.getUserId(), -1, -stockOf(before), -valueOf(before));
+    }
+
+    /**
+     * 商品库存按增量变化（结算扣减、失败归还）
+     * 不在调用方事务中写库：事务提交后累计到待写入增量，由后台线程汇总写入；回滚时丢弃
+     */
+    public void onStockChanged(Long productId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingStockDeltas.merge(productId, (long) delta, Long::sum);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pendingStockDeltas.merge(productId, (long) delta, Long::sum);
+            }
+        });
+    }
+
+    /**
+     * 把待写入的库存增量按商家汇总后写入（价值按商品当前价格计算，商品已删除的增量丢弃）
+     * 商家按ID升序更新，多个节点同时写入也不会死锁；失败时增量放回，下次重试
+     */
+    public void flush() {
+        Map<Long, Long> drained = new HashMap<>();
+        for (Long productId : pendingStockDeltas.keySet()) {
+            Long delta = pendingStockDeltas.remove(productId);
+            if (delta != null && delta != 0) {
+                drained.put(productId, delta);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        try {
+            int sellers = transactionTemplate.execute(status -> {
+                Map<Long, SellerDelta> bySeller = new TreeMap<>();
+                for (ProductOwnerPrice owner : productRepository.findOwnerPrices(drained.keySet())) {
+                    if (owner.getUserId() == null) {
+                        continue;
+                    }
+                    long delta = drained.get(owner.getProductId());
+                    SellerDelta sellerDelta = bySeller.computeIfAbsent(owner.getUserId(), id -> new SellerDelta());
+                    sellerDelta.stock += delta;
+                    sellerDelta.value += owner.getPrice() != null ? delta * owner.getPrice() : 0;
+                }
+                bySeller.forEach((userId, sellerDelta) -> applyDelta(userId, 0, sellerDelta.stock, sellerDelta.value));
+                return bySeller.size();
+            });
+            flushCount.incrementAndGet();
+            flushedProductCount.addAndGet(drained.size());
+            flushedSellerCount.addAndGet(sellers);
+        } catch (RuntimeException e) {
+            drained.forEach((productId, delta) -> pendingStockDeltas.merge(productId, delta, Long::sum));
+            flushFailureCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pendingProducts", pendingStockDeltas.size());
+        metrics.put("flushes", flushCount.get());
+        metrics.put("flushedProducts", flushedProductCount.get());
+        metrics.put("flushedSellers", flushedSellerCount.get());
+        metrics.put("flushFailures", flushFailureCount.get());
+        return metrics;
+    }
+
+    /**
+     * 商品库存将被直接改写（分桶库存汇总、关闭分桶），需在改写之前、同一事务中调用
+     * 先锁住商品行读取所有者、价格和当前库存，再按差值更新该商家的统计行（不使用 UPDATE ... JOIN 等 MySQL 专有语法）
+     */
+    @Transactional
+    public void onStockReset(Long productId, int quantity) {
+        ProductStockSnapshot current = productRepository.findStockSnapshotForUpdate(productId).orElse(null);
+        if (current == null) {
+            return;
+        }
+        long stockDelta = quantity - stockOf(current);
+        if (stockDelta != 0) {
+            double price = current.getPrice() != null ? current.getPrice() : 0;
+            applyDelta(current.getUserId(), 0, stockDelta, stockDelta * price);
+        }
+    }
+
+    private void applyDelta(Long userId, long count, long stock, double value) {
+        if (userId != null) {
+            sellerStatsRepository.applyDelta(userId, count, stock, value);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("写入商家库存统计失败，稍后重试: " + e.getMessage());
+        }
+    }
+
+    private static long stockOf(ProductStockSnapshot snapshot) {
+        return snapshot.getStockQuantity() != null ? snapshot.getStockQuantity() : 0;
+    }
+
+    private static double valueOf(ProductStockSnapshot snapshot) {
+        if (snapshot.getPrice() == null || snapshot.getStockQuantity() == null) {
+            return 0;
+        }
+        return snapshot.getPrice() * snapshot.getStockQuantity();
+    }
+
+    /**
+     * 单个商家待写入的库存和价值增量
+     */
+    private static final class SellerDelta {
+        private long stock;
+        private double value;
+    }
+}
@@ -1,24 +1,31 @@
 package com.example.shopping_website.service;
 
-import com.example.shopping_website.model.Role;
 import com.example.shopping_website.model.User;
 import com.example.shopping_website.repository.UserRepository;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import com.example.shopping_website.service.auth.AuthenticatedUser;
+import com.example.shopping_website.service.auth.PasswordHashingService;
+import com.example.shopping_website.service.cache.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.stream.Collectors;
-
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     
     private final UserRepository userRepository;
     
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    private final UserCache userCache;
+    
+    private final PasswordHashingService passwordHashingService;
+    
+    public UserDetailsServiceImpl(UserRepository userRepository, UserCache userCache,
+                                  PasswordHashingService passwordHashingService) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.passwordHashingService = passwordHashingService;
     }
     
     @Override
@@ -33,12 +40,23 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             throw new UsernameNotFoundException("用户账户已被禁用");
         }
         
-        return new org.springframework.security.core.userdetails.User(
-            user.getUsername(),
-            user.getPassword(),
-            user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getName().name()))
-                .collect(Collectors.toList())
-        );
+        // 用户ID、用户名和角色保存在认证主体中，之后的请求不再查询用户表
+        return AuthenticatedUser.of(user);
+    }
+    
+    /**
+     * 登录成功后，如果密码哈希的算法或强度与当前配置不同，由 Spring Security 传入按当前配置重新计算的哈希
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        passwordHashingService.recordUpgrade();
+        if (user instanceof AuthenticatedUser authenticatedUser) {
+            userCache.invalidate(authenticatedUser.getId());
+            return new AuthenticatedUser(authenticatedUser.getId(), authenticatedUser.getUsername(), newPassword,
+                authenticatedUser.getRoles(), authenticatedUser.isEnabled());
+        }
+        return loadUserByUsername(user.getUsername());
     }
 }
\ No newline at end of file
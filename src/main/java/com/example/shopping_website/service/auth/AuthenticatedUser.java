@@ -0,0 +1,128 @@
+package com.example.shopping_website.service.auth;
+
+import com.example.shopping_website.model.Role;
+import com.example.shopping_website.model.User;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.io.Serial;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 登录用户的认证主体
+ * 登录时由 UserDetailsServiceImpl 从数据库加载一次，保存用户ID、用户名和角色，
+ * 之后的请求直接从 SecurityContext 中读取，不再按用户名查询 users 表
+ * 密码只在登录校验时使用，认证成功后由 Spring Security 擦除
+ */
+public class AuthenticatedUser implements UserDetails, CredentialsContainer {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+
+    private final String username;
+
+    private String password;
+
+    private final Set<String> roles;
+
+    private final boolean enabled;
+
+    public AuthenticatedUser(Long id, String username, String password, Set<String> roles, boolean enabled) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.roles = Collections.unmodifiableSet(new LinkedHashSet<>(roles));
+        this.enabled = enabled;
+    }
+
+    /**
+     * 从用户实体创建（角色需已加载）
+     */
+    public static AuthenticatedUser of(User user) {
+        Set<String> roles = user.getRoles().stream()
+            .map(Role::getNameString)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getPassword(), roles, user.isEnabled());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * 角色名称，如 ROLE_SELLER
+     */
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public boolean hasRole(Role.RoleName role) {
+        return roles.contains(role.name());
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return roles.stream()
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+
+    // 与 Spring Security 自带的 User 一致，按用户名判断相等（会话并发控制依赖于此）
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof AuthenticatedUser && username.equals(((AuthenticatedUser) other).username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedUser[id=" + id + ", username=" + username + ", roles=" + roles + "]";
+    }
+}
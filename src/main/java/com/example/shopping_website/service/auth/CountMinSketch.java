@@ -0,0 +1,71 @@
+package com.example.shopping_website.service.auth;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min Sketch：固定内存的近似计数（只会高估，不会低估）
+ * depth 行 × width 列的计数器，每个键在每行命中一个计数器，估计值取各行最小值
+ * 计数器是原子整数，读写都不加锁
+ */
+public class CountMinSketch {
+
+    private final int depth;
+
+    private final int mask;
+
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param depth 行数（哈希函数个数）
+     * @param width 每行计数器个数，向上取整为 2 的幂
+     */
+    public CountMinSketch(int depth, int width) {
+        this.depth = Math.max(1, depth);
+        int columns = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+        this.mask = columns - 1;
+        this.counters = new AtomicIntegerArray(this.depth * columns);
+    }
+
+    /**
+     * 计数加一，返回加一后的估计值
+     */
+    public int increment(String key) {
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int count = counters.incrementAndGet(index(row, hash));
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    public int estimate(String key) {
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(index(row, hash)));
+        }
+        return min;
+    }
+
+    /**
+     * 占用的内存（字节）
+     */
+    public long sizeInBytes() {
+        return (long) counters.length() * Integer.BYTES;
+    }
+
+    private int index(int row, int hash) {
+        return row * (mask + 1) + (mix(hash + row * 0x9E3779B9) & mask);
+    }
+
+    // murmur3 的 fmix32，让不同的行得到独立的列
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
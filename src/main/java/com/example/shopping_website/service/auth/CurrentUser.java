@@ -0,0 +1,95 @@
+package com.example.shopping_website.service.auth;
+
+import com.example.shopping_website.model.User;
+import com.example.shopping_website.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 当前登录用户
+ * - getId()/getUsername() 直接读取认证主体，不访问数据库
+ * - getUser() 需要完整用户资料时使用，经过 UserService 的短时缓存
+ */
+@Component
+public class CurrentUser {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SecurityContextRepository securityContextRepository;
+
+    /**
+     * 当前认证主体，未登录时返回 null
+     */
+    public AuthenticatedUser getPrincipal() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth instanceof AnonymousAuthenticationToken || !auth.isAuthenticated()) {
+            return null;
+        }
+        return auth.getPrincipal() instanceof AuthenticatedUser principal ? principal : null;
+    }
+
+    /**
+     * 当前用户ID，未登录时抛出异常
+     */
+    public Long getId() {
+        AuthenticatedUser principal = getPrincipal();
+        if (principal == null) {
+            throw new RuntimeException("用户未登录");
+        }
+        return principal.getId();
+    }
+
+    public String getUsername() {
+        AuthenticatedUser principal = getPrincipal();
+        return principal != null ? principal.getUsername() : null;
+    }
+
+    /**
+     * 当前用户的完整资料（读缓存），未登录或用户不存在时抛出异常
+     */
+    public User getUser() {
+        Long id = getId();
+        return userService.getUserById(id)
+            .orElseThrow(() -> new RuntimeException("用户未找到: " + id));
+    }
+
+    /**
+     * 当前用户的完整资料（读缓存），未登录或用户不存在时返回 null
+     */
+    public User getUserOrNull() {
+        AuthenticatedUser principal = getPrincipal();
+        return principal != null ? userService.getUserById(principal.getId()).orElse(null) : null;
+    }
+
+    /**
+     * 用户名或角色变化后更新当前会话中的认证主体
+     */
+    public void refresh(User user) {
+        Authentication current = SecurityContextHolder.getContext().getAuthentication();
+        AuthenticatedUser principal = AuthenticatedUser.of(user);
+        principal.eraseCredentials();
+        UsernamePasswordAuthenticationToken auth =
+            UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+        if (current != null) {
+            auth.setDetails(current.getDetails());
+        }
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(auth);
+        SecurityContextHolder.setContext(context);
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && attributes.getResponse() != null) {
+            securityContextRepository.saveContext(context, attributes.getRequest(), attributes.getResponse());
+        }
+    }
+}
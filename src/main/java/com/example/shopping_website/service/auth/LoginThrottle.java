@@ -0,0 +1,354 @@
+package com.example.shopping_website.service.auth;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录限流（按来源IP和按用户名的令牌桶）
+ * - 在密码哈希之前判断，被拒绝的请求不查询数据库、不计算 BCrypt
+ * - 每次尝试先计入按时间窗口轮换的 Count-Min Sketch；只尝试过几次的键（绝大多数）不建立令牌桶，
+ *   超过 untracked-attempts 后才在有界的 Map 中建立精确的令牌桶
+ * - Map 已满时退化为按 Sketch 估计值限流（每个窗口最多 capacity + 窗口内补充量 次）
+ * - 令牌桶状态（令牌数和上次补充时间）压缩在一个 AtomicLong 中，CAS 更新，不加锁
+ * - 后台每个窗口轮换一次 Sketch，并清理已经补满的令牌桶
+ * - 来源IP：直连地址属于 trusted-proxies 时，从 X-Forwarded-For 右侧向左取第一个不受信任的地址；
+ *   未配置受信任代理时只用直连地址（客户端可以任意伪造 X-Forwarded-For）
+ * - 令牌桶和 Sketch 都在节点内存中，每个节点单独计数：多节点部署时同一IP/用户名的实际上限
+ *   约为配置值乘以节点数（负载均衡按IP粘滞时按IP的限制仍接近配置值）
+ */
+@Component
+public class LoginThrottle {
+
+    private static final String IP_PREFIX = "ip:";
+    private static final String USER_PREFIX = "user:";
+
+    // 是否启用
+    @Value("${app.security.login-throttle.enabled:true}")
+    private boolean enabled;
+
+    // 每个IP的令牌桶容量（可连续尝试的次数）
+    @Value("${app.security.login-throttle.ip.capacity:20}")
+    private int ipCapacity;
+
+    // 每个IP每分钟补充的次数
+    @Value("${app.security.login-throttle.ip.refill-per-minute:10}")
+    private double ipRefillPerMinute;
+
+    // 每个用户名的令牌桶容量
+    @Value("${app.security.login-throttle.username.capacity:5}")
+    private int usernameCapacity;
+
+    // 每个用户名每分钟补充的次数
+    @Value("${app.security.login-throttle.username.refill-per-minute:1}")
+    private double usernameRefillPerMinute;
+
+    // 窗口内尝试次数不超过该值的键不建立令牌桶
+    @Value("${app.security.login-throttle.untracked-attempts:2}")
+    private int untrackedAttempts;
+
+    // 最多建立的令牌桶数
+    @Value("${app.security.login-throttle.max-tracked-keys:100000}")
+    private int maxTrackedKeys;
+
+    // Sketch 轮换和令牌桶清理的间隔（秒）
+    @Value("${app.security.login-throttle.window-seconds:300}")
+    private long windowSeconds;
+
+    // Sketch 每行计数器个数和行数
+    @Value("${app.security.login-throttle.sketch-width:65536}")
+    private int sketchWidth;
+
+    @Value("${app.security.login-throttle.sketch-depth:4}")
+    private int sketchDepth;
+
+    // 受信任的反向代理地址（IP 或 CIDR，逗号分隔），为空时不读取 X-Forwarded-For
+    @Value("${app.security.login-throttle.trusted-proxies:}")
+    private List<String> trustedProxies;
+
+    private List<IpAddressMatcher> trustedProxyMatchers;
+
+    private Limit ipLimit;
+
+    private Limit usernameLimit;
+
+    // 当前窗口和上一个窗口的尝试计数
+    private volatile CountMinSketch currentWindow;
+    private volatile CountMinSketch previousWindow;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService sweeper;
+
+    // 统计信息
+    private final AtomicLong allowedCount = new AtomicLong();
+    private final AtomicLong rejectedByIpCount = new AtomicLong();
+    private final AtomicLong rejectedByUsernameCount = new AtomicLong();
+    private final AtomicLong untrackedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong sweptCount = new AtomicLong();
+    private final AtomicLong forwardedCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        trustedProxyMatchers = new ArrayList<>();
+        for (String proxy : trustedProxies) {
+            if (!proxy.isBlank()) {
+                trustedProxyMatchers.add(new IpAddressMatcher(proxy.trim()));
+            }
+        }
+        ipLimit = new Limit(ipCapacity, ipRefillPerMinute);
+        usernameLimit = new Limit(usernameCapacity, usernameRefillPerMinute);
+        currentWindow = new CountMinSketch(sketchDepth, sketchWidth);
+        previousWindow = new CountMinSketch(sketchDepth, sketchWidth);
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "login-throttle-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, windowSeconds, windowSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 记录一次登录尝试
+     * @return 0 表示放行，否则为建议的重试等待秒数
+     */
+    public long tryAcquire(String ip, String username) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long retryAfter = acquire(IP_PREFIX + ip, ipLimit, now);
+        if (retryAfter > 0) {
+            rejectedByIpCount.incrementAndGet();
+            return retryAfter;
+        }
+        String normalized = normalizeUsername(username);
+        if (normalized != null) {
+            retryAfter = acquire(USER_PREFIX + normalized, usernameLimit, now);
+            if (retryAfter > 0) {
+                rejectedByUsernameCount.incrementAndGet();
+                return retryAfter;
+            }
+        }
+        allowedCount.incrementAndGet();
+        return 0;
+    }
+
+    /**
+     * 解析客户端IP
+     * @param remoteAddr 直连地址
+     * @param forwardedFor X-Forwarded-For 的值（多个请求头按出现顺序用逗号连接），可为空
+     * @return 直连地址不是受信任代理时返回直连地址；否则为转发链中最右侧的不受信任地址，
+     *         全部受信任时为最左侧的地址
+     */
+    public String resolveClientIp(String remoteAddr, String forwardedFor) {
+        if (forwardedFor == null || forwardedFor.isBlank() || !isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String[] hops = forwardedFor.split(",");
+        String client = remoteAddr;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+            client = hop;
+            if (!isTrustedProxy(hop)) {
+                break;
+            }
+        }
+        forwardedCount.incrementAndGet();
+        return client;
+    }
+
+    /**
+     * 登录成功后清除该用户名的令牌桶（用户输错几次后成功登录，不影响之后的登录）
+     */
+    @EventListener
+    public void onAuthenticationSuccess(AuthenticationSuccessEvent event) {
+        String normalized = normalizeUsername(event.getAuthentication().getName());
+        if (normalized != null) {
+            buckets.remove(USER_PREFIX + normalized);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("allowed", allowedCount.get());
+        metrics.put("rejectedByIp", rejectedByIpCount.get());
+        metrics.put("rejectedByUsername", rejectedByUsernameCount.get());
+        metrics.put("untracked", untrackedCount.get());
+        metrics.put("overflow", overflowCount.get());
+        metrics.put("trackedKeys", buckets.size());
+        metrics.put("maxTrackedKeys", maxTrackedKeys);
+        metrics.put("swept", sweptCount.get());
+        metrics.put("forwarded", forwardedCount.get());
+        metrics.put("trustedProxies", trustedProxyMatchers.size());
+        metrics.put("sketchBytes", currentWindow.sizeInBytes() * 2);
+        return metrics;
+    }
+
+    private long acquire(String key, Limit limit, long now) {
+        // 本窗口和上一窗口的尝试次数（近似，只会高估）
+        int seen = currentWindow.increment(key) + previousWindow.estimate(key);
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            int free = Math.min(untrackedAttempts, limit.capacity - 1);
+            if (seen <= free) {
+                untrackedCount.incrementAndGet();
+                return 0;
+            }
+            if (buckets.size() >= maxTrackedKeys) {
+                // 令牌桶已满额，按窗口内的近似次数限流
+                overflowCount.incrementAndGet();
+                return seen > limit.maxPerWindow(windowSeconds) ? windowSeconds : 0;
+            }
+            // 之前放行的几次从新令牌桶中扣除
+            long initialTokens = Math.max(0, limit.capacityMilli - (long) Math.max(0, free) * TokenBucket.ONE);
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(now, initialTokens));
+        }
+        return bucket.tryAcquire(now, limit);
+    }
+
+    private boolean isTrustedProxy(String address) {
+        for (IpAddressMatcher matcher : trustedProxyMatchers) {
+            try {
+                if (matcher.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                // 不是合法的IP地址（伪造的请求头），按不受信任处理
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void sweepQuietly() {
+        try {
+            previousWindow = currentWindow;
+            currentWindow = new CountMinSketch(sketchDepth, sketchWidth);
+
+            long now = System.currentTimeMillis();
+            int before = buckets.size();
+            buckets.entrySet().removeIf(entry ->
+                entry.getValue().isFull(now, entry.getKey().startsWith(IP_PREFIX) ? ipLimit : usernameLimit));
+            sweptCount.addAndGet(before - buckets.size());
+        } catch (Exception e) {
+            System.err.println("清理登录限流状态失败: " + e.getMessage());
+        }
+    }
+
+    // 用户名不区分大小写，超长的截断，避免用随机长用户名制造大量键
+    private static String normalizeUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        String trimmed = username.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        if (trimmed.length() > 64) {
+            trimmed = trimmed.substring(0, 64);
+        }
+        return trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 令牌桶参数（令牌以千分之一为单位）
+     */
+    private static final class Limit {
+
+        private final int capacity;
+
+        private final long capacityMilli;
+
+        // 每毫秒补充的千分之一令牌数
+        private final double refillMilliPerMillis;
+
+        private Limit(int capacity, double refillPerMinute) {
+            this.capacity = Math.max(1, Math.min(capacity, TokenBucket.MAX_CAPACITY));
+            this.capacityMilli = (long) this.capacity * TokenBucket.ONE;
+            this.refillMilliPerMillis = Math.max(0.0, refillPerMinute) * TokenBucket.ONE / 60_000.0;
+        }
+
+        private long maxPerWindow(long windowSeconds) {
+            return capacity + (long) (refillMilliPerMillis * windowSeconds * 1000 / TokenBucket.ONE);
+        }
+    }
+
+    /**
+     * 无锁令牌桶：高 44 位为上次补充时间（毫秒），低 20 位为剩余令牌（千分之一为单位）
+     */
+    private static final class TokenBucket {
+
+        private static final long ONE = 1000;
+        private static final int TOKEN_BITS = 20;
+        private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+        private static final int MAX_CAPACITY = (int) (TOKEN_MASK / ONE);
+
+        private final AtomicLong state;
+
+        private TokenBucket(long now, long tokens) {
+            this.state = new AtomicLong(pack(now, tokens));
+        }
+
+        /**
+         * @return 0 表示取得令牌，否则为距离补充出一个令牌的秒数
+         */
+        private long tryAcquire(long now, Limit limit) {
+            while (true) {
+                long current = state.get();
+                long tokens = refill(current, now, limit);
+                if (tokens < ONE) {
+                    if (limit.refillMilliPerMillis <= 0) {
+                        // 配置为不补充时，令牌桶在重启前不会恢复
+                        return 3600;
+                    }
+                    return Math.max(1, (long) Math.ceil((ONE - tokens) / limit.refillMilliPerMillis / 1000));
+                }
+                if (state.compareAndSet(current, pack(Math.max(now, current >>> TOKEN_BITS), tokens - ONE))) {
+                    return 0;
+                }
+            }
+        }
+
+        private boolean isFull(long now, Limit limit) {
+            return refill(state.get(), now, limit) >= limit.capacityMilli;
+        }
+
+        private static long refill(long state, long now, Limit limit) {
+            long last = state >>> TOKEN_BITS;
+            long tokens = state & TOKEN_MASK;
+            long elapsed = Math.max(0, now - last);
+            return Math.min(limit.capacityMilli, tokens + (long) (elapsed * limit.refillMilliPerMillis));
+        }
+
+        private static long pack(long millis, long tokens) {
+            return (millis << TOKEN_BITS) | (tokens & TOKEN_MASK);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.shopping_website.service.auth;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 密码哈希
+ * - 算法和强度可配置，新密码带 {id} 前缀保存（DelegatingPasswordEncoder）；
+ *   没有前缀的旧 BCrypt 哈希仍可校验，登录成功后按当前配置重新哈希
+ * - 哈希计算在专用的有界线程池中执行，同时进行的计算数不超过线程数，
+ *   登录高峰时其余请求线程不会被 BCrypt 占满 CPU；排队已满或等待超时的请求直接失败
+ */
+@Service
+public class PasswordHashingService {
+
+    // 新密码使用的算法（bcrypt 或 pbkdf2）
+    @Value("${app.security.password.algorithm:bcrypt}")
+    private String algorithm;
+
+    // BCrypt 强度（每加 1 计算量翻倍），调整后旧密码在登录时自动升级
+    @Value("${app.security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    // 哈希线程数，0 表示与 CPU 核数相同
+    @Value("${app.security.password.threads:0}")
+    private int threads;
+
+    // 最多排队的哈希计算数
+    @Value("${app.security.password.queue-capacity:200}")
+    private int queueCapacity;
+
+    // 请求线程等待哈希结果的最长时间（毫秒）
+    @Value("${app.security.password.timeout-ms:5000}")
+    private long timeoutMillis;
+
+    private DelegatingPasswordEncoder delegate;
+
+    private ThreadPoolExecutor hashingPool;
+
+    private final PasswordEncoder passwordEncoder = new BoundedPasswordEncoder();
+
+    // 统计信息
+    private final AtomicLong matchesCount = new AtomicLong();
+    private final AtomicLong encodeCount = new AtomicLong();
+    private final AtomicLong upgradedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        encoders.put("bcrypt", bcrypt);
+        encoders.put("pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        String idForEncode = algorithm.trim().toLowerCase();
+        if (!encoders.containsKey(idForEncode)) {
+            throw new RuntimeException("不支持的密码哈希算法: " + algorithm);
+        }
+        delegate = new DelegatingPasswordEncoder(idForEncode, encoders);
+        // 已有用户的密码是没有 {id} 前缀的 BCrypt 哈希
+        delegate.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        hashingPool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "password-hashing-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        System.out.println("密码哈希启动: 算法 " + idForEncode + ", BCrypt 强度 " + bcryptStrength + ", " + poolSize + " 个线程");
+    }
+
+    @PreDestroy
+    public void stop() {
+        hashingPool.shutdownNow();
+    }
+
+    /**
+     * 注册为 Spring Security 使用的 PasswordEncoder
+     */
+    public PasswordEncoder getPasswordEncoder() {
+        return passwordEncoder;
+    }
+
+    /**
+     * 登录时旧密码已按当前配置重新哈希（UserDetailsPasswordService 调用）
+     */
+    public void recordUpgrade() {
+        upgradedCount.incrementAndGet();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long computed = matchesCount.get() + encodeCount.get();
+        metrics.put("algorithm", algorithm);
+        metrics.put("bcryptStrength", bcryptStrength);
+        metrics.put("threads", hashingPool.getMaximumPoolSize());
+        metrics.put("active", hashingPool.getActiveCount());
+        metrics.put("queued", hashingPool.getQueue().size());
+        metrics.put("matches", matchesCount.get());
+        metrics.put("encodes", encodeCount.get());
+        metrics.put("upgraded", upgradedCount.get());
+        metrics.put("rejected", rejectedCount.get());
+        metrics.put("timeouts", timeoutCount.get());
+        metrics.put("avgMillis", computed > 0 ? totalMillis.get() / computed : 0);
+        return metrics;
+    }
+
+    /**
+     * 在哈希线程池中执行并等待结果
+     * 失败时抛出 AuthenticationServiceException：登录时按登录失败处理，其余调用方按普通运行时异常处理
+     */
+    private <T> T compute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = hashingPool.submit(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    return task.call();
+                } finally {
+                    totalMillis.addAndGet(System.currentTimeMillis() - start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            throw new AuthenticationServiceException("系统繁忙，请稍后再试");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeoutCount.incrementAndGet();
+            throw new AuthenticationServiceException("系统繁忙，请稍后再试");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("密码校验被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new AuthenticationServiceException("密码哈希计算失败", cause);
+        }
+    }
+
+    private class BoundedPasswordEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            encodeCount.incrementAndGet();
+            return compute(() -> delegate.encode(rawPassword));
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            matchesCount.incrementAndGet();
+            return compute(() -> delegate.matches(rawPassword, encodedPassword));
+        }
+
+        // 只解析哈希前缀和强度，不需要进入线程池
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return delegate.upgradeEncoding(encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.shopping_website.service.auth;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无状态会话：认证信息保存在 HMAC-SHA256 签名的 Cookie 中（app.security.stateless.enabled=true 时启用）
+ * - Cookie 内容：{kid}.{载荷}.{签名}，载荷为 版本|用户ID|用户名|角色|签发时间|过期时间，
+ *   校验只需要计算一次 HMAC，不查询数据库，也不依赖服务器端会话，多个节点之间不需要会话粘滞
+ * - 密钥轮换：app.security.stateless.keys 中第一个密钥用于签名，其余只用于校验；
+ *   新密钥放在最前面，旧密钥保留到所有旧 Cookie 过期后再删除
+ * - Cookie 在过期前无法撤销：修改资料时由 CurrentUser.refresh 重新签发，
+ *   角色变化和修改密码在 Cookie 过期（ttl-minutes）后才对其他设备生效
+ */
+@Component
+public class SignedCookieSecurityContextRepository implements SecurityContextRepository {
+
+    private static final String VERSION = "1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    // 是否启用无状态会话（关闭时使用服务器端 HttpSession）
+    @Value("${app.security.stateless.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.security.stateless.cookie-name:SHOP_AUTH}")
+    private String cookieName;
+
+    // Cookie 有效期（分钟），过期后需要重新登录
+    @Value("${app.security.stateless.ttl-minutes:720}")
+    private long ttlMinutes;
+
+    // 只通过 HTTPS 发送（生产环境应开启）
+    @Value("${app.security.stateless.secure-cookie:false}")
+    private boolean secureCookie;
+
+    // 签名密钥，格式 kid:Base64密钥，多个用逗号分隔，第一个用于签名
+    @Value("${app.security.stateless.keys:}")
+    private String keys;
+
+    private String signingKeyId;
+
+    // kid -> 密钥
+    private final Map<String, SecretKeySpec> verificationKeys = new LinkedHashMap<>();
+
+    // Mac 不是线程安全的，每个线程缓存一份
+    private final ThreadLocal<Map<String, Mac>> macs = ThreadLocal.withInitial(LinkedHashMap::new);
+
+    // 统计信息
+    private final AtomicLong issuedCount = new AtomicLong();
+    private final AtomicLong verifiedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        for (String entry : keys.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.indexOf(':');
+            if (colon <= 0 || trimmed.substring(0, colon).contains(".")) {
+                throw new RuntimeException("无状态会话密钥格式错误，应为 kid:Base64密钥");
+            }
+            String kid = trimmed.substring(0, colon);
+            byte[] secret = Base64.getDecoder().decode(trimmed.substring(colon + 1));
+            if (secret.length < MIN_KEY_BYTES) {
+                throw new RuntimeException("无状态会话密钥 " + kid + " 长度不足 " + MIN_KEY_BYTES + " 字节");
+            }
+            verificationKeys.put(kid, new SecretKeySpec(secret, ALGORITHM));
+            if (signingKeyId == null) {
+                signingKeyId = kid;
+            }
+        }
+        if (signingKeyId == null) {
+            throw new RuntimeException("启用无状态会话需要配置 app.security.stateless.keys");
+        }
+        System.out.println("无状态会话已启用: 签名密钥 " + signingKeyId + ", 共 " + verificationKeys.size() + " 个校验密钥");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getCookieName() {
+        return cookieName;
+    }
+
+    @Override
+    public DeferredSecurityContext loadDeferredContext(HttpServletRequest request) {
+        return new DeferredSecurityContext() {
+
+            private SecurityContext context;
+
+            @Override
+            public SecurityContext get() {
+                if (context == null) {
+                    context = load(request);
+                }
+                return context;
+            }
+
+            @Override
+            public boolean isGenerated() {
+                return get().getAuthentication() == null;
+            }
+        };
+    }
+
+    @Override
+    @Deprecated
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        return loadDeferredContext(requestResponseHolder.getRequest()).get();
+    }
+
+    /**
+     * 登录成功或 CurrentUser.refresh 时签发新的 Cookie；认证信息被清除时删除 Cookie
+     */
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        Authentication auth = context.getAuthentication();
+        if (auth == null || auth instanceof AnonymousAuthenticationToken || !auth.isAuthenticated()
+                || !(auth.getPrincipal() instanceof AuthenticatedUser principal)) {
+            if (readCookie(request) != null) {
+                writeCookie(response, "", Duration.ZERO);
+            }
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Duration ttl = Duration.ofMinutes(ttlMinutes);
+        writeCookie(response, issue(principal, now, now + ttl.toMillis()), ttl);
+        issuedCount.incrementAndGet();
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return readCookie(request) != null;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("signingKey", signingKeyId);
+        metrics.put("keys", verificationKeys.size());
+        metrics.put("issued", issuedCount.get());
+        metrics.put("verified", verifiedCount.get());
+        metrics.put("expired", expiredCount.get());
+        metrics.put("rejected", rejectedCount.get());
+        return metrics;
+    }
+
+    private SecurityContext load(HttpServletRequest request) {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        String token = readCookie(request);
+        if (token == null) {
+            return context;
+        }
+        AuthenticatedUser principal = verify(token, System.currentTimeMillis());
+        if (principal != null) {
+            context.setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+        }
+        return context;
+    }
+
+    private String issue(AuthenticatedUser principal, long issuedAt, long expiresAt) {
+        String payload = String.join("|",
+            VERSION,
+            String.valueOf(principal.getId()),
+            URLEncoder.encode(principal.getUsername(), StandardCharsets.UTF_8),
+            String.join(",", principal.getRoles()),
+            String.valueOf(issuedAt),
+            String.valueOf(expiresAt));
+        String signedPart = signingKeyId + "." + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return signedPart + "." + ENCODER.encodeToString(sign(signingKeyId, signedPart));
+    }
+
+    /**
+     * 校验签名和有效期，失败返回 null
+     */
+    private AuthenticatedUser verify(String token, long now) {
+        try {
+            int first = token.indexOf('.');
+            int last = token.lastIndexOf('.');
+            if (first <= 0 || last <= first) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            String kid = token.substring(0, first);
+            if (!verificationKeys.containsKey(kid)) {
+                // 密钥已下线
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            String signedPart = token.substring(0, last);
+            byte[] signature = DECODER.decode(token.substring(last + 1));
+            if (!MessageDigest.isEqual(signature, sign(kid, signedPart))) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+
+            String payload = new String(DECODER.decode(token.substring(first + 1, last)), StandardCharsets.UTF_8);
+            String[] fields = payload.split("\\|", -1);
+            if (fields.length != 6 || !VERSION.equals(fields[0])) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            if (Long.parseLong(fields[5]) <= now) {
+                expiredCount.incrementAndGet();
+                return null;
+            }
+            Set<String> roles = fields[3].isEmpty()
+                ? Set.of()
+                : new LinkedHashSet<>(Arrays.asList(fields[3].split(",")));
+            verifiedCount.incrementAndGet();
+            return new AuthenticatedUser(Long.parseLong(fields[1]),
+                URLDecoder.decode(fields[2], StandardCharsets.UTF_8), null, roles, true);
+        } catch (IllegalArgumentException e) {
+            // Base64 或数字格式错误
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    private byte[] sign(String kid, String data) {
+        Mac mac = macs.get().computeIfAbsent(kid, id -> {
+            try {
+                Mac created = Mac.getInstance(ALGORITHM);
+                created.init(verificationKeys.get(id));
+                return created;
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("初始化会话签名失败: " + e.getMessage(), e);
+            }
+        });
+        return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String readCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void writeCookie(HttpServletResponse response, String value, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(cookieName, value)
+            .path("/")
+            .httpOnly(true)
+            .secure(secureCookie)
+            .sameSite("Lax")
+            .maxAge(maxAge)
+            .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.shopping_website.service.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * 有界 LRU 缓存
+ * - 按条目数和估算字节数双重限制，超出时淘汰最久未访问的条目
+ * - 条目超过 TTL 后视为失效
+ * - 按 key 哈希分段加锁，降低热点路由上的锁竞争
+ */
+public class BoundedLruCache<K, V> {
+
+    private final String name;
+    private final Segment<K, V>[] segments;
+    private final long ttlMillis;
+    private final ToIntFunction<V> weigher;
+
+    // 统计信息
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param name 缓存名称（用于统计输出）
+     * @param maxEntries 最大条目数
+     * @param maxWeight 最大估算字节数
+     * @param ttlMillis 条目存活时间，<= 0 表示不过期
+     * @param weigher 条目字节数估算函数
+     * @param segmentCount 分段数
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedLruCache(String name, int maxEntries, long maxWeight, long ttlMillis,
+                           ToIntFunction<V> weigher, int segmentCount) {
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.weigher = weigher;
+        int count = Math.max(1, segmentCount);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(Math.max(1, maxEntries / count), Math.max(1, maxWeight / count));
+        }
+    }
+
+    /**
+     * 获取缓存值，不存在或已过期返回 null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.map.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (entry.isExpired()) {
+                segment.remove(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * 放入缓存，必要时淘汰最久未访问的条目
+     */
+    public void put(K key, V value) {
+        if (key == null || value == null) {
+            return;
+        }
+        int weight = Math.max(1, weigher.applyAsInt(value));
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+            segment.map.put(key, new Entry<>(value, weight, expiresAt));
+            segment.weight += weight;
+            evictions.add(segment.evictIfNeeded());
+        }
+    }
+
+    /**
+     * 使单个条目失效
+     */
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.remove(key)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                invalidations.add(segment.map.size());
+                segment.map.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * 当前统计信息
+     */
+    public Map<String, Object> stats() {
+        long size = 0;
+        long weight = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+                weight += segment.weight;
+            }
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("size", size);
+        stats.put("weightBytes", weight);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[Math.floorMod(hash, segments.length)];
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final int weight;
+        private final long expiresAt;
+
+        private Entry(V value, int weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private static final class Segment<K, V> {
+        // accessOrder = true：按访问顺序排列，头部为最久未访问
+        private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxEntries;
+        private final long maxWeight;
+        private long weight;
+
+        private Segment(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+
+        private boolean remove(Object key) {
+            Entry<V> removed = map.remove(key);
+            if (removed != null) {
+                weight -= removed.weight;
+                return true;
+            }
+            return false;
+        }
+
+        private int evictIfNeeded() {
+            int evicted = 0;
+            Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+            while ((map.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+                Map.Entry<K, Entry<V>> eldest = it.next();
+                weight -= eldest.getValue().weight;
+                it.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+    }
+}
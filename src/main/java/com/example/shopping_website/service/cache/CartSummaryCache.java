@@ -0,0 +1,148 @@
+package com.example.shopping_website.service.cache;
+
+import com.example.shopping_website.dto.CartLineDto;
+import com.example.shopping_website.dto.CartSummary;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import com.example.shopping_website.service.event.ProductChangeListener;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按用户缓存购物车汇总
+ * - 购物车增删改由 CartService 在事务提交前后各失效一次
+ * - 商品名称、价格、库存变化会影响汇总内容：商品变更事件只记录该商品（按ID分段）最后一次变更的序号，
+ *   读取时检查汇总中的商品在汇总生成之后是否变更过，只有包含变更商品的用户缓存失效
+ *   （结算期间库存频繁变化时，不会清空所有用户的缓存）
+ */
+@Component
+public class CartSummaryCache implements ProductChangeListener {
+
+    // 商品变更序号的分段数
+    private static final int CHANGE_STRIPES = 4096;
+
+    // 最大缓存用户数
+    @Value("${app.cache.cart-summary.max-entries:20000}")
+    private int maxEntries;
+
+    // 最大估算内存（字节）
+    @Value("${app.cache.cart-summary.max-bytes:33554432}")
+    private long maxBytes;
+
+    // 存活时间（秒）
+    @Value("${app.cache.cart-summary.ttl-seconds:120}")
+    private long ttlSeconds;
+
+    private BoundedLruCache<Long, CachedSummary> cache;
+
+    // 已处理的商品变更序号
+    private final AtomicLong changeSequence = new AtomicLong();
+
+    // 按商品ID分段：该段商品最后一次变更的序号
+    private final AtomicLongArray lastChanged = new AtomicLongArray(CHANGE_STRIPES);
+
+    // 命中但因商品变更而失效的次数
+    private final LongAdder staleCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        cache = new BoundedLruCache<>("cartSummary", maxEntries, maxBytes, ttlSeconds * 1000,
+            cached -> estimateBytes(cached.summary), 16);
+    }
+
+    /**
+     * 读取购物车之前调用，放入缓存时传回
+     */
+    public long stamp() {
+        return changeSequence.get();
+    }
+
+    /**
+     * 获取缓存的汇总；其中任一商品在汇总生成后变更过时失效并返回 null
+     */
+    public CartSummary get(Long userId) {
+        CachedSummary cached = cache.get(userId);
+        if (cached == null) {
+            return null;
+        }
+        for (CartLineDto line : cached.summary.getLines()) {
+            if (line.getProductId() != null && lastChanged.get(stripe(line.getProductId())) > cached.stamp) {
+                cache.invalidate(userId);
+                staleCount.increment();
+                return null;
+            }
+        }
+        return cached.summary;
+    }
+
+    /**
+     * @param stamp 读取购物车之前 stamp() 的返回值；读取期间变更的商品会使这条缓存在下次读取时失效
+     */
+    public void put(Long userId, CartSummary summary, long stamp) {
+        if (userId != null && summary != null) {
+            cache.put(userId, new CachedSummary(summary, stamp));
+        }
+    }
+
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            cache.invalidate(userId);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = cache.stats();
+        stats.put("staleOnRead", staleCount.sum());
+        stats.put("productChanges", changeSequence.get());
+        return stats;
+    }
+
+    @Override
+    public void onProductChanges(List<ProductChangeEvent> events) {
+        for (ProductChangeEvent event : events) {
+            long sequence = changeSequence.incrementAndGet();
+            lastChanged.accumulateAndGet(stripe(event.getProductId()), sequence, Math::max);
+        }
+    }
+
+    @Override
+    public void onEventsDropped() {
+        cache.invalidateAll();
+    }
+
+    private static int stripe(Long productId) {
+        return Math.floorMod(Long.hashCode(productId), CHANGE_STRIPES);
+    }
+
+    /**
+     * 缓存的汇总及生成时的商品变更序号
+     */
+    private static final class CachedSummary {
+        private final CartSummary summary;
+        private final long stamp;
+
+        private CachedSummary(CartSummary summary, long stamp) {
+            this.summary = summary;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * 粗略估算汇总占用的字节数（每行固定开销 + 名称和图片地址）
+     */
+    private static int estimateBytes(CartSummary summary) {
+        int bytes = 96;
+        for (CartLineDto line : summary.getLines()) {
+            bytes += 128;
+            bytes += line.getName() != null ? line.getName().length() * 2 : 0;
+            bytes += line.getImageUrl() != null ? line.getImageUrl().length() * 2 : 0;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.shopping_website.service.cache;
+
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.model.User;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import com.example.shopping_website.service.event.ProductChangeListener;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 商品详情读缓存
+ * - ProductService 写入/删除时同步失效
+ * - 绕过 ProductService 的写入（如结算扣库存）由提交后的变更事件失效
+ * - 读穿透按商品ID分段的失效计数防止旧数据回填：读库前记下计数，放入后计数已变化则撤销
+ * - 事务中的失效在提交后再执行一次，提交前被并发读取回填的旧数据也会被清除
+ * - 缓存中保存的是副本，读取时也返回副本，调用方修改实体不会污染缓存
+ * - 副本的 user 只包含所有者ID，只用于展示和权限判断；修改商品须通过 ProductService.findProductForUpdate 读取实体
+ */
+@Component
+public class ProductCache implements ProductChangeListener {
+
+    // 失效计数的分段数
+    private static final int GENERATION_STRIPES = 1024;
+
+    // 最大缓存商品数
+    @Value("${app.cache.product.max-entries:10000}")
+    private int maxEntries;
+
+    // 最大估算内存（字节）
+    @Value("${app.cache.product.max-bytes:67108864}")
+    private long maxBytes;
+
+    // 存活时间（秒）
+    @Value("${app.cache.product.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private BoundedLruCache<Long, Product> cache;
+
+    // 按商品ID分段的失效计数，每次失效加一
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @PostConstruct
+    public void init() {
+        cache = new BoundedLruCache<>("product", maxEntries, maxBytes, ttlSeconds * 1000,
+            ProductCache::estimateBytes, 16);
+    }
+
+    public Product get(Long id) {
+        Product cached = cache.get(id);
+        return cached != null ? copyOf(cached) : null;
+    }
+
+    /**
+     * 读取数据库之前调用，返回该商品当前的失效计数
+     */
+    public long generation(Long id) {
+        return generations.get(stripe(id));
+    }
+
+    /**
+     * 放入从数据库读取的商品
+     * @param generation 读取数据库之前 generation() 的返回值；期间该商品被失效过时不保留
+     */
+    public void put(Product product, long generation) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        cache.put(product.getId(), copyOf(product));
+        // 先放入再检查：失效发生在检查之前会被这里发现，发生在检查之后则会清除刚放入的条目
+        if (generations.get(stripe(product.getId())) != generation) {
+            cache.invalidate(product.getId());
+        }
+    }
+
+    /**
+     * 使商品缓存失效；在事务中调用时，提交后再失效一次
+     */
+    public void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+        invalidateNow(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow(id);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void onProductChanges(List<ProductChangeEvent> events) {
+        for (ProductChangeEvent event : events) {
+            invalidateNow(event.getProductId());
+        }
+    }
+
+    @Override
+    public void onEventsDropped() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    private void invalidateNow(Long id) {
+        generations.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    private static int stripe(Long id) {
+        return Math.floorMod(Long.hashCode(id), GENERATION_STRIPES);
+    }
+
+    private static Product copyOf(Product source) {
+        Product copy = new Product();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setDescription(source.getDescription());
+        copy.setPrice(source.getPrice());
+        copy.setImageUrl(source.getImageUrl());
+        copy.setStockQuantity(source.getStockQuantity());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        if (source.getUser() != null) {
+            // 只保留所有者ID，避免缓存持有已关闭会话的懒加载代理
+            User owner = new User();
+            owner.setId(source.getUser().getId());
+            copy.setUser(owner);
+        }
+        return copy;
+    }
+
+    /**
+     * 粗略估算商品占用的字节数（对象头与字段 + 字符串内容）
+     */
+    private static int estimateBytes(Product product) {
+        int bytes = 160;
+        bytes += stringBytes(product.getName());
+        bytes += stringBytes(product.getDescription());
+        bytes += stringBytes(product.getImageUrl());
+        return bytes;
+    }
+
+    private static int stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length() * 2;
+    }
+}
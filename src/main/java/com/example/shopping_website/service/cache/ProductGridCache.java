@@ -0,0 +1,294 @@
+package com.example.shopping_website.service.cache;
+
+import com.example.shopping_website.dto.ProductCardDto;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import com.example.shopping_website.service.event.ProductChangeListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.servlet.support.RequestContext;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.context.webmvc.SpringWebMvcThymeleafRequestContext;
+import org.thymeleaf.spring6.expression.ThymeleafEvaluationContext;
+import org.thymeleaf.spring6.naming.SpringContextVariableNames;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 首页/搜索页商品网格片段缓存
+ * - 以页面参数为 key 缓存 fragments/product-grid 渲染后的 HTML，并记录每页显示的商品ID
+ * - 新增、删除商品会改变分页，使全部条目失效；商品更新（结算扣库存、分桶汇总等最频繁的变更）
+ *   只使显示了该商品的页面失效，另外按关键词搜索的页面结果集可能变化（如改名），也一并失效
+ * - 每页有自己的版本号（失效时从全局计数器取新值），用于 ETag；最后修改时间为最近一次失效的时间
+ * - 版本号只在本进程内有效，ETag 中带有每次启动随机生成的标识，重启后或其他节点上不会与旧 ETag 相同
+ * - 同一 key 同时只有一个请求负责渲染，其余请求等待结果
+ */
+@Component
+public class ProductGridCache implements ProductChangeListener {
+
+    private static final String TEMPLATE = "fragments/product-grid";
+    private static final Set<String> SELECTORS = Set.of("productGrid");
+
+    // 商品变更时间戳的分段数（渲染期间是否有显示的商品发生变更）
+    private static final int CHANGE_STRIPES = 4096;
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    // 最大缓存页面数（不同搜索词、游标各占一条）
+    @Value("${app.cache.grid.max-entries:500}")
+    private int maxEntries;
+
+    // 最大估算内存（字节）
+    @Value("${app.cache.grid.max-bytes:33554432}")
+    private long maxBytes;
+
+    // 存活时间（秒）
+    @Value("${app.cache.grid.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private BoundedLruCache<String, String> cache;
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    // 版本计数器：全部失效和单页失效都从这里取新值
+    private final AtomicLong versionCounter = new AtomicLong(1);
+
+    // 最近一次全部失效时的版本
+    private volatile long version = 1;
+
+    // 全部失效之后单独失效过的页面 -> 失效时的版本（全部失效时清空）
+    private final ConcurrentHashMap<String, Long> pageVersions = new ConcurrentHashMap<>();
+
+    // 已缓存页面显示的商品ID -> 页面 key
+    private final ConcurrentHashMap<Long, Set<String>> pagesByProduct = new ConcurrentHashMap<>();
+
+    // 结果集取决于商品内容的页面（按关键词搜索）
+    private final Set<String> contentDependentPages = ConcurrentHashMap.newKeySet();
+
+    // 商品最后一次变更时的版本（按商品ID分段，同段的商品互相影响只会多一次不缓存）
+    private final AtomicLongArray lastChanged = new AtomicLongArray(CHANGE_STRIPES);
+
+    // 本次启动的随机标识（版本号在重启后和不同节点之间会重复）
+    private final String instanceId = Long.toHexString(new SecureRandom().nextLong());
+
+    // 最后一次商品变更时间（HTTP 日期精度为秒）
+    private volatile long lastModified = currentSecond();
+
+    // 统计信息
+    private final AtomicLong fullInvalidationCount = new AtomicLong();
+    private final AtomicLong pageInvalidationCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = new BoundedLruCache<>("productGrid", maxEntries, maxBytes, ttlSeconds * 1000,
+            html -> html.length() * 2 + 64, 8);
+    }
+
+    /**
+     * 获取已渲染的网格；未命中时用 variables 提供的模型渲染并缓存
+     */
+    public String getOrRender(String key, Supplier<Map<String, Object>> variables,
+                              HttpServletRequest request, HttpServletResponse response) {
+        String cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing.join();
+        }
+
+        try {
+            long renderVersion = versionCounter.get();
+            long structureVersion = version;
+            Map<String, Object> model = variables.get();
+            String html = render(model, request, response);
+            List<Long> productIds = productIds(model);
+            boolean contentDependent = Boolean.TRUE.equals(model.get("searchMode"));
+            // 渲染期间发生过全部失效、本页显示的商品有变更，或搜索页期间有任何商品变更，则不缓存，避免缓存旧数据
+            boolean stale = structureVersion != version || changedSince(productIds, renderVersion)
+                || (contentDependent && versionCounter.get() != renderVersion);
+            if (!stale) {
+                track(key, productIds, contentDependent);
+                cache.put(key, html);
+            }
+            mine.complete(html);
+            return html;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 当前版本下该 key 的 ETag（无需渲染即可用于条件请求判断）
+     */
+    public String currentEtag(String key) {
+        return etagFor(instanceId, key, Math.max(version, pageVersions.getOrDefault(key, 0L)));
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void invalidateAll() {
+        long next = versionCounter.incrementAndGet();
+        for (int i = 0; i < CHANGE_STRIPES; i++) {
+            lastChanged.accumulateAndGet(i, next, Math::max);
+        }
+        version = next;
+        lastModified = currentSecond();
+        cache.invalidateAll();
+        pageVersions.clear();
+        pagesByProduct.clear();
+        contentDependentPages.clear();
+        fullInvalidationCount.incrementAndGet();
+    }
+
+    /**
+     * 商品内容变更（不影响分页）：只使显示了这些商品的页面和按关键词搜索的页面失效
+     */
+    public void invalidateProducts(Set<Long> productIds) {
+        long next = versionCounter.incrementAndGet();
+        Set<String> keys = new HashSet<>(contentDependentPages);
+        for (Long productId : productIds) {
+            lastChanged.accumulateAndGet(stripe(productId), next, Math::max);
+            Set<String> pages = pagesByProduct.remove(productId);
+            if (pages != null) {
+                keys.addAll(pages);
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        // 单页版本记录只在全部失效时清空，数量过多时直接全部失效
+        if (pageVersions.size() + keys.size() > maxEntries * 4L) {
+            invalidateAll();
+            return;
+        }
+        for (String key : keys) {
+            pageVersions.put(key, next);
+            contentDependentPages.remove(key);
+            cache.invalidate(key);
+        }
+        lastModified = currentSecond();
+        pageInvalidationCount.addAndGet(keys.size());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = cache.stats();
+        stats.put("instanceId", instanceId);
+        stats.put("version", version);
+        stats.put("lastModified", lastModified);
+        stats.put("fullInvalidations", fullInvalidationCount.get());
+        stats.put("pageInvalidations", pageInvalidationCount.get());
+        stats.put("trackedProducts", pagesByProduct.size());
+        return stats;
+    }
+
+    @Override
+    public void onProductChanges(List<ProductChangeEvent> events) {
+        Set<Long> updated = new HashSet<>();
+        for (ProductChangeEvent event : events) {
+            if (event.getType() != ProductChangeEvent.Type.UPDATE) {
+                invalidateAll();
+                return;
+            }
+            updated.add(event.getProductId());
+        }
+        invalidateProducts(updated);
+    }
+
+    @Override
+    public void onEventsDropped() {
+        invalidateAll();
+    }
+
+    // 记录页面显示的商品（页面被 LRU 淘汰后留下的记录只会多触发一次无效的失效）
+    private void track(String key, List<Long> productIds, boolean contentDependent) {
+        for (Long productId : productIds) {
+            pagesByProduct.computeIfAbsent(productId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        if (contentDependent) {
+            contentDependentPages.add(key);
+        }
+    }
+
+    private boolean changedSince(List<Long> productIds, long renderVersion) {
+        for (Long productId : productIds) {
+            if (lastChanged.get(stripe(productId)) > renderVersion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Long> productIds(Map<String, Object> model) {
+        List<Long> ids = new ArrayList<>();
+        if (model.get("products") instanceof List<?> products) {
+            for (Object product : products) {
+                if (product instanceof ProductCardDto card && card.getId() != null) {
+                    ids.add(card.getId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static int stripe(Long productId) {
+        return Math.floorMod(Long.hashCode(productId), CHANGE_STRIPES);
+    }
+
+    // 包内可见：测试中替换为不依赖模板引擎的渲染
+    String render(Map<String, Object> model, HttpServletRequest request, HttpServletResponse response) {
+        // 与 ThymeleafView 一致地准备 Spring 请求上下文，保证 @{...} 链接与 th:action 正常处理
+        Map<String, Object> variables = new HashMap<>(model);
+        RequestContext requestContext = new RequestContext(request, response, request.getServletContext(), variables);
+        variables.put(SpringContextVariableNames.SPRING_REQUEST_CONTEXT, requestContext);
+        variables.put(SpringContextVariableNames.THYMELEAF_REQUEST_CONTEXT,
+            new SpringWebMvcThymeleafRequestContext(requestContext, request));
+        variables.put(ThymeleafEvaluationContext.THYMELEAF_EVALUATION_CONTEXT_CONTEXT_VARIABLE_NAME,
+            new ThymeleafEvaluationContext(applicationContext, null));
+
+        JakartaServletWebApplication application = JakartaServletWebApplication.buildApplication(request.getServletContext());
+        WebContext context = new WebContext(application.buildExchange(request, response), request.getLocale(), variables);
+        return templateEngine.process(TEMPLATE, SELECTORS, context);
+    }
+
+    // key 用摘要而不是 hashCode，不同的搜索词不会得到相同的 ETag
+    private static String etagFor(String instanceId, String key, long version) {
+        return "\"grid-" + instanceId + "-" + version + "-" +
+            DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000 * 1000;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.shopping_website.service.cache;
+
+import com.example.shopping_website.model.Role;
+import com.example.shopping_website.model.User;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户读缓存（按用户ID，短存活时间）
+ * - UserService 修改资料、角色、密码或删除用户时失效，事务提交后再失效一次，
+ *   避免提交前并发读取把旧数据重新放回缓存
+ * - 缓存中保存的是副本（含角色），读取时也返回副本，调用方修改实体不会污染缓存
+ */
+@Component
+public class UserCache {
+
+    // 最大缓存用户数
+    @Value("${app.cache.user.max-entries:10000}")
+    private int maxEntries;
+
+    // 最大估算内存（字节）
+    @Value("${app.cache.user.max-bytes:16777216}")
+    private long maxBytes;
+
+    // 存活时间（秒）
+    @Value("${app.cache.user.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private BoundedLruCache<Long, User> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new BoundedLruCache<>("user", maxEntries, maxBytes, ttlSeconds * 1000,
+            UserCache::estimateBytes, 16);
+    }
+
+    public User get(Long id) {
+        User cached = cache.get(id);
+        return cached != null ? copyOf(cached) : null;
+    }
+
+    public void put(User user) {
+        if (user != null && user.getId() != null) {
+            cache.put(user.getId(), copyOf(user));
+        }
+    }
+
+    /**
+     * 立即失效，并在当前事务提交后再失效一次
+     */
+    public void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+
+    private static User copyOf(User source) {
+        User copy = new User();
+        copy.setId(source.getId());
+        copy.setUsername(source.getUsername());
+        copy.setEmail(source.getEmail());
+        copy.setPassword(source.getPassword());
+        copy.setFullName(source.getFullName());
+        copy.setPhoneNumber(source.getPhoneNumber());
+        copy.setAddress(source.getAddress());
+        copy.setAvatarUrl(source.getAvatarUrl());
+        copy.setEnabled(source.isEnabled());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        Set<Role> roles = new HashSet<>();
+        for (Role role : source.getRoles()) {
+            roles.add(new Role(role.getId(), role.getName(), role.getDescription(), role.getPermissions()));
+        }
+        copy.setRoles(roles);
+        return copy;
+    }
+
+    /**
+     * 粗略估算用户占用的字节数（对象头与字段 + 字符串内容 + 角色）
+     */
+    private static int estimateBytes(User user) {
+        int bytes = 200;
+        bytes += stringBytes(user.getUsername());
+        bytes += stringBytes(user.getEmail());
+        bytes += stringBytes(user.getPassword());
+        bytes += stringBytes(user.getFullName());
+        bytes += stringBytes(user.getPhoneNumber());
+        bytes += stringBytes(user.getAddress());
+        bytes += stringBytes(user.getAvatarUrl());
+        bytes += user.getRoles().size() * 120;
+        return bytes;
+    }
+
+    private static int stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length() * 2;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.shopping_website.service.cart;
+
+import com.example.shopping_website.dto.CartLineDto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 购物车存储引擎
+ * 通过 app.cart.store 选择实现：database（默认，直接读写 cart_items）或 memory（内存 + 异步批量回写）
+ * 购物车行以 (用户ID, 商品ID) 标识
+ */
+public interface CartStore {
+
+    /**
+     * 购物车展示行（含商品名称、价格、库存）
+     */
+    List<CartLineDto> getLines(Long userId);
+
+    /**
+     * 购物车中某商品的数量，不存在返回 0
+     */
+    int getQuantity(Long userId, Long productId);
+
+    /**
+     * 增加商品数量，不存在则新增
+     */
+    void add(Long userId, Long productId, int quantity);
+
+    /**
+     * 设置商品数量，小于等于 0 时移除
+     */
+    void setQuantity(Long userId, Long productId, int quantity);
+
+    void remove(Long userId, Long productId);
+
+    void clear(Long userId);
+
+    /**
+     * 结算前调用（在结算事务内）：保证 cart_items 表中是该用户购物车的权威快照
+     */
+    void beforeCheckout(Long userId);
+
+    /**
+     * 结算事务中已扣减 cart_items 行后调用：提交后从存储中减去已结算的数量
+     * @param quantities 商品ID -> 已结算数量
+     */
+    void afterCheckout(Long userId, Map<Long, Integer> quantities);
+
+    /**
+     * 运行统计
+     */
+    Map<String, Object> stats();
+}
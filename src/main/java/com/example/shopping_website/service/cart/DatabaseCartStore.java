@@ -0,0 +1,99 @@
+package com.example.shopping_website.service.cart;
+
+import com.example.shopping_website.dto.CartLineDto;
+import com.example.shopping_website.model.CartItem;
+import com.example.shopping_website.repository.CartItemRepository;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 默认购物车存储：每次增删改都在调用方事务中直接写 cart_items
+ */
+@Component
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseCartStore implements CartStore {
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public List<CartLineDto> getLines(Long userId) {
+        return cartItemRepository.findCartLinesByUserId(userId);
+    }
+
+    @Override
+    public int getQuantity(Long userId, Long productId) {
+        return cartItemRepository.findByUserIdAndProductId(userId, productId)
+            .map(CartItem::getQuantity)
+            .orElse(0);
+    }
+
+    @Override
+    public void add(Long userId, Long productId, int quantity) {
+        Optional<CartItem> existingItem = cartItemRepository.findByUserIdAndProductId(userId, productId);
+        if (existingItem.isPresent()) {
+            CartItem cartItem = existingItem.get();
+            cartItem.setQuantity(cartItem.getQuantity() + quantity);
+            cartItemRepository.save(cartItem);
+        } else {
+            CartItem cartItem = new CartItem();
+            cartItem.setUser(userRepository.getReferenceById(userId));
+            cartItem.setProduct(productRepository.getReferenceById(productId));
+            cartItem.setQuantity(quantity);
+            cartItemRepository.save(cartItem);
+        }
+    }
+
+    @Override
+    public void setQuantity(Long userId, Long productId, int quantity) {
+        CartItem cartItem = cartItemRepository.findByUserIdAndProductId(userId, productId)
+            .orElseThrow(() -> new RuntimeException("购物车商品不存在"));
+        if (quantity <= 0) {
+            cartItemRepository.delete(cartItem);
+        } else {
+            cartItem.setQuantity(quantity);
+            cartItemRepository.save(cartItem);
+        }
+    }
+
+    @Override
+    public void remove(Long userId, Long productId) {
+        cartItemRepository.deleteByUserIdAndProductId(userId, productId);
+    }
+
+    @Override
+    public void clear(Long userId) {
+        cartItemRepository.deleteByUserId(userId);
+    }
+
+    @Override
+    public void beforeCheckout(Long userId) {
+        // 表中数据即为权威数据
+    }
+
+    @Override
+    public void afterCheckout(Long userId, Map<Long, Integer> quantities) {
+        // 行已在结算事务中扣减
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "database");
+        return stats;
+    }
+}
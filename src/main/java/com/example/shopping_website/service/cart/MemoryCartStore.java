@@ -0,0 +1,491 @@
+package com.example.shopping_website.service.cart;
+
+import com.example.shopping_website.dto.CartLineDto;
+import com.example.shopping_website.model.CartItem;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.repository.CartItemRepository;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 内存购物车存储（app.cart.store=memory）
+ * - 购物车按用户ID保存在并发 Map 中，每个用户的购物车是不可变快照，修改通过 CAS 替换，无需加锁
+ * - 被修改的用户记为脏数据，由后台线程按固定间隔（或脏用户数达到上限时）批量回写 cart_items
+ * - 首次访问某用户时从 cart_items 恢复；长时间未访问且已回写的购物车会被移出内存
+ * - 结算时在结算事务内同步回写该用户，结算读取的 cart_items 即为权威快照
+ * 仅适用于单实例部署
+ */
+@Component
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "memory")
+public class MemoryCartStore implements CartStore {
+
+    // 回写间隔
+    @Value("${app.cart.write-behind.flush-interval-ms:2000}")
+    private long flushIntervalMs;
+
+    // 脏用户数达到此值时立即触发回写
+    @Value("${app.cart.write-behind.max-dirty:1000}")
+    private int maxDirty;
+
+    // 单个回写事务包含的用户数
+    @Value("${app.cart.write-behind.batch-size:200}")
+    private int batchSize;
+
+    // 空闲多久后移出内存（分钟）
+    @Value("${app.cart.memory.idle-evict-minutes:30}")
+    private long idleEvictMinutes;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService flusher;
+
+    private final ConcurrentHashMap<Long, UserCart> carts = new ConcurrentHashMap<>();
+
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    // 统计信息
+    private final AtomicLong mutationCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushCount = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsDeleted = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println("✅ 内存购物车存储已启用，回写间隔 " + flushIntervalMs + "ms");
+    }
+
+    /**
+     * 关闭前回写全部脏数据
+     */
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int attempt = 0; attempt < 3 && !dirtyUsers.isEmpty(); attempt++) {
+            flushDirty();
+        }
+        if (!dirtyUsers.isEmpty()) {
+            System.err.println("关闭时仍有 " + dirtyUsers.size() + " 个购物车未能回写");
+        }
+    }
+
+    @Override
+    public List<CartLineDto> getLines(Long userId) {
+        Map<Long, Integer> quantities = cart(userId).state.get().quantities;
+        if (quantities.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+
+        List<CartLineDto> lines = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Product product = products.get(entry.getKey());
+            if (product == null) {
+                // 商品已被删除，不展示，回写时也不会写入
+                continue;
+            }
+            lines.add(new CartLineDto(null, product.getId(), product.getName(), product.getPrice(),
+                product.getImageUrl(), product.getStockQuantity(), entry.getValue()));
+        }
+        return lines;
+    }
+
+    @Override
+    public int getQuantity(Long userId, Long productId) {
+        return cart(userId).state.get().quantities.getOrDefault(productId, 0);
+    }
+
+    @Override
+    public void add(Long userId, Long productId, int quantity) {
+        mutate(userId, quantities -> quantities.merge(productId, quantity, Integer::sum));
+    }
+
+    @Override
+    public void setQuantity(Long userId, Long productId, int quantity) {
+        mutate(userId, quantities -> {
+            if (!quantities.containsKey(productId)) {
+                throw new RuntimeException("购物车商品不存在");
+            }
+            if (quantity <= 0) {
+                quantities.remove(productId);
+            } else {
+                quantities.put(productId, quantity);
+            }
+        });
+    }
+
+    @Override
+    public void remove(Long userId, Long productId) {
+        mutate(userId, quantities -> quantities.remove(productId));
+    }
+
+    @Override
+    public void clear(Long userId) {
+        mutate(userId, Map::clear);
+    }
+
+    @Override
+    public void beforeCheckout(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("结算必须在事务中进行");
+        }
+        UserCart cart = carts.get(userId);
+        if (cart == null) {
+            // 不在内存中的购物车都已回写，表中数据即为权威数据
+            return;
+        }
+
+        // 持有回写锁直到结算事务结束，防止后台回写用旧快照覆盖
+        cart.flushLock.lock();
+        CartState snapshot = cart.state.get();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cart.markFlushed(snapshot.version);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                cart.flushLock.unlock();
+                if (status != STATUS_COMMITTED) {
+                    markDirty(userId);
+                }
+            }
+        });
+        writeSnapshots(Map.of(userId, snapshot));
+    }
+
+    @Override
+    public void afterCheckout(Long userId, Map<Long, Integer> checkedOut) {
+        Runnable removeCheckedOut = () -> {
+            // 不在内存中则表中数据已是最新
+            if (carts.containsKey(userId)) {
+                mutate(userId, quantities -> checkedOut.forEach((productId, quantity) ->
+                    quantities.computeIfPresent(productId, (id, current) -> current > quantity ? current - quantity : null)));
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeCheckedOut.run();
+                }
+            });
+        } else {
+            removeCheckedOut.run();
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "memory");
+        stats.put("carts", carts.size());
+        stats.put("dirtyUsers", dirtyUsers.size());
+        stats.put("mutations", mutationCount.get());
+        stats.put("loads", loadCount.get());
+        stats.put("flushes", flushCount.get());
+        stats.put("failedFlushes", failedFlushCount.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("rowsDeleted", rowsDeleted.get());
+        stats.put("evictions", evictionCount.get());
+        return stats;
+    }
+
+    // ============== 内部实现 ==============
+
+    /**
+     * 获取用户购物车，不在内存中时从 cart_items 恢复
+     */
+    private UserCart cart(Long userId) {
+        UserCart cart = carts.get(userId);
+        if (cart == null) {
+            UserCart loaded = load(userId);
+            UserCart existing = carts.putIfAbsent(userId, loaded);
+            cart = existing != null ? existing : loaded;
+        }
+        cart.lastAccess = System.currentTimeMillis();
+        return cart;
+    }
+
+    private UserCart load(Long userId) {
+        List<CartItem> rows = new ArrayList<>(cartItemRepository.findByUserId(userId));
+        rows.sort(Comparator.comparing(CartItem::getId));
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem row : rows) {
+            quantities.put(row.getProduct().getId(), row.getQuantity());
+        }
+        loadCount.incrementAndGet();
+        return new UserCart(new CartState(Collections.unmodifiableMap(quantities), 0, false));
+    }
+
+    /**
+     * 复制当前快照、修改后 CAS 替换；购物车恰好被移出内存时重新获取
+     */
+    private void mutate(Long userId, Consumer<Map<Long, Integer>> change) {
+        while (true) {
+            UserCart cart = cart(userId);
+            CartState current = cart.state.get();
+            if (current.evicted) {
+                Thread.onSpinWait();
+                continue;
+            }
+            Map<Long, Integer> next = new LinkedHashMap<>(current.quantities);
+            change.accept(next);
+            CartState updated = new CartState(Collections.unmodifiableMap(next), current.version + 1, false);
+            if (cart.state.compareAndSet(current, updated)) {
+                mutationCount.incrementAndGet();
+                markDirty(userId);
+                return;
+            }
+        }
+    }
+
+    private void markDirty(Long userId) {
+        dirtyUsers.add(userId);
+        if (dirtyUsers.size() >= maxDirty && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flushDirty();
+            evictIdle();
+        } catch (Exception e) {
+            System.err.println("购物车回写失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void flushDirty() {
+        List<Long> batch = new ArrayList<>();
+        Iterator<Long> iterator = dirtyUsers.iterator();
+        while (iterator.hasNext()) {
+            // 先移出脏集合再取快照，之后的修改会重新标记
+            batch.add(iterator.next());
+            iterator.remove();
+            if (batch.size() >= batchSize) {
+                flushBatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushBatch(batch);
+        }
+    }
+
+    private void flushBatch(List<Long> userIds) {
+        Map<Long, UserCart> locked = new LinkedHashMap<>();
+        Map<Long, CartState> snapshots = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            UserCart cart = carts.get(userId);
+            if (cart == null) {
+                continue;
+            }
+            if (!cart.flushLock.tryLock()) {
+                // 正在结算，下次再写
+                dirtyUsers.add(userId);
+                continue;
+            }
+            locked.put(userId, cart);
+            snapshots.put(userId, cart.state.get());
+        }
+
+        try {
+            if (!snapshots.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> writeSnapshots(snapshots));
+                for (Map.Entry<Long, UserCart> entry : locked.entrySet()) {
+                    entry.getValue().markFlushed(snapshots.get(entry.getKey()).version);
+                }
+                flushCount.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failedFlushCount.incrementAndGet();
+            dirtyUsers.addAll(snapshots.keySet());
+            System.err.println("购物车批量回写失败（" + snapshots.size() + " 个用户），稍后重试: " + e.getMessage());
+        } finally {
+            for (UserCart cart : locked.values()) {
+                cart.flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 将快照与 cart_items 中的现有行比对，只写入变化的行（需在事务中调用）
+     */
+    private void writeSnapshots(Map<Long, CartState> snapshots) {
+        Map<Long, Map<Long, CartItem>> rowsByUser = new HashMap<>();
+        for (CartItem row : cartItemRepository.findByUserIdIn(snapshots.keySet())) {
+            rowsByUser.computeIfAbsent(row.getUser().getId(), k -> new HashMap<>())
+                .put(row.getProduct().getId(), row);
+        }
+
+        // 新增行引用的商品可能已被删除，写入前过滤
+        Set<Long> newProductIds = new HashSet<>();
+        for (Map.Entry<Long, CartState> entry : snapshots.entrySet()) {
+            Map<Long, CartItem> rows = rowsByUser.getOrDefault(entry.getKey(), Collections.emptyMap());
+            for (Long productId : entry.getValue().quantities.keySet()) {
+                if (!rows.containsKey(productId)) {
+                    newProductIds.add(productId);
+                }
+            }
+        }
+        Set<Long> existingProductIds = newProductIds.isEmpty()
+            ? Collections.emptySet()
+            : new HashSet<>(productRepository.findExistingIds(newProductIds));
+
+        List<CartItem> toSave = new ArrayList<>();
+        List<CartItem> toDelete = new ArrayList<>();
+        for (Map.Entry<Long, CartState> entry : snapshots.entrySet()) {
+            Long userId = entry.getKey();
+            Map<Long, CartItem> rows = new HashMap<>(rowsByUser.getOrDefault(userId, Collections.emptyMap()));
+            for (Map.Entry<Long, Integer> line : entry.getValue().quantities.entrySet()) {
+                CartItem row = rows.remove(line.getKey());
+                if (row == null) {
+                    if (existingProductIds.contains(line.getKey())) {
+                        CartItem cartItem = new CartItem();
+                        cartItem.setUser(userRepository.getReferenceById(userId));
+                        cartItem.setProduct(productRepository.getReferenceById(line.getKey()));
+                        cartItem.setQuantity(line.getValue());
+                        toSave.add(cartItem);
+                    }
+                } else if (!line.getValue().equals(row.getQuantity())) {
+                    row.setQuantity(line.getValue());
+                    toSave.add(row);
+                }
+            }
+            toDelete.addAll(rows.values());
+        }
+
+        cartItemRepository.saveAll(toSave);
+        cartItemRepository.deleteAllInBatch(toDelete);
+        rowsWritten.addAndGet(toSave.size());
+        rowsDeleted.addAndGet(toDelete.size());
+    }
+
+    /**
+     * 移出长时间未访问且已完全回写的购物车
+     */
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleEvictMinutes);
+        for (Map.Entry<Long, UserCart> entry : carts.entrySet()) {
+            UserCart cart = entry.getValue();
+            if (cart.lastAccess >= cutoff || dirtyUsers.contains(entry.getKey())) {
+                continue;
+            }
+            CartState state = cart.state.get();
+            if (state.evicted || state.version != cart.flushedVersion || !cart.flushLock.tryLock()) {
+                continue;
+            }
+            try {
+                if (cart.state.compareAndSet(state, new CartState(state.quantities, state.version, true))) {
+                    carts.remove(entry.getKey(), cart);
+                    evictionCount.incrementAndGet();
+                }
+            } finally {
+                cart.flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 某一时刻的购物车内容（不可变）：商品ID -> 数量，保持加入顺序
+     */
+    private static class CartState {
+        private final Map<Long, Integer> quantities;
+        private final long version;
+        private final boolean evicted;
+
+        private CartState(Map<Long, Integer> quantities, long version, boolean evicted) {
+            this.quantities = quantities;
+            this.version = version;
+            this.evicted = evicted;
+        }
+    }
+
+    /**
+     * 单个用户的购物车：当前快照、已回写的版本、回写锁（只在回写/结算时使用）
+     */
+    private static class UserCart {
+        private final AtomicReference<CartState> state;
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private volatile long flushedVersion;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private UserCart(CartState initial) {
+            this.state = new AtomicReference<>(initial);
+            this.flushedVersion = initial.version;
+        }
+
+        // 调用方持有 flushLock
+        private void markFlushed(long version) {
+            flushedVersion = Math.max(flushedVersion, version);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.shopping_website.service.catalog;
+
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 商品导入/导出文件格式
+ */
+public enum CatalogFormat {
+
+    CSV("csv", new MediaType("text", "csv", StandardCharsets.UTF_8)),
+
+    // 每行一个 JSON 对象
+    NDJSON("ndjson", new MediaType("application", "x-ndjson", StandardCharsets.UTF_8));
+
+    private final String extension;
+
+    private final MediaType mediaType;
+
+    CatalogFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * 按显式指定的格式（csv / ndjson / jsonl）或文件扩展名判断格式
+     */
+    public static CatalogFormat resolve(String format, String fileName) {
+        String hint = format != null && !format.isBlank() ? format : fileName;
+        if (hint != null) {
+            String lower = hint.trim().toLowerCase();
+            if (lower.equals("csv") || lower.endsWith(".csv")) {
+                return CSV;
+            }
+            if (lower.equals("ndjson") || lower.equals("jsonl")
+                    || lower.endsWith(".ndjson") || lower.endsWith(".jsonl") || lower.endsWith(".json")) {
+                return NDJSON;
+            }
+        }
+        throw new RuntimeException("不支持的文件格式，请使用 CSV 或 NDJSON");
+    }
+}
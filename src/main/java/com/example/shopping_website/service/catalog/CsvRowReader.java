@@ -0,0 +1,164 @@
+package com.example.shopping_website.service.catalog;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式 CSV 读取器（RFC 4180）
+ * - 第一行为表头
+ * - 支持双引号包裹的字段、字段内的逗号/换行，以及 "" 转义的引号
+ * - 按字符流解析，不会把整个文件读入内存
+ */
+public class CsvRowReader implements ImportRowReader {
+
+    // 单个字段最大长度，防止未闭合的引号把剩余文件当成一个字段
+    private static final int MAX_FIELD_LENGTH = 65536;
+
+    private final Reader reader;
+
+    private final List<String> header;
+
+    // 当前物理行号（从 1 开始）
+    private long line = 1;
+
+    private long rowNumber;
+
+    // 预读的一个字符（-2 表示没有）
+    private int pushback = -2;
+
+    private boolean eof;
+
+    public CsvRowReader(Reader reader) throws IOException {
+        this.reader = reader;
+        List<String> names = readRecord();
+        if (names == null) {
+            throw new IOException("CSV 文件为空");
+        }
+        header = new ArrayList<>(names.size());
+        for (String name : names) {
+            header.add(ImportRowReader.normalizeField(name));
+        }
+    }
+
+    @Override
+    public Map<String, String> next() throws IOException {
+        List<String> values;
+        do {
+            rowNumber = line;
+            values = readRecord();
+            if (values == null) {
+                return null;
+            }
+            // 跳过空行
+        } while (values.size() == 1 && values.get(0).isEmpty());
+
+        if (values.size() > header.size()) {
+            throw new ImportFormatException("列数(" + values.size() + ")多于表头列数(" + header.size() + ")");
+        }
+        Map<String, String> row = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            row.put(header.get(i), values.get(i));
+        }
+        return row;
+    }
+
+    @Override
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 读取一条记录，文件结束返回 null
+     */
+    private List<String> readRecord() throws IOException {
+        if (eof) {
+            return null;
+        }
+        int c = read();
+        if (c == -1) {
+            eof = true;
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean tooLong = false;
+        while (true) {
+            if (c == -1) {
+                eof = true;
+                if (quoted) {
+                    throw new ImportFormatException("引号未闭合");
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+            if (quoted) {
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        unread(next);
+                    }
+                }
+                line++;
+                fields.add(field.toString());
+                if (tooLong) {
+                    throw new ImportFormatException("字段长度超过 " + MAX_FIELD_LENGTH + " 个字符");
+                }
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+
+            if (field.length() > MAX_FIELD_LENGTH) {
+                // 丢弃超长内容，继续读到记录结束再报错，保证后续行能正常解析
+                tooLong = true;
+                field.setLength(0);
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushback != -2) {
+            int c = pushback;
+            pushback = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        pushback = c;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.shopping_website.service.catalog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 逐行读取导入文件，每次只在内存中保留当前一行
+ * 字段名统一为小写、去掉下划线/中划线/空格（如 stock_quantity -> stockquantity）
+ */
+public interface ImportRowReader extends Closeable {
+
+    /**
+     * 读取下一行（字段名 -> 原始文本值），到达文件末尾返回 null
+     * @throws ImportFormatException 当前行格式错误（读取器已跳过该行，可以继续读取）
+     */
+    Map<String, String> next() throws IOException;
+
+    /**
+     * 最近一次 next() 返回（或出错）的行号
+     */
+    long getRowNumber();
+
+    static String normalizeField(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (char c : name.trim().toCharArray()) {
+            if (c != '_' && c != '-' && c != ' ' && c != '\uFEFF') {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * 单行格式错误（不影响后续行）
+     */
+    class ImportFormatException extends RuntimeException {
+        public ImportFormatException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.shopping_website.service.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 流式 NDJSON 读取器：每行一个 JSON 对象，空行跳过
+ */
+public class NdjsonRowReader implements ImportRowReader {
+
+    private final BufferedReader reader;
+
+    private final ObjectMapper objectMapper;
+
+    private long rowNumber;
+
+    public NdjsonRowReader(BufferedReader reader, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Map<String, String> next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            rowNumber++;
+        } while (line.isBlank());
+
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new ImportFormatException("JSON 格式错误: " + e.getOriginalMessage());
+        }
+        if (node == null || !node.isObject()) {
+            throw new ImportFormatException("每行必须是一个 JSON 对象");
+        }
+
+        Map<String, String> row = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (value.isContainerNode()) {
+                throw new ImportFormatException("字段 " + field.getKey() + " 必须是简单值");
+            }
+            row.put(ImportRowReader.normalizeField(field.getKey()), value.isNull() ? null : value.asText());
+        }
+        return row;
+    }
+
+    @Override
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.shopping_website.service.catalog;
+
+import com.example.shopping_website.dto.ProductExportRow;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.util.CsvUtil;
+import com.example.shopping_website.util.FileUploadUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 商家商品目录导出（CSV / NDJSON）
+ * - 数据库端流式读取（只进游标），每行投影写出后即丢弃，堆内存占用与商品数量无关
+ * - 写出表头后立即 flush，客户端马上开始收到数据
+ * - 列名与批量导入一致，导出的文件可以直接重新导入
+ * - 每个导出在整个下载期间占用一个数据库连接（只读事务），同时进行的导出数有上限，
+ *   超出时由调用方直接拒绝，慢速下载不会占满连接池
+ */
+@Service
+public class ProductExportService {
+
+    private static final String[] CSV_COLUMNS = {
+        "id", "name", "description", "price", "stockQuantity", "imageUrl", "createdAt", "updatedAt"
+    };
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 每写出多少行主动 flush 一次（其余时候由缓冲区写满时自动输出）
+    @Value("${app.export.flush-every-rows:1000}")
+    private int flushEveryRows;
+
+    // 同时进行的导出数上限（应明显小于数据库连接池大小）
+    @Value("${app.export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private Semaphore slots;
+
+    // 统计信息
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong exportCount = new AtomicLong();
+    private final AtomicLong exportedRowCount = new AtomicLong();
+    private final AtomicLong abortedCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(Math.max(0, maxConcurrent));
+    }
+
+    /**
+     * 占用一个导出名额（在返回响应之前调用），已满时返回 false
+     * 成功后必须在导出结束时调用 releaseSlot
+     */
+    public boolean tryAcquireSlot() {
+        if (slots.tryAcquire()) {
+            return true;
+        }
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    public void releaseSlot() {
+        slots.release();
+    }
+
+    /**
+     * 把商家的全部商品写到输出流（在 StreamingResponseBody 中调用）
+     * 只读事务贯穿整个写出过程，结果集游标在事务结束前关闭
+     * @return 写出的商品数
+     */
+    @Transactional(readOnly = true)
+    public long export(Long userId, CatalogFormat format, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<ProductExportRow> stream = productRepository.streamExportRowsByUserId(userId)) {
+            rows = format == CatalogFormat.CSV
+                ? writeCsv(stream.iterator(), writer)
+                : writeNdjson(stream.iterator(), writer);
+            writer.flush();
+            exportCount.incrementAndGet();
+            return rows;
+        } catch (IOException | UncheckedIOException e) {
+            // 客户端中途断开
+            abortedCount.incrementAndGet();
+            throw e;
+        } finally {
+            exportedRowCount.addAndGet(rows);
+            System.out.println("商品导出 - 用户ID: " + userId + ", 格式: " + format + ", " + rows + " 行, 耗时 " +
+                (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("exports", exportCount.get());
+        metrics.put("exportedRows", exportedRowCount.get());
+        metrics.put("aborted", abortedCount.get());
+        metrics.put("active", maxConcurrent - slots.availablePermits());
+        metrics.put("maxConcurrent", maxConcurrent);
+        metrics.put("rejected", rejectedCount.get());
+        return metrics;
+    }
+
+    private long writeCsv(Iterator<ProductExportRow> rows, Writer writer) throws IOException {
+        writer.write(CsvUtil.BOM);
+        writer.write(String.join(",", CSV_COLUMNS));
+        writer.write('\n');
+        writer.flush();
+
+        long count = 0;
+        while (rows.hasNext()) {
+            ProductExportRow row = rows.next();
+            writer.write(String.valueOf(row.getId()));
+            writer.write(',');
+            writer.write(CsvUtil.escape(row.getName()));
+            writer.write(',');
+            writer.write(CsvUtil.escape(row.getDescription()));
+            writer.write(',');
+            writer.write(row.getPrice() != null ? row.getPrice().toString() : "");
+            writer.write(',');
+            writer.write(row.getStockQuantity() != null ? row.getStockQuantity().toString() : "");
+            writer.write(',');
+            writer.write(CsvUtil.escape(fileUploadUtil.getImageUrl(row.getImageUrl())));
+            writer.write(',');
+            writer.write(formatTime(row.getCreatedAt()));
+            writer.write(',');
+            writer.write(formatTime(row.getUpdatedAt()));
+            writer.write('\n');
+            if (++count % flushEveryRows == 0) {
+                writer.flush();
+            }
+        }
+        return count;
+    }
+
+    private long writeNdjson(Iterator<ProductExportRow> rows, Writer writer) throws IOException {
+        // 输出流由调用方关闭
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.flush();
+
+        long count = 0;
+        while (rows.hasNext()) {
+            ProductExportRow row = rows.next();
+            generator.writeStartObject();
+            generator.writeNumberField("id", row.getId());
+            generator.writeStringField("name", row.getName());
+            generator.writeStringField("description", row.getDescription());
+            if (row.getPrice() != null) {
+                generator.writeNumberField("price", row.getPrice());
+            } else {
+                generator.writeNullField("price");
+            }
+            if (row.getStockQuantity() != null) {
+                generator.writeNumberField("stockQuantity", row.getStockQuantity());
+            } else {
+                generator.writeNullField("stockQuantity");
+            }
+            generator.writeStringField("imageUrl", fileUploadUtil.getImageUrl(row.getImageUrl()));
+            generator.writeStringField("createdAt", row.getCreatedAt() != null ? row.getCreatedAt().toString() : null);
+            generator.writeStringField("updatedAt", row.getUpdatedAt() != null ? row.getUpdatedAt().toString() : null);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (++count % flushEveryRows == 0) {
+                generator.flush();
+            }
+        }
+        generator.flush();
+        return count;
+    }
+
+    private static String formatTime(LocalDateTime time) {
+        return time != null ? time.toString() : "";
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.shopping_website.service.catalog;
+
+import com.example.shopping_website.dto.ImportRowError;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 商品批量导入任务的进度与错误报告（供页面轮询）
+ */
+@Data
+public class ProductImportJob {
+
+    public enum Status {
+        // 文件已接收，等待后台处理
+        PENDING,
+        // 后台处理中
+        RUNNING,
+        // 处理完成（可能有部分行失败）
+        COMPLETED,
+        // 文件无法处理（如表头缺少必填列）
+        FAILED
+    }
+
+    private final String jobId;
+
+    private final Long userId;
+
+    private final String fileName;
+
+    private final CatalogFormat format;
+
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile Status status = Status.PENDING;
+
+    private volatile String message;
+
+    // 已读取的行数
+    private volatile long processedRows;
+
+    // 已写入数据库的行数
+    private volatile long importedRows;
+
+    // 失败的行数（错误报告最多保留 maxErrors 条，计数不受限制）
+    private volatile long failedRows;
+
+    private volatile LocalDateTime completedAt;
+
+    private final int maxErrors;
+
+    private final List<ImportRowError> errors = new ArrayList<>();
+
+    public ProductImportJob(String jobId, Long userId, String fileName, CatalogFormat format, int maxErrors) {
+        this.jobId = jobId;
+        this.userId = userId;
+        this.fileName = fileName;
+        this.format = format;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * 记录一行失败（同一行可能有多个字段错误，只计一次失败行）
+     */
+    public synchronized void reject(List<ImportRowError> rowErrors) {
+        failedRows++;
+        for (ImportRowError error : rowErrors) {
+            if (errors.size() >= maxErrors) {
+                break;
+            }
+            errors.add(error);
+        }
+    }
+
+    public void reject(long rowNumber, String field, String message) {
+        reject(List.of(new ImportRowError(rowNumber, field, message)));
+    }
+
+    /**
+     * 错误报告的副本
+     */
+    public synchronized List<ImportRowError> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
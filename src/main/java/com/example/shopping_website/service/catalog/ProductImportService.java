@@ -0,0 +1,427 @@
+package com.example.shopping_website.service.catalog;
+
+import com.example.shopping_website.dto.ImportRowError;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.model.User;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.UserRepository;
+import com.example.shopping_website.service.SellerStatsService;
+import com.example.shopping_website.service.cache.BoundedLruCache;
+import com.example.shopping_website.service.event.ProductChangePublisher;
+import com.example.shopping_website.util.FileUploadUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品批量导入（CSV / NDJSON）
+ * - 上传文件先落到临时文件，请求立即返回任务ID，由后台线程逐行流式解析，内存占用与文件大小无关
+ * - 每行按 Product 的校验注解校验，通过的行攒够一批后在一个事务中保存（配合 hibernate.jdbc.batch_size 批量插入）
+ * - 整批保存失败时逐行重试，定位出失败的行写入错误报告
+ * - 商品变更事件队列积压过多时暂停写入，避免事件溢出导致搜索索引全量重建
+ * - 同一商家同时只能有一个导入任务
+ */
+@Component
+public class ProductImportService {
+
+    // 商品名称列的长度上限（products.name 为 VARCHAR(255)）
+    private static final int MAX_NAME_LENGTH = 255;
+
+    // 后台线程数
+    @Value("${app.import.workers:2}")
+    private int workers;
+
+    // 每个事务保存的商品数
+    @Value("${app.import.batch-size:500}")
+    private int batchSize;
+
+    // 单个文件最多导入的行数
+    @Value("${app.import.max-rows:50000}")
+    private int maxRows;
+
+    // 错误报告最多保留的条数
+    @Value("${app.import.max-errors:1000}")
+    private int maxErrors;
+
+    // 商品变更事件积压超过该值时暂停写入
+    @Value("${app.import.max-event-backlog:5000}")
+    private int maxEventBacklog;
+
+    // 任务状态保留时间（秒）
+    @Value("${app.import.job-ttl-seconds:3600}")
+    private long jobTtlSeconds;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductChangePublisher productChangePublisher;
+
+    @Autowired
+    private SellerStatsService sellerStatsService;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ExecutorService workerPool;
+
+    private BoundedLruCache<String, ProductImportJob> jobs;
+
+    // 正在导入的商家 -> 任务ID
+    private final ConcurrentHashMap<Long, String> pendingUsers = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong importedRowCount = new AtomicLong();
+    private final AtomicLong rejectedRowCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong throttledMs = new AtomicLong();
+    private volatile long lastBatchMs;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        jobs = new BoundedLruCache<>("productImportJobs", 1000, 32L * 1024 * 1024, jobTtlSeconds * 1000,
+            job -> 512 + job.getMaxErrors() * 128, 4);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "product-import-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        workerPool.shutdownNow();
+        try {
+            workerPool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 提交导入任务
+     * @param format csv / ndjson，为空时按文件扩展名判断
+     */
+    public ProductImportJob submit(Long userId, MultipartFile file, String format) {
+        if (file == null || file.isEmpty()) {
+            throw new RuntimeException("请选择要导入的文件");
+        }
+        CatalogFormat resolved = CatalogFormat.resolve(format, file.getOriginalFilename());
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        if (pendingUsers.putIfAbsent(userId, jobId) != null) {
+            throw new RuntimeException("上一个导入任务正在处理中，请稍候");
+        }
+
+        Path tempFile = null;
+        try {
+            // 请求结束后上传的临时文件会被删除，先转存一份供后台读取
+            tempFile = Files.createTempFile("product-import-", "." + resolved.getExtension());
+            file.transferTo(tempFile);
+
+            ProductImportJob job = new ProductImportJob(jobId, userId, file.getOriginalFilename(), resolved, maxErrors);
+            jobs.put(jobId, job);
+            Path source = tempFile;
+            workerPool.submit(() -> run(job, source));
+            submittedCount.incrementAndGet();
+            System.out.println("商品导入任务已提交 - 任务ID: " + jobId + ", 用户ID: " + userId + ", 文件: " + file.getOriginalFilename());
+            return job;
+        } catch (IOException | RuntimeException e) {
+            pendingUsers.remove(userId, jobId);
+            deleteQuietly(tempFile);
+            throw new RuntimeException("保存导入文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 查询导入任务；不存在、已过期或不属于该用户时返回 null
+     */
+    public ProductImportJob getJob(String jobId, Long userId) {
+        ProductImportJob job = jobs.get(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            return null;
+        }
+        return job;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("workers", workers);
+        metrics.put("running", pendingUsers.size());
+        metrics.put("submitted", submittedCount.get());
+        metrics.put("completed", completedCount.get());
+        metrics.put("failed", failedCount.get());
+        metrics.put("importedRows", importedRowCount.get());
+        metrics.put("rejectedRows", rejectedRowCount.get());
+        metrics.put("batches", batchCount.get());
+        metrics.put("lastBatchMs", lastBatchMs);
+        metrics.put("throttledMs", throttledMs.get());
+        return metrics;
+    }
+
+    private void run(ProductImportJob job, Path source) {
+        long start = System.currentTimeMillis();
+        job.setStatus(ProductImportJob.Status.RUNNING);
+        try (ImportRowReader reader = openReader(job.getFormat(), source)) {
+            List<PendingRow> buffer = new ArrayList<>(batchSize);
+            boolean truncated = false;
+            while (true) {
+                Map<String, String> row;
+                try {
+                    row = reader.next();
+                } catch (ImportRowReader.ImportFormatException e) {
+                    job.setProcessedRows(job.getProcessedRows() + 1);
+                    job.reject(reader.getRowNumber(), null, e.getMessage());
+                    continue;
+                }
+                if (row == null) {
+                    break;
+                }
+                if (job.getProcessedRows() >= maxRows) {
+                    truncated = true;
+                    break;
+                }
+                job.setProcessedRows(job.getProcessedRows() + 1);
+
+                long rowNumber = reader.getRowNumber();
+                List<ImportRowError> errors = new ArrayList<>();
+                Product product = toProduct(row, rowNumber, errors);
+                if (!errors.isEmpty()) {
+                    job.reject(errors);
+                    continue;
+                }
+                buffer.add(new PendingRow(rowNumber, product));
+                if (buffer.size() >= batchSize) {
+                    persist(job, buffer);
+                    buffer.clear();
+                }
+            }
+            if (!buffer.isEmpty()) {
+                persist(job, buffer);
+            }
+
+            job.setStatus(ProductImportJob.Status.COMPLETED);
+            job.setMessage("导入完成：成功 " + job.getImportedRows() + " 行，失败 " + job.getFailedRows() + " 行" +
+                (truncated ? "（超过单次导入上限 " + maxRows + " 行，其余行未处理）" : ""));
+            completedCount.incrementAndGet();
+        } catch (CharacterCodingException e) {
+            fail(job, "文件必须使用 UTF-8 编码");
+        } catch (Exception e) {
+            fail(job, e.getMessage());
+        } finally {
+            job.setCompletedAt(LocalDateTime.now());
+            importedRowCount.addAndGet(job.getImportedRows());
+            rejectedRowCount.addAndGet(job.getFailedRows());
+            pendingUsers.remove(job.getUserId(), job.getJobId());
+            deleteQuietly(source);
+            System.out.println("商品导入任务结束 - 任务ID: " + job.getJobId() + ", " + job.getMessage() +
+                ", 耗时 " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    private void fail(ProductImportJob job, String reason) {
+        job.setStatus(ProductImportJob.Status.FAILED);
+        job.setMessage("导入失败: " + reason + "（已导入 " + job.getImportedRows() + " 行）");
+        failedCount.incrementAndGet();
+    }
+
+    /**
+     * 整批在一个事务中保存；失败时逐行重试，定位出失败的行
+     */
+    private void persist(ProductImportJob job, List<PendingRow> rows) throws InterruptedException {
+        awaitEventBacklog();
+        long start = System.currentTimeMillis();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                User owner = userRepository.getReferenceById(job.getUserId());
+                List<Product> products = new ArrayList<>(rows.size());
+                for (PendingRow row : rows) {
+                    row.product.setUser(owner);
+                    products.add(row.product);
+                }
+                productRepository.saveAll(products);
+                sellerStatsService.onProductsCreated(job.getUserId(), products);
+            });
+            job.setImportedRows(job.getImportedRows() + rows.size());
+        } catch (Exception batchError) {
+            for (PendingRow row : rows) {
+                persistSingle(job, row);
+            }
+        }
+        lastBatchMs = System.currentTimeMillis() - start;
+        batchCount.incrementAndGet();
+    }
+
+    private void persistSingle(ProductImportJob job, PendingRow row) {
+        // 回滚的事务中已分配过主键，重试时按新商品重新保存
+        row.product.setId(null);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                row.product.setUser(userRepository.getReferenceById(job.getUserId()));
+                productRepository.save(row.product);
+                sellerStatsService.onProductsCreated(job.getUserId(), List.of(row.product));
+            });
+            job.setImportedRows(job.getImportedRows() + 1);
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            job.reject(row.rowNumber, null, "保存失败: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * 每批商品提交后都会产生插入事件，下游消费跟不上时等待队列回落
+     */
+    private void awaitEventBacklog() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (productChangePublisher.getQueueDepth() > maxEventBacklog) {
+            Thread.sleep(50);
+        }
+        throttledMs.addAndGet(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 把一行转换为商品，字段错误写入 errors
+     */
+    private Product toProduct(Map<String, String> row, long rowNumber, List<ImportRowError> errors) {
+        Product product = new Product();
+        product.setName(trimToNull(firstOf(row, "name", "名称", "商品名称")));
+        product.setDescription(trimToNull(firstOf(row, "description", "描述", "商品描述")));
+
+        String price = trimToNull(firstOf(row, "price", "价格"));
+        if (price != null) {
+            try {
+                product.setPrice(Double.parseDouble(price));
+            } catch (NumberFormatException e) {
+                errors.add(new ImportRowError(rowNumber, "price", "价格格式错误: " + price));
+            }
+        }
+
+        String stock = trimToNull(firstOf(row, "stockquantity", "stock", "库存", "库存数量"));
+        if (stock != null) {
+            try {
+                int quantity = Integer.parseInt(stock);
+                if (quantity < 0) {
+                    errors.add(new ImportRowError(rowNumber, "stockQuantity", "库存数量不能小于0"));
+                }
+                product.setStockQuantity(quantity);
+            } catch (NumberFormatException e) {
+                errors.add(new ImportRowError(rowNumber, "stockQuantity", "库存数量格式错误: " + stock));
+            }
+        }
+
+        String imageUrl = trimToNull(firstOf(row, "imageurl", "image", "图片"));
+        product.setImageUrl(imageUrl != null ? fileUploadUtil.getImageUrl(imageUrl) : fileUploadUtil.getDefaultImageUrl());
+
+        if (product.getName() != null && product.getName().length() > MAX_NAME_LENGTH) {
+            errors.add(new ImportRowError(rowNumber, "name", "商品名称不能超过" + MAX_NAME_LENGTH + "个字符"));
+        }
+        for (ConstraintViolation<Product> violation : validator.validate(product)) {
+            String field = violation.getPropertyPath().toString();
+            // 格式错误的字段已经报告过，不再重复报告“不能为空”
+            if (errors.stream().noneMatch(error -> field.equals(error.getField()))) {
+                errors.add(new ImportRowError(rowNumber, field, violation.getMessage()));
+            }
+        }
+        return product;
+    }
+
+    private ImportRowReader openReader(CatalogFormat format, Path source) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+        try {
+            return format == CatalogFormat.CSV
+                ? new CsvRowReader(reader)
+                : new NdjsonRowReader(reader, objectMapper);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    private static String firstOf(Map<String, String> row, String... names) {
+        for (String name : names) {
+            String value = row.get(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("删除导入临时文件失败: " + path + ", " + e.getMessage());
+        }
+    }
+
+    /**
+     * 已通过校验、等待保存的行
+     */
+    @AllArgsConstructor
+    private static class PendingRow {
+        private final long rowNumber;
+        private final Product product;
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.shopping_website.service.checkout;
+
+import com.example.shopping_website.dto.CartLineDto;
+import com.example.shopping_website.dto.CheckoutReservation;
+import com.example.shopping_website.model.Order;
+import com.example.shopping_website.model.OrderLine;
+import com.example.shopping_website.service.CartService;
+import com.example.shopping_website.service.OrderService;
+import com.example.shopping_website.service.cache.BoundedLruCache;
+import com.example.shopping_website.service.inventory.InventoryService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分阶段结算
+ * - 请求线程在一个事务中扣减库存（CartService.reserveCheckout）并写入 PENDING 订单，生成结算单后入队立即返回
+ * - 固定数量的后台线程按批次完成后续步骤（订单改为 PLACED、清理购物车），每批一个事务，失败的结算单单独重试
+ * - 多次重试仍失败时，在单独的事务中把订单改为 FAILED 并归还库存，商品保留在购物车中
+ * - 进程退出时队列中的结算单不会丢失：启动时及之后定期把较早的 PENDING 订单重新入队
+ *   （每一步都以订单状态的条件更新为准，多个节点同时处理同一订单也只会生效一次）
+ * - 队列有界：积压达到上限时新的结算直接拒绝，不会先扣库存再排不上队
+ * - 同一用户同时只能有一笔结算在处理
+ */
+@Component
+public class CheckoutPipeline {
+
+    // 后台线程数
+    @Value("${app.checkout.workers:4}")
+    private int workers;
+
+    // 最多积压的结算单数
+    @Value("${app.checkout.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // 每批处理的结算单数
+    @Value("${app.checkout.batch-size:50}")
+    private int batchSize;
+
+    // 单个结算单最多尝试次数
+    @Value("${app.checkout.max-attempts:3}")
+    private int maxAttempts;
+
+    // 结算单状态保留时间（秒）
+    @Value("${app.checkout.ticket-ttl-seconds:3600}")
+    private long ticketTtlSeconds;
+
+    // 待处理订单恢复任务的间隔（秒），以及创建多久之后仍为 PENDING 才恢复（秒）
+    @Value("${app.checkout.recovery-interval-seconds:60}")
+    private long recoveryIntervalSeconds;
+
+    @Value("${app.checkout.recovery-age-seconds:300}")
+    private long recoveryAgeSeconds;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<CheckoutTicket> queue;
+
+    private Semaphore capacity;
+
+    private ExecutorService workerPool;
+
+    private ScheduledExecutorService recovery;
+
+    private volatile boolean running;
+
+    private BoundedLruCache<String, CheckoutTicket> tickets;
+
+    // 正在处理结算的用户 -> 结算单号
+    private final ConcurrentHashMap<Long, String> pendingUsers = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong compensationFailedCount = new AtomicLong();
+    private final AtomicLong recoveredCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private volatile long lastBatchMs;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        queue = new LinkedBlockingQueue<>();
+        capacity = new Semaphore(queueCapacity);
+        tickets = new BoundedLruCache<>("checkoutTickets", 100000, 64L * 1024 * 1024, ticketTtlSeconds * 1000,
+            ticket -> 256 + ticket.getQuantities().size() * 48, 8);
+
+        running = true;
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "checkout-worker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.submit(this::workLoop);
+        }
+
+        recovery = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "checkout-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recovery.scheduleWithFixedDelay(this::recoverQuietly, 0, recoveryIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        recovery.shutdownNow();
+        workerPool.shutdownNow();
+        try {
+            workerPool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            System.err.println("关闭时仍有 " + queue.size() + " 个结算单未完成后台处理（订单为待处理状态，之后由恢复任务继续处理）");
+        }
+    }
+
+    /**
+     * 提交结算：同步扣减库存、写入待处理订单并入队，返回结算单（状态为 PENDING）
+     * 库存不足等错误直接抛出，此时不会入队
+     */
+    public CheckoutTicket submit(Long userId) {
+        String orderNo = nextOrderNo();
+        if (pendingUsers.putIfAbsent(userId, orderNo) != null) {
+            throw new RuntimeException("上一笔结算正在处理中，请稍候");
+        }
+        if (!capacity.tryAcquire()) {
+            pendingUsers.remove(userId, orderNo);
+            rejectedCount.incrementAndGet();
+            throw new RuntimeException("结算繁忙，请稍后再试");
+        }
+
+        try {
+            CheckoutTicket ticket = transactionTemplate.execute(status -> {
+                CheckoutReservation reservation = cartService.reserveCheckout(userId);
+                // 待处理订单与库存扣减一起提交：之后进程退出也能找到已扣减的库存属于哪笔结算
+                orderService.placeOrders(List.of(orderService.buildOrder(orderNo, userId, reservation.getLines())));
+                return new CheckoutTicket(orderNo, userId, reservation.getQuantities(),
+                    reservation.getLines(), reservation.getTotalQuantity(), reservation.getTotalPrice());
+            });
+            tickets.put(orderNo, ticket);
+            queue.add(ticket);
+            submittedCount.incrementAndGet();
+            return ticket;
+        } catch (RuntimeException e) {
+            capacity.release();
+            pendingUsers.remove(userId, orderNo);
+            throw e;
+        }
+    }
+
+    /**
+     * 查询结算单状态；不存在、已过期或不属于该用户时返回 null
+     */
+    public CheckoutTicket getTicket(String orderNo, Long userId) {
+        CheckoutTicket ticket = tickets.get(orderNo);
+        if (ticket == null || !ticket.getUserId().equals(userId)) {
+            return null;
+        }
+        return ticket;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("workers", workers);
+        metrics.put("submitted", submittedCount.get());
+        metrics.put("rejected", rejectedCount.get());
+        metrics.put("completed", completedCount.get());
+        metrics.put("failed", failedCount.get());
+        metrics.put("compensationFailed", compensationFailedCount.get());
+        metrics.put("recovered", recoveredCount.get());
+        metrics.put("batches", batchCount.get());
+        metrics.put("lastBatchMs", lastBatchMs);
+        return metrics;
+    }
+
+    private void workLoop() {
+        List<CheckoutTicket> batch = new ArrayList<>();
+        while (running) {
+            try {
+                CheckoutTicket first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                System.err.println("结算后台处理异常: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 整批在一个事务中完成；整批失败时逐个重试，定位出失败的结算单
+     */
+    private void processBatch(List<CheckoutTicket> batch) {
+        long start = System.currentTimeMillis();
+        for (CheckoutTicket ticket : batch) {
+            ticket.setStatus(CheckoutTicket.Status.PROCESSING);
+            ticket.setAttempts(ticket.getAttempts() + 1);
+        }
+
+        try {
+            List<Boolean> placed = transactionTemplate.execute(status -> {
+                List<Boolean> results = new ArrayList<>(batch.size());
+                for (CheckoutTicket ticket : batch) {
+                    results.add(finalizeTicket(ticket));
+                }
+                return results;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                finish(batch.get(i), placed.get(i));
+            }
+        } catch (Exception batchError) {
+            for (CheckoutTicket ticket : batch) {
+                processSingle(ticket, batchError);
+            }
+        }
+
+        lastBatchMs = System.currentTimeMillis() - start;
+        batchCount.incrementAndGet();
+    }
+
+    private void processSingle(CheckoutTicket ticket, Exception previousError) {
+        Exception error = previousError;
+        while (ticket.getAttempts() < maxAttempts) {
+            ticket.setAttempts(ticket.getAttempts() + 1);
+            try {
+                // 上次提交其实已成功（如提交后连接中断）时订单已不是 PENDING，不会重复清理购物车
+                finish(ticket, transactionTemplate.execute(status -> finalizeTicket(ticket)));
+                return;
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+        fail(ticket, error);
+    }
+
+    /**
+     * 结算后续步骤（在调用方事务中）：订单从 PENDING 改为 PLACED 后清理购物车
+     * 订单已不是 PENDING（已由其他线程或节点处理）时什么也不做
+     * @return 订单是否已下单（false 表示订单已失败）
+     */
+    private boolean finalizeTicket(CheckoutTicket ticket) {
+        if (orderService.updateStatus(ticket.getOrderNo(), Order.Status.PENDING, Order.Status.PLACED)) {
+            cartService.completeCheckout(ticket.getUserId(), ticket.getQuantities());
+            return true;
+        }
+        return orderService.getOrderStatus(ticket.getOrderNo()) == Order.Status.PLACED;
+    }
+
+    private void finish(CheckoutTicket ticket, boolean placed) {
+        if (placed) {
+            complete(ticket);
+        } else {
+            markFailed(ticket, "结算处理失败，库存已归还，商品仍保留在购物车中");
+        }
+    }
+
+    private void complete(CheckoutTicket ticket) {
+        ticket.setStatus(CheckoutTicket.Status.COMPLETED);
+        ticket.setMessage("结算成功！订单 " + ticket.getOrderNo() + " 共 " + ticket.getTotalQuantity() + " 件商品，总计 ¥" +
+            String.format("%.2f", ticket.getTotalPrice()));
+        ticket.setCompletedAt(LocalDateTime.now());
+        release(ticket);
+        completedCount.incrementAndGet();
+        System.out.println("结算单处理完成 - 单号: " + ticket.getOrderNo() + ", 用户ID: " + ticket.getUserId());
+    }
+
+    /**
+     * 多次重试仍失败：在单独的事务中把订单改为 FAILED 并归还库存（购物车没有清理）
+     * 补偿也失败时订单保持 PENDING，由恢复任务稍后重新处理
+     */
+    private void fail(CheckoutTicket ticket, Exception error) {
+        String reason = error != null ? error.getMessage() : "未知错误";
+        Order.Status outcome;
+        try {
+            outcome = transactionTemplate.execute(status -> {
+                if (orderService.updateStatus(ticket.getOrderNo(), Order.Status.PENDING, Order.Status.FAILED)) {
+                    inventoryService.release(ticket.getQuantities(), ticket.getUserId());
+                    return Order.Status.FAILED;
+                }
+                return orderService.getOrderStatus(ticket.getOrderNo());
+            });
+        } catch (Exception e) {
+            // 结算单状态不再保留在本节点，页面按订单状态（PENDING）继续显示处理中
+            tickets.invalidate(ticket.getOrderNo());
+            release(ticket);
+            compensationFailedCount.incrementAndGet();
+            System.err.println("结算单处理失败且归还库存失败，稍后自动重试 - 单号: " + ticket.getOrderNo() +
+                               ", " + reason + ", " + e.getMessage());
+            return;
+        }
+
+        if (outcome == Order.Status.PLACED) {
+            complete(ticket);
+        } else {
+            markFailed(ticket, "结算处理失败，库存已归还，商品仍保留在购物车中: " + reason);
+        }
+    }
+
+    private void markFailed(CheckoutTicket ticket, String message) {
+        ticket.setStatus(CheckoutTicket.Status.FAILED);
+        ticket.setMessage(message);
+        ticket.setCompletedAt(LocalDateTime.now());
+        release(ticket);
+        failedCount.incrementAndGet();
+        System.err.println("结算单处理失败 - 单号: " + ticket.getOrderNo() + ", " + message);
+    }
+
+    private void release(CheckoutTicket ticket) {
+        pendingUsers.remove(ticket.getUserId(), ticket.getOrderNo());
+        capacity.release();
+    }
+
+    private void recoverQuietly() {
+        try {
+            recoverPendingOrders();
+        } catch (Exception e) {
+            System.err.println("恢复待处理订单失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把创建时间早于 recovery-age 的 PENDING 订单重新入队（进程在后台处理前退出，或失败后补偿也失败）
+     * 本节点队列中的结算单跳过；其他节点仍在处理的订单即使被重复入队，也只会有一次状态更新成功
+     */
+    void recoverPendingOrders() {
+        LocalDateTime before = LocalDateTime.now().minusSeconds(recoveryAgeSeconds);
+        List<CheckoutTicket> recovered = transactionTemplate.execute(status -> {
+            List<CheckoutTicket> result = new ArrayList<>();
+            for (Order order : orderService.getPendingOrders(before, queueCapacity)) {
+                CheckoutTicket local = tickets.get(order.getOrderNo());
+                if (local == null || local.isFinished()) {
+                    result.add(toTicket(order));
+                }
+            }
+            return result;
+        });
+
+        int queued = 0;
+        for (CheckoutTicket ticket : recovered) {
+            if (!capacity.tryAcquire()) {
+                break;
+            }
+            tickets.put(ticket.getOrderNo(), ticket);
+            queue.add(ticket);
+            queued++;
+        }
+        if (queued > 0) {
+            recoveredCount.addAndGet(queued);
+            System.out.println("已恢复待处理订单: " + queued + " 个");
+        }
+    }
+
+    /**
+     * 由订单及订单行还原结算单（在事务中调用，会读取订单行）
+     */
+    private static CheckoutTicket toTicket(Order order) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        List<CartLineDto> lines = new ArrayList<>(order.getLines().size());
+        for (OrderLine line : order.getLines()) {
+            quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+            lines.add(new CartLineDto(null, line.getProductId(), line.getProductName(), line.getUnitPrice(),
+                null, null, line.getQuantity()));
+        }
+        return new CheckoutTicket(order.getOrderNo(), order.getUser().getId(), quantities, lines,
+            order.getTotalQuantity(), order.getTotalPrice());
+    }
+
+    /**
+     * 订单号：32 位随机 UUID（十六进制），多节点、重启后都不会重复；orders.order_no 上有唯一约束
+     */
+    private static String nextOrderNo() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.shopping_website.service.checkout;
+
+import com.example.shopping_website.dto.CartLineDto;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结算单的处理状态（供页面轮询）
+ */
+@Data
+public class CheckoutTicket {
+
+    public enum Status {
+        // 库存已扣减，等待后台处理
+        PENDING,
+        // 后台处理中
+        PROCESSING,
+        // 处理完成
+        COMPLETED,
+        // 多次重试后仍处理失败
+        FAILED
+    }
+
+    private final String orderNo;
+
+    private final Long userId;
+
+    // 商品ID -> 数量
+    private final Map<Long, Integer> quantities;
+
+    // 下单时的商品行快照
+    private final List<CartLineDto> lines;
+
+    private final int totalQuantity;
+
+    private final double totalPrice;
+
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile Status status = Status.PENDING;
+
+    private volatile String message;
+
+    private volatile int attempts;
+
+    private volatile LocalDateTime completedAt;
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.shopping_website.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 商品变更事件，在事务提交后发布
+ */
+@Data
+@AllArgsConstructor
+public class ProductChangeEvent {
+
+    public enum Type {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private Long productId;
+
+    private Type type;
+
+    // 事件产生时间（毫秒），用于计算消费延迟
+    private long timestamp;
+
+    public boolean isDelete() {
+        return type == Type.DELETE;
+    }
+}
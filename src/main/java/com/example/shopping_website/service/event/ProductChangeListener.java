@@ -0,0 +1,21 @@
+package com.example.shopping_website.service.event;
+
+import java.util.List;
+
+/**
+ * 商品变更的下游消费者（搜索索引、列表缓存、商家统计等）
+ * 由 ProductChangePublisher 在后台线程中按批次调用
+ */
+public interface ProductChangeListener {
+
+    /**
+     * 处理一批已合并的变更事件，同一商品ID在一批中最多出现一次
+     */
+    void onProductChanges(List<ProductChangeEvent> events);
+
+    /**
+     * 队列溢出导致事件丢失时调用，消费者应自行全量重建
+     */
+    default void onEventsDropped() {
+    }
+}
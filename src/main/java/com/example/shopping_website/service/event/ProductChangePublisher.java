@@ -0,0 +1,234 @@
+package com.example.shopping_website.service.event;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品变更事件队列
+ * - 事务提交后的事件进入有界队列，由单个后台线程按批次消费
+ * - 同一批次窗口内对同一商品ID的多次变更会被合并为一次
+ * - 队列满时丢弃事件并通知消费者全量重建
+ */
+@Component
+public class ProductChangePublisher {
+
+    // 批处理窗口：收到第一个事件后最多等待多久再分发
+    @Value("${app.product-events.batch-window-ms:200}")
+    private long batchWindowMs;
+
+    // 单批最多处理的事件数
+    @Value("${app.product-events.batch-size:500}")
+    private int batchSize;
+
+    // 队列容量
+    @Value("${app.product-events.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Autowired
+    private ObjectProvider<ProductChangeListener> listeners;
+
+    private BlockingQueue<ProductChangeEvent> queue;
+
+    private ExecutorService consumer;
+
+    private volatile boolean running;
+
+    private final AtomicBoolean droppedSinceLastBatch = new AtomicBoolean(false);
+
+    // 统计信息
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong failedBatchCount = new AtomicLong();
+    private volatile long lastLagMs;
+    private volatile long maxLagMs;
+    private volatile long lastProcessedAt;
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        consumer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "product-change-consumer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        consumer.submit(this::consumeLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        consumer.shutdownNow();
+        try {
+            consumer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 发布变更事件（应在事务提交后调用），不会阻塞调用线程
+     */
+    public void publish(Long productId, ProductChangeEvent.Type type) {
+        ProductChangeEvent event = new ProductChangeEvent(productId, type, System.currentTimeMillis());
+        if (queue.offer(event)) {
+            publishedCount.incrementAndGet();
+        } else {
+            droppedCount.incrementAndGet();
+            droppedSinceLastBatch.set(true);
+            System.err.println("商品变更队列已满，丢弃事件: " + event);
+        }
+    }
+
+    /**
+     * 在当前事务提交后发布变更事件（回滚时不发布）；没有事务时直接发布
+     */
+    public void publishAfterCommit(Long productId, ProductChangeEvent.Type type) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(productId, type);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(productId, type);
+            }
+        });
+    }
+
+    /**
+     * 当前统计信息：队列深度、处理量、合并数、延迟等
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("published", publishedCount.get());
+        metrics.put("processed", processedCount.get());
+        metrics.put("coalesced", coalescedCount.get());
+        metrics.put("dropped", droppedCount.get());
+        metrics.put("batches", batchCount.get());
+        metrics.put("failedBatches", failedBatchCount.get());
+        metrics.put("lastLagMs", lastLagMs);
+        metrics.put("maxLagMs", maxLagMs);
+        metrics.put("lastProcessedAt", lastProcessedAt);
+        return metrics;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void consumeLoop() {
+        List<ProductChangeEvent> drained = new ArrayList<>();
+        while (running) {
+            try {
+                ProductChangeEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null && !droppedSinceLastBatch.get()) {
+                    continue;
+                }
+                if (first != null) {
+                    drained.add(first);
+                }
+
+                // 在批处理窗口内继续收集事件
+                long deadline = System.currentTimeMillis() + batchWindowMs;
+                while (drained.size() < batchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    ProductChangeEvent next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    drained.add(next);
+                }
+
+                dispatch(drained);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                failedBatchCount.incrementAndGet();
+                System.err.println("处理商品变更事件失败: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<ProductChangeEvent> drained) {
+        boolean dropped = droppedSinceLastBatch.getAndSet(false);
+        List<ProductChangeEvent> batch = coalesce(drained);
+
+        for (ProductChangeListener listener : listeners.orderedStream().toList()) {
+            try {
+                if (dropped) {
+                    listener.onEventsDropped();
+                }
+                if (!batch.isEmpty()) {
+                    listener.onProductChanges(batch);
+                }
+            } catch (Exception e) {
+                failedBatchCount.incrementAndGet();
+                System.err.println("商品变更消费者处理失败 [" + listener.getClass().getSimpleName() + "]: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (ProductChangeEvent event : drained) {
+            oldest = Math.min(oldest, event.getTimestamp());
+        }
+        lastLagMs = now - oldest;
+        maxLagMs = Math.max(maxLagMs, lastLagMs);
+        lastProcessedAt = now;
+        processedCount.addAndGet(drained.size());
+        coalescedCount.addAndGet(drained.size() - batch.size());
+        batchCount.incrementAndGet();
+    }
+
+    /**
+     * 合并同一商品ID的事件：保留最早的时间戳；
+     * 先插入后更新仍视为插入，任何删除都以删除为准
+     */
+    private List<ProductChangeEvent> coalesce(List<ProductChangeEvent> events) {
+        Map<Long, ProductChangeEvent> merged = new LinkedHashMap<>();
+        for (ProductChangeEvent event : events) {
+            merged.merge(event.getProductId(), event, (previous, current) -> {
+                ProductChangeEvent.Type type = current.getType();
+                if (previous.getType() == ProductChangeEvent.Type.INSERT
+                        && current.getType() == ProductChangeEvent.Type.UPDATE) {
+                    type = ProductChangeEvent.Type.INSERT;
+                }
+                return new ProductChangeEvent(current.getProductId(), type, previous.getTimestamp());
+            });
+        }
+        return new ArrayList<>(merged.values());
+    }
+}
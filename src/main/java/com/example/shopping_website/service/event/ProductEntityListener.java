@@ -0,0 +1,40 @@
+package com.example.shopping_website.service.event;
+
+import com.example.shopping_website.model.Product;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Product 实体生命周期监听器
+ * 捕获插入/更新/删除，并在事务提交后交给 ProductChangePublisher（回滚时不发布）
+ * 由 Hibernate 通过 Spring 的 BeanContainer 创建，因此可以注入 Spring Bean
+ */
+public class ProductEntityListener {
+
+    @Autowired
+    private ProductChangePublisher publisher;
+
+    @PostPersist
+    public void afterInsert(Product product) {
+        publishAfterCommit(product.getId(), ProductChangeEvent.Type.INSERT);
+    }
+
+    @PostUpdate
+    public void afterUpdate(Product product) {
+        publishAfterCommit(product.getId(), ProductChangeEvent.Type.UPDATE);
+    }
+
+    @PostRemove
+    public void afterDelete(Product product) {
+        publishAfterCommit(product.getId(), ProductChangeEvent.Type.DELETE);
+    }
+
+    private void publishAfterCommit(Long productId, ProductChangeEvent.Type type) {
+        if (productId == null || publisher == null) {
+            return;
+        }
+        publisher.publishAfterCommit(productId, type);
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.shopping_website.service.image;
+
+import com.example.shopping_website.model.ImageBlob;
+import com.example.shopping_website.repository.ImageBlobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 按内容寻址的商品图片存储
+ * - 文件名为内容的 SHA-256，按哈希前两级分目录（ab/cd/abcd....jpg），单个目录不会堆积大量文件
+ * - 先写到临时文件并计算哈希，再原子重命名到目标路径，读取方看不到写了一半的文件
+ * - 相同内容只存一份，image_blobs.ref_count 记录引用数，降到 0 时删除文件
+ * - 内容不变则路径不变，URL 可以被永久缓存
+ * - 缩放图（见 ImageVariantPipeline）存放在原图旁边，随原图一起删除
+ * 同一哈希的写入/释放在进程内按分段锁串行执行（单实例部署）
+ */
+@Component
+public class ContentAddressedImageStore {
+
+    // 分段锁数量
+    private static final int LOCK_STRIPES = 64;
+
+    // 内容寻址的文件名：ab/cd/{sha256}.{ext}
+    private static final Pattern BLOB_NAME =
+        Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.[a-z]+");
+
+    // 写入中的临时文件目录（与目标目录在同一文件系统上，保证重命名是原子的）
+    private static final String TEMP_DIR = ".tmp";
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private volatile Path baseDir;
+
+    // 原图和缩放图文件被删除后通知（参数为内容哈希），如清除缩放图的内存记录
+    private final List<Consumer<String>> deleteListeners = new CopyOnWriteArrayList<>();
+
+    // 统计信息
+    private final AtomicLong storedCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+    private final AtomicLong releasedCount = new AtomicLong();
+    private final AtomicLong deletedCount = new AtomicLong();
+
+    public ContentAddressedImageStore() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 设置存储根目录（由 FileUploadUtil 在上传目录确定后调用），并清理上次异常退出遗留的临时文件
+     */
+    public void open(Path baseDir) throws IOException {
+        this.baseDir = baseDir;
+        Path tempDir = baseDir.resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        try (var dirStream = Files.newDirectoryStream(tempDir)) {
+            for (Path leftover : dirStream) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * 保存图片内容并增加引用计数
+     * @param in 图片内容，由调用方关闭
+     * @param extension 文件扩展名（含点），仅在内容第一次出现时使用
+     * @return 内容对应的存储记录（fileName 为相对于根目录的路径）
+     */
+    public ImageBlob store(InputStream in, String extension) throws IOException {
+        Path tempFile = newTempFile();
+        MessageDigest digest = newDigest();
+        long size;
+        try (DigestInputStream digestIn = new DigestInputStream(in, digest)) {
+            size = Files.copy(digestIn, tempFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+
+        try {
+            synchronized (lockFor(contentHash)) {
+                ImageBlob existing = imageBlobRepository.findById(contentHash).orElse(null);
+                String fileName = existing != null
+                    ? existing.getFileName()
+                    : contentHash.substring(0, 2) + "/" + contentHash.substring(2, 4) + "/" + contentHash + extension;
+                Path target = resolve(fileName);
+                if (Files.exists(target)) {
+                    deduplicatedCount.incrementAndGet();
+                } else {
+                    Files.createDirectories(target.getParent());
+                    moveAtomically(tempFile, target);
+                }
+                imageBlobRepository.acquire(contentHash, fileName, size);
+                storedCount.incrementAndGet();
+                return new ImageBlob(contentHash, fileName, size, null,
+                    existing != null ? existing.getVariants() : null, LocalDateTime.now());
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * 减少引用计数，没有引用时删除文件
+     */
+    public void release(String contentHash) {
+        if (contentHash == null) {
+            return;
+        }
+        synchronized (lockFor(contentHash)) {
+            ImageBlob blob = imageBlobRepository.findById(contentHash).orElse(null);
+            if (blob == null || imageBlobRepository.release(contentHash) == 0) {
+                return;
+            }
+            releasedCount.incrementAndGet();
+            if (imageBlobRepository.deleteUnreferenced(contentHash) > 0) {
+                deleteQuietly(blob.getFileName());
+                for (String suffix : splitVariants(blob.getVariants())) {
+                    deleteQuietly(variantFileName(blob.getFileName(), suffix));
+                }
+                deletedCount.incrementAndGet();
+                for (Consumer<String> listener : deleteListeners) {
+                    listener.accept(contentHash);
+                }
+            }
+        }
+    }
+
+    /**
+     * 注册文件删除通知（在该哈希的锁内调用，监听方不应执行耗时操作）
+     */
+    public void addDeleteListener(Consumer<String> listener) {
+        deleteListeners.add(listener);
+    }
+
+    /**
+     * 新的临时文件路径（与存储目录在同一文件系统上），用于先写后原子重命名
+     */
+    public Path newTempFile() {
+        return baseDir.resolve(TEMP_DIR).resolve(UUID.randomUUID() + ".part");
+    }
+
+    /**
+     * 把已写好的缩放图移动到原图旁边并记录
+     * 与 release 使用同一把锁：原图已被删除时返回 false，由调用方删除临时文件
+     * @param files 缩放图后缀（如 grid.jpg）-> 临时文件
+     */
+    public boolean attachVariants(String contentHash, Map<String, Path> files) throws IOException {
+        synchronized (lockFor(contentHash)) {
+            ImageBlob blob = imageBlobRepository.findById(contentHash).orElse(null);
+            if (blob == null || blob.getRefCount() <= 0) {
+                return false;
+            }
+            for (Map.Entry<String, Path> entry : files.entrySet()) {
+                moveAtomically(entry.getValue(), resolve(variantFileName(blob.getFileName(), entry.getKey())));
+            }
+            imageBlobRepository.updateVariants(contentHash, String.join(",", files.keySet()));
+            return true;
+        }
+    }
+
+    /**
+     * 缩放图的存储路径：原图去掉扩展名后加 _{后缀}，如 ab/cd/{sha256}_grid.jpg
+     */
+    public static String variantFileName(String fileName, String suffix) {
+        int dotIndex = fileName.lastIndexOf('.');
+        String base = dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+        return base + "_" + suffix;
+    }
+
+    /**
+     * 解析 image_blobs.variants 列
+     */
+    public static List<String> splitVariants(String variants) {
+        if (variants == null || variants.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.asList(variants.split(","));
+    }
+
+    /**
+     * 文件名是否为本存储管理的内容寻址路径（旧格式 product_{id}.jpg 返回 false）
+     */
+    public boolean isBlobFileName(String fileName) {
+        return fileName != null && BLOB_NAME.matcher(fileName).matches();
+    }
+
+    /**
+     * 存储路径对应的文件
+     */
+    public Path resolve(String fileName) {
+        return baseDir.resolve(fileName);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("stored", storedCount.get());
+        metrics.put("deduplicated", deduplicatedCount.get());
+        metrics.put("released", releasedCount.get());
+        metrics.put("deletedFiles", deletedCount.get());
+        return metrics;
+    }
+
+    private void deleteQuietly(String fileName) {
+        try {
+            Files.deleteIfExists(resolve(fileName));
+        } catch (IOException e) {
+            System.err.println("删除图片文件失败: " + fileName + ", " + e.getMessage());
+        }
+    }
+
+    private Object lockFor(String contentHash) {
+        return locks[Math.floorMod(contentHash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (FileAlreadyExistsException e) {
+            // 内容相同，已存在的文件即可使用
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
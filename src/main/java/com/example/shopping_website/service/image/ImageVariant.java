@@ -0,0 +1,46 @@
+package com.example.shopping_website.service.image;
+
+/**
+ * 商品图片的缩放尺寸
+ * 每个尺寸按长边不超过 maxSize 等比缩放，原图不大于该尺寸时直接使用原图
+ */
+public enum ImageVariant {
+
+    // 首页/列表网格缩略图
+    GRID("grid", 400),
+
+    // 商品详情页
+    DETAILS("details", 1000),
+
+    // 详情页放大查看
+    ZOOM("zoom", 2000);
+
+    private final String key;
+
+    private final int maxSize;
+
+    ImageVariant(String key, int maxSize) {
+        this.key = key;
+        this.maxSize = maxSize;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 按名称查找尺寸（模板中使用小写名称，如 'grid'），不存在时返回 null
+     */
+    public static ImageVariant fromKey(String key) {
+        for (ImageVariant variant : values()) {
+            if (variant.key.equalsIgnoreCase(key)) {
+                return variant;
+            }
+        }
+        return null;
+    }
+}
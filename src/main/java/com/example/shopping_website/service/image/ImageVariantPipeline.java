@@ -0,0 +1,365 @@
+package com.example.shopping_website.service.image;
+
+import com.example.shopping_website.model.ImageBlob;
+import com.example.shopping_website.repository.ImageBlobRepository;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import com.example.shopping_website.service.event.ProductChangePublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 商品图片缩放图生成
+ * - 上传成功后提交到有界线程池异步处理，队列满时放弃（页面继续使用原图，下次启动时补生成）
+ * - 原图只解码一次（大图解码时按行列抽样，内存占用与原图分辨率无关），从大到小依次缩放出各尺寸
+ * - 不透明图片输出 JPEG，带透明通道的输出 PNG；运行环境有 WebP 编码器时额外输出 WebP
+ * - 缩放图按原图内容寻址，存放在原图旁边，相同内容只生成一次；
+ *   原图引用降到 0 被删除时缩放图一起删除，同时清除内存记录，之后再次上传相同内容时重新生成
+ * 模板通过 ${@imageVariantPipeline.url(product.imageUrl, 'grid')} 取指定尺寸，未生成时返回原图URL
+ */
+@Component
+public class ImageVariantPipeline {
+
+    // 内容寻址图片的URL：.../ab/cd/{sha256}.{ext}
+    private static final Pattern BLOB_URL =
+        Pattern.compile(".*/[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})\\.[a-z]+");
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private ProductChangePublisher productChangePublisher;
+
+    // 后台线程数（缩放是 CPU 密集操作，不宜超过核数）
+    @Value("${app.images.variants.workers:2}")
+    private int workers;
+
+    // 最多排队的图片数
+    @Value("${app.images.variants.queue-capacity:200}")
+    private int queueCapacity;
+
+    // JPEG 压缩质量（0-1）
+    @Value("${app.images.variants.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    private ThreadPoolExecutor workerPool;
+
+    // 是否有 WebP 编码器（JDK 自带的 ImageIO 没有，需要额外的插件）
+    private boolean webpSupported;
+
+    // 内容哈希 -> 已生成的缩放图后缀（如 grid.jpg）
+    private final Map<String, Set<String>> variants = new ConcurrentHashMap<>();
+
+    // 排队或处理中的内容哈希，避免重复提交
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    // 统计信息
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong generatedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        webpSupported = ImageIO.getImageWritersByFormatName("webp").hasNext();
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "image-variants-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        // 原图连同缩放图被删除后不再返回缩放图URL
+        imageStore.addDeleteListener(variants::remove);
+        System.out.println("图片缩放线程池启动: " + workers + " 个线程, WebP " + (webpSupported ? "可用" : "不可用"));
+    }
+
+    @PreDestroy
+    public void stop() {
+        workerPool.shutdownNow();
+        try {
+            workerPool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 应用启动完成后加载已生成的缩放图，并为还没有处理过的图片补生成
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadVariants() {
+        int missing = 0;
+        for (ImageBlob blob : imageBlobRepository.findAll()) {
+            if (blob.getVariants() != null) {
+                variants.put(blob.getContentHash(), Set.copyOf(ContentAddressedImageStore.splitVariants(blob.getVariants())));
+            } else if (blob.getRefCount() != null && blob.getRefCount() > 0) {
+                submit(null, blob.getContentHash(), blob.getFileName());
+                missing++;
+            }
+        }
+        System.out.println("图片缩放图加载完成: " + variants.size() + " 张已处理, " + missing + " 张待生成");
+    }
+
+    /**
+     * 提交上传图片的缩放任务
+     * 存储记录中没有缩放图时（新内容，或原图曾被删除后重新上传，可能由其他节点删除）先清除内存中过期的记录
+     * @param blob ContentAddressedImageStore.store 的返回值
+     */
+    public void submit(Long productId, ImageBlob blob) {
+        if (blob.getVariants() == null) {
+            variants.remove(blob.getContentHash());
+        }
+        submit(productId, blob.getContentHash(), blob.getFileName());
+    }
+
+    /**
+     * 提交缩放任务（上传成功后调用）
+     * @param productId 上传图片的商品，缩放图生成后发布该商品的变更事件以刷新页面缓存；可以为空
+     */
+    public void submit(Long productId, String contentHash, String fileName) {
+        if (contentHash == null || variants.containsKey(contentHash) || !pending.add(contentHash)) {
+            return;
+        }
+        try {
+            workerPool.execute(() -> {
+                try {
+                    generate(productId, contentHash, fileName);
+                } finally {
+                    pending.remove(contentHash);
+                }
+            });
+            submittedCount.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            pending.remove(contentHash);
+            droppedCount.incrementAndGet();
+            System.err.println("图片缩放队列已满，暂不生成: " + fileName);
+        }
+    }
+
+    /**
+     * 指定尺寸的图片URL，缩放图未生成（或原图本身不大于该尺寸）时返回原图URL
+     */
+    public String url(String imageUrl, String variant) {
+        String url = variantUrl(imageUrl, variant, false);
+        return url != null ? url : imageUrl;
+    }
+
+    /**
+     * 指定尺寸的 WebP 图片URL，没有时返回 null（模板中作为 <picture> 的可选 source）
+     */
+    public String webpUrl(String imageUrl, String variant) {
+        return variantUrl(imageUrl, variant, true);
+    }
+
+    private String variantUrl(String imageUrl, String variantKey, boolean webp) {
+        if (imageUrl == null) {
+            return null;
+        }
+        Matcher matcher = BLOB_URL.matcher(imageUrl);
+        ImageVariant variant = ImageVariant.fromKey(variantKey);
+        if (!matcher.matches() || variant == null) {
+            return null;
+        }
+        Set<String> suffixes = variants.get(matcher.group(1));
+        if (suffixes == null) {
+            return null;
+        }
+        String[] candidates = webp
+            ? new String[] {variant.getKey() + ".webp"}
+            : new String[] {variant.getKey() + ".jpg", variant.getKey() + ".png"};
+        for (String suffix : candidates) {
+            if (suffixes.contains(suffix)) {
+                return ContentAddressedImageStore.variantFileName(imageUrl, suffix);
+            }
+        }
+        return null;
+    }
+
+    private void generate(Long productId, String contentHash, String fileName) {
+        long start = System.currentTimeMillis();
+        Map<String, Path> outputs = new LinkedHashMap<>();
+        try {
+            Path source = imageStore.resolve(fileName);
+            int[] originalSize = new int[1];
+            BufferedImage image = decode(source, originalSize);
+            if (image == null) {
+                // 无法解码的格式（如没有插件时的 WebP），记为无需生成
+                attach(productId, contentHash, outputs);
+                return;
+            }
+
+            boolean alpha = image.getColorModel().hasAlpha();
+            String extension = alpha ? ".png" : ".jpg";
+            BufferedImage current = image;
+            ImageVariant[] ordered = ImageVariant.values();
+            for (int i = ordered.length - 1; i >= 0; i--) {
+                ImageVariant variant = ordered[i];
+                if (originalSize[0] <= variant.getMaxSize()) {
+                    continue;
+                }
+                // 从上一个（更大的）尺寸继续缩小，不重复处理原图
+                current = resize(current, variant.getMaxSize(), alpha);
+
+                Path temp = imageStore.newTempFile();
+                outputs.put(variant.getKey() + extension, temp);
+                if (alpha) {
+                    ImageIO.write(current, "png", temp.toFile());
+                } else {
+                    writeJpeg(current, temp);
+                }
+                if (webpSupported) {
+                    Path webpTemp = imageStore.newTempFile();
+                    outputs.put(variant.getKey() + ".webp", webpTemp);
+                    ImageIO.write(current, "webp", webpTemp.toFile());
+                }
+            }
+            attach(productId, contentHash, outputs);
+        } catch (Exception | OutOfMemoryError e) {
+            failedCount.incrementAndGet();
+            System.err.println("生成缩放图失败: " + fileName + ", " + e);
+        } finally {
+            for (Path temp : outputs.values()) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // 临时目录在下次启动时清理
+                }
+            }
+            totalMillis.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    private void attach(Long productId, String contentHash, Map<String, Path> outputs) throws IOException {
+        if (!imageStore.attachVariants(contentHash, outputs)) {
+            // 处理期间原图已被删除
+            return;
+        }
+        variants.put(contentHash, Set.copyOf(outputs.keySet()));
+        generatedCount.incrementAndGet();
+        if (productId != null && !outputs.isEmpty()) {
+            productChangePublisher.publish(productId, ProductChangeEvent.Type.UPDATE);
+        }
+    }
+
+    /**
+     * 解码原图；长边超过最大尺寸两倍以上时按整数倍抽样读取，避免把超大图片完整解码到内存
+     * @param originalSize 输出参数，原图长边像素
+     */
+    private static BufferedImage decode(Path source, int[] originalSize) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                originalSize[0] = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int largest = ImageVariant.values()[ImageVariant.values().length - 1].getMaxSize();
+                int subsampling = Math.max(1, originalSize[0] / (largest * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 等比缩放到长边不超过 maxSize
+     * 每步最多缩小一半，多步双线性插值的效果接近高质量缩放，速度快得多
+     */
+    private static BufferedImage resize(BufferedImage source, int maxSize, boolean alpha) {
+        double scale = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage scaled = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = scaled;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long generated = generatedCount.get();
+        metrics.put("webpSupported", webpSupported);
+        metrics.put("queued", workerPool.getQueue().size());
+        metrics.put("active", workerPool.getActiveCount());
+        metrics.put("submitted", submittedCount.get());
+        metrics.put("generated", generated);
+        metrics.put("failed", failedCount.get());
+        metrics.put("dropped", droppedCount.get());
+        metrics.put("avgMillis", generated > 0 ? totalMillis.get() / generated : 0);
+        metrics.put("processedImages", variants.size());
+        return metrics;
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.shopping_website.service.image;
+
+import com.example.shopping_website.model.ProductImage;
+import com.example.shopping_website.repository.ProductImageRepository;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import com.example.shopping_website.service.event.ProductChangeListener;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品图片元数据的内存索引（商品ID -> 文件名、大小、内容哈希、宽高）
+ * - 元数据持久化在 product_images 表，启动时整表加载，上传/删除时同步写库和内存
+ * - 请求路径上判断图片是否存在只查内存，不再对每个商品 Files.exists + 目录遍历
+ * - 商品删除事件到达时清理对应的元数据
+ * - 内容寻址存储的图片在元数据被替换或删除时释放引用（见 ContentAddressedImageStore）：
+ *   替换/删除前对数据库中的元数据行加写锁，原图片取自加锁读到的行，提交后才释放，
+ *   并发上传同一商品（包括其他节点）时每张被替换的图片只释放一次
+ */
+@Component
+public class ProductImageIndex implements ProductChangeListener {
+
+    // 回填时每批校验的商品数
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    @Autowired
+    private ProductImageRepository productImageRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<Long, ProductImage> images = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    // 统计信息
+    private final AtomicLong lookupCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong backfillCount = new AtomicLong();
+    private final AtomicLong insertConflictCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 从数据库加载全部图片元数据（启动时由 FileUploadUtil 调用，之后再回填旧图片）
+     */
+    public void load() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<Long, ProductImage> loaded = new ConcurrentHashMap<>();
+            for (ProductImage image : productImageRepository.findAll()) {
+                loaded.put(image.getProductId(), image);
+            }
+            images.clear();
+            images.putAll(loaded);
+            ready = true;
+            System.out.println("✅ 商品图片索引加载完成: " + images.size() + " 张图片, 耗时 " +
+                (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            System.err.println("加载商品图片索引失败，将按需查询数据库: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 商品图片元数据，没有图片时返回 null
+     * 索引未加载完成时回退到数据库主键查询（仍不访问文件系统）
+     */
+    public ProductImage get(Long productId) {
+        if (productId == null) {
+            return null;
+        }
+        lookupCount.incrementAndGet();
+        if (ready) {
+            return images.get(productId);
+        }
+        fallbackCount.incrementAndGet();
+        return productImageRepository.findById(productId).orElse(null);
+    }
+
+    /**
+     * 商品图片文件名，没有图片时返回 null
+     */
+    public String getFileName(Long productId) {
+        ProductImage image = get(productId);
+        return image != null ? image.getFileName() : null;
+    }
+
+    public boolean contains(Long productId) {
+        return get(productId) != null;
+    }
+
+    /**
+     * 保存图片元数据（上传成功后调用，覆盖该商品原有的记录，提交后释放原图片的引用）
+     */
+    public ProductImage record(ProductImage image) {
+        ProductImage[] previous = new ProductImage[1];
+        ProductImage saved;
+        try {
+            saved = transactionTemplate.execute(status -> replace(image, previous));
+        } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+            // 该商品还没有记录时无行可锁，并发上传会有一方插入冲突（主键重复，MySQL 间隙锁下为死锁回滚），
+            // 重试时已能锁到对方插入的行
+            insertConflictCount.incrementAndGet();
+            saved = transactionTemplate.execute(status -> replace(image, previous));
+        }
+        images.merge(saved.getProductId(), saved, ProductImageIndex::newer);
+        recordCount.incrementAndGet();
+        if (previous[0] != null) {
+            releaseBlob(previous[0]);
+        }
+        return saved;
+    }
+
+    /**
+     * 删除商品的图片元数据
+     * @return 被删除的元数据，没有图片时返回 null
+     */
+    public ProductImage remove(Long productId) {
+        if (productId == null) {
+            return null;
+        }
+        ProductImage removed = transactionTemplate.execute(status -> {
+            ProductImage current = productImageRepository.findByProductIdForUpdate(productId).orElse(null);
+            if (current != null) {
+                productImageRepository.deleteByProductId(productId);
+            }
+            return current;
+        });
+        if (removed == null) {
+            images.remove(productId);
+            return null;
+        }
+        images.computeIfPresent(productId, (id, cached) -> newer(cached, removed) == removed ? null : cached);
+        releaseBlob(removed);
+        return removed;
+    }
+
+    // 在事务内锁定原记录并写入新记录，previous[0] 为被替换的记录（锁定时读到的副本）
+    private ProductImage replace(ProductImage image, ProductImage[] previous) {
+        ProductImage current = productImageRepository.findByProductIdForUpdate(image.getProductId()).orElse(null);
+        // save 会把新值合并到已加载的实体上，先复制一份原记录
+        previous[0] = current != null ? copyOf(current) : null;
+        image.setUpdatedAt(LocalDateTime.now());
+        if (current == null) {
+            // 没有锁到记录时直接插入：期间其他事务已插入并提交时主键冲突，由 record 重试
+            productImageRepository.insert(image);
+            return image;
+        }
+        return productImageRepository.saveAndFlush(image);
+    }
+
+    /**
+     * 回填还没有元数据的图片（升级前上传的文件），只保存仍存在的商品
+     * @param candidates 商品ID -> 从上传目录扫描出的图片元数据
+     * @return 回填的记录数
+     */
+    public int backfill(Map<Long, ProductImage> candidates) {
+        List<Long> ids = new ArrayList<>();
+        for (Long productId : candidates.keySet()) {
+            if (!images.containsKey(productId)) {
+                ids.add(productId);
+            }
+        }
+
+        int saved = 0;
+        for (int from = 0; from < ids.size(); from += BACKFILL_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + BACKFILL_BATCH_SIZE, ids.size()));
+            List<ProductImage> toSave = new ArrayList<>();
+            for (Long productId : productRepository.findExistingIds(batch)) {
+                ProductImage image = candidates.get(productId);
+                image.setUpdatedAt(LocalDateTime.now());
+                toSave.add(image);
+            }
+            for (ProductImage image : productImageRepository.saveAll(toSave)) {
+                images.put(image.getProductId(), image);
+                saved++;
+            }
+        }
+        backfillCount.addAndGet(saved);
+        return saved;
+    }
+
+    /**
+     * 商品删除后清理图片元数据
+     */
+    @Override
+    public void onProductChanges(List<ProductChangeEvent> events) {
+        Set<Long> deleted = new HashSet<>();
+        for (ProductChangeEvent event : events) {
+            if (event.isDelete()) {
+                deleted.add(event.getProductId());
+            }
+        }
+        if (deleted.isEmpty()) {
+            return;
+        }
+        // 以数据库中加锁读到的记录为准（可能由其他节点写入），提交后再释放引用
+        List<ProductImage> removed = transactionTemplate.execute(status -> {
+            List<ProductImage> current = productImageRepository.findByProductIdInForUpdate(deleted);
+            if (!current.isEmpty()) {
+                productImageRepository.deleteByProductIdIn(deleted);
+            }
+            return current;
+        });
+        images.keySet().removeAll(deleted);
+        for (ProductImage image : removed) {
+            releaseBlob(image);
+        }
+    }
+
+    // 内容寻址存储的图片释放一次引用，旧格式文件由 FileUploadUtil 直接删除
+    private void releaseBlob(ProductImage image) {
+        if (imageStore.isBlobFileName(image.getFileName())) {
+            imageStore.release(image.getContentHash());
+        }
+    }
+
+    // 同一商品的两条记录中较新的一条（并发提交后按 updatedAt 更新内存索引，避免旧记录覆盖新记录）
+    private static ProductImage newer(ProductImage a, ProductImage b) {
+        if (a.getUpdatedAt() == null) {
+            return b;
+        }
+        if (b.getUpdatedAt() == null) {
+            return a;
+        }
+        return b.getUpdatedAt().isBefore(a.getUpdatedAt()) ? a : b;
+    }
+
+    private static ProductImage copyOf(ProductImage image) {
+        return new ProductImage(image.getProductId(), image.getFileName(), image.getSizeBytes(), image.getContentHash(),
+            image.getContentType(), image.getWidth(), image.getHeight(), image.getUpdatedAt());
+    }
+
+    /**
+     * 读取图片文件的元数据：大小、SHA-256、格式和宽高
+     * 宽高只读取图片头，不解码像素
+     * @param contentHash 已知的内容哈希（写入时已计算），为空时读取文件计算
+     */
+    public static ProductImage describe(Long productId, String fileName, Path file, String contentHash) throws IOException {
+        ProductImage image = new ProductImage();
+        image.setProductId(productId);
+        image.setFileName(fileName);
+        image.setSizeBytes(Files.size(file));
+        image.setContentHash(contentHash != null ? contentHash : sha256(file));
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers != null && readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input, true, true);
+                    image.setWidth(reader.getWidth(0));
+                    image.setHeight(reader.getHeight(0));
+                    String[] mimeTypes = reader.getOriginatingProvider().getMIMETypes();
+                    if (mimeTypes != null && mimeTypes.length > 0) {
+                        image.setContentType(mimeTypes[0]);
+                    }
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException e) {
+            // 格式无法识别（如 JDK 不支持的 WEBP），只记录大小和哈希
+            System.err.println("读取图片尺寸失败: " + fileName + ", " + e.getMessage());
+        }
+        if (image.getContentType() == null) {
+            image.setContentType(Files.probeContentType(file));
+        }
+        return image;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return images.size();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ready", ready);
+        metrics.put("images", images.size());
+        metrics.put("lookups", lookupCount.get());
+        metrics.put("databaseFallbacks", fallbackCount.get());
+        metrics.put("recorded", recordCount.get());
+        metrics.put("backfilled", backfillCount.get());
+        metrics.put("insertConflicts", insertConflictCount.get());
+        return metrics;
+    }
+}
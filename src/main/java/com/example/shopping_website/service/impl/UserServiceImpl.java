@@ -7,6 +7,7 @@ import com.example.shopping_website.model.User;
 import com.example.shopping_website.repository.RoleRepository;
 import com.example.shopping_website.repository.UserRepository;
 import com.example.shopping_website.service.UserService;
+import com.example.shopping_website.service.cache.UserCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -31,6 +32,9 @@ public class UserServiceImpl extends UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private UserCache userCache;
+    
     @Override
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -38,7 +42,14 @@ public class UserServiceImpl extends UserService {
     
     @Override
     public Optional<User> getUserById(Long id) {
-        return userRepository.findById(id);
+        // 读缓存（短时过期，资料/角色/密码修改时失效）
+        User cached = userCache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<User> user = userRepository.findWithRolesById(id);
+        user.ifPresent(userCache::put);
+        return user;
     }
     
     @Override
@@ -133,6 +144,7 @@ public class UserServiceImpl extends UserService {
         user.setPhoneNumber(updateDto.getPhoneNumber());
         user.setAddress(updateDto.getAddress());
         
+        userCache.invalidate(userId);
         return userRepository.save(user);
     }
     
@@ -158,24 +170,28 @@ public class UserServiceImpl extends UserService {
             .orElseThrow(() -> new RuntimeException("卖家角色不存在"));
         user.getRoles().add(sellerRole);
         
+        userCache.invalidate(user.getId());
         return userRepository.save(user);
     }
     
     @Override
     @Transactional
     public User updateUserProfile(User user) {
+        userCache.invalidate(user.getId());
         return userRepository.save(user);
     }
     
     @Override
     @Transactional
     public User updateUser(User user) {
+        userCache.invalidate(user.getId());
         return userRepository.save(user);
     }
     
     @Override
     @Transactional
     public void deleteUser(Long id) {
+        userCache.invalidate(id);
         userRepository.deleteById(id);
     }
     
@@ -195,13 +211,14 @@ public class UserServiceImpl extends UserService {
         throw new RuntimeException("当前密码不正确");
     }
     
-    // 检查新密码是否与旧密码相同
-    if (passwordEncoder.matches(newPassword, user.getPassword())) {
+    // 检查新密码是否与旧密码相同（原密码已校验通过，直接比较明文，省去一次哈希计算）
+    if (newPassword.equals(oldPassword)) {
         throw new RuntimeException("新密码不能与当前密码相同");
     }
     
     // 加密新密码并保存
     user.setPassword(passwordEncoder.encode(newPassword));
+    userCache.invalidate(user.getId());
     userRepository.save(user);
     }
     
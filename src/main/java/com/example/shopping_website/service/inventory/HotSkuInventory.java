@@ -0,0 +1,377 @@
+package com.example.shopping_website.service.inventory;
+
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.model.StockBucket;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.StockBucketRepository;
+import com.example.shopping_website.service.SellerStatsService;
+import com.example.shopping_website.service.cache.BoundedLruCache;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import com.example.shopping_website.service.event.ProductChangeListener;
+import com.example.shopping_website.service.event.ProductChangePublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 热点商品库存分桶
+ * - 管理员可为单个商品开启分桶：把当前库存平均拆分到 N 行 stock_buckets，之后结算只扣减分桶
+ * - 结算按路由键（用户ID）哈希到一个桶，该桶不足时按桶序号升序锁住各桶借用
+ *   （所有结算都按桶序号升序加锁，不会互相死锁）
+ * - 商品是否分桶以 stock_buckets 表为准：各节点本地缓存查询结果，商品变更事件、开启/关闭提交后失效；
+ *   缓存过期（其他节点刚切换）导致扣减失败时，调用方用 refresh 重新查询后改走另一条路径
+ * - products.stock_quantity 只用于展示，由后台线程定时汇总各桶写回
+ * - 未开启分桶的商品不受影响
+ */
+@Component
+public class HotSkuInventory implements ProductChangeListener {
+
+    // 单个商品最多的分桶数
+    @Value("${app.inventory.hot-sku.max-buckets:64}")
+    private int maxBuckets;
+
+    // 汇总分桶库存写回 products 的间隔
+    @Value("${app.inventory.hot-sku.reconcile-interval-ms:1000}")
+    private long reconcileIntervalMs;
+
+    // 分桶状态缓存的条目数和存活时间（秒）
+    @Value("${app.inventory.hot-sku.lookup-cache.max-entries:100000}")
+    private int lookupCacheMaxEntries;
+
+    @Value("${app.inventory.hot-sku.lookup-cache.ttl-seconds:60}")
+    private long lookupCacheTtlSeconds;
+
+    @Autowired
+    private StockBucketRepository stockBucketRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductChangePublisher productChangePublisher;
+
+    @Autowired
+    private SellerStatsService sellerStatsService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService reconciler;
+
+    // 商品ID -> 桶数（0 表示未开启分桶）
+    private BoundedLruCache<Long, Integer> bucketCounts;
+
+    // 统计信息
+    private final AtomicLong homeBucketHits = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong contendedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong reconciledCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        bucketCounts = new BoundedLruCache<>("hotSku", lookupCacheMaxEntries, lookupCacheMaxEntries * 64L,
+            lookupCacheTtlSeconds * 1000, count -> 64, 16);
+
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stock-bucket-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        reconciler.shutdownNow();
+    }
+
+    public boolean isSharded(Long productId) {
+        return bucketCount(productId) > 0;
+    }
+
+    /**
+     * 不使用缓存重新查询商品是否分桶（扣减失败、缓存可能过期时调用）
+     */
+    public boolean refresh(Long productId) {
+        refreshCount.incrementAndGet();
+        int count = (int) stockBucketRepository.countByProductId(productId);
+        bucketCounts.put(productId, count);
+        return count > 0;
+    }
+
+    /**
+     * 分桶商品的实际可售库存（各桶之和）
+     */
+    public int available(Long productId) {
+        return stockBucketRepository.sumQuantityByProductId(productId);
+    }
+
+    /**
+     * 为商品开启库存分桶，当前库存平均拆分到各桶
+     */
+    @Transactional
+    public void enable(Long productId, int bucketCount) {
+        if (bucketCount < 2 || bucketCount > maxBuckets) {
+            throw new RuntimeException("分桶数必须在 2 到 " + maxBuckets + " 之间");
+        }
+        // 锁住商品行，拆分期间普通扣减会等待，提交后因已存在分桶而失败，刷新分桶状态后改走分桶扣减
+        Product product = productRepository.findByIdForUpdate(productId)
+            .orElseThrow(() -> new RuntimeException("商品不存在"));
+        if (stockBucketRepository.countByProductId(productId) > 0) {
+            throw new RuntimeException("商品已开启库存分桶");
+        }
+
+        int[] quantities = split(product.getStockQuantity() != null ? product.getStockQuantity() : 0, bucketCount);
+        List<StockBucket> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new StockBucket(null, productId, i, quantities[i]));
+        }
+        stockBucketRepository.saveAll(buckets);
+
+        // 提交后才登记为分桶商品（其他节点由商品变更事件或扣减失败后的 refresh 得知）
+        productChangePublisher.publishAfterCommit(productId, ProductChangeEvent.Type.UPDATE);
+        afterCompletion(committed -> {
+            if (committed) {
+                bucketCounts.invalidate(productId);
+            }
+        });
+
+        System.out.println("开启库存分桶 - 商品ID: " + productId + ", 桶数: " + bucketCount +
+                           ", 库存: " + product.getStockQuantity());
+    }
+
+    /**
+     * 关闭商品的库存分桶，各桶库存合并回 products.stock_quantity
+     */
+    @Transactional
+    public void disable(Long productId) {
+        List<StockBucket> buckets = stockBucketRepository.findByProductIdForUpdate(productId);
+        if (buckets.isEmpty()) {
+            throw new RuntimeException("商品未开启库存分桶");
+        }
+
+        int total = buckets.stream().mapToInt(StockBucket::getQuantity).sum();
+        sellerStatsService.onStockReset(productId, total);
+        productRepository.updateDisplayStock(productId, total);
+        stockBucketRepository.deleteByProductId(productId);
+        productChangePublisher.publishAfterCommit(productId, ProductChangeEvent.Type.UPDATE);
+        afterCompletion(committed -> {
+            if (committed) {
+                bucketCounts.invalidate(productId);
+            }
+        });
+
+        System.out.println("关闭库存分桶 - 商品ID: " + productId + ", 合并库存: " + total);
+    }
+
+    /**
+     * 商家修改了分桶商品的库存：按新库存重新拆分各桶；未分桶的商品忽略
+     */
+    @Transactional
+    public void resetStock(Long productId, int stockQuantity) {
+        List<StockBucket> buckets = stockBucketRepository.findByProductIdForUpdate(productId);
+        if (buckets.isEmpty()) {
+            return;
+        }
+        int[] quantities = split(stockQuantity, buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            buckets.get(i).setQuantity(quantities[i]);
+        }
+        stockBucketRepository.saveAll(buckets);
+    }
+
+    /**
+     * 在当前事务中从分桶扣减库存
+     * 路由到的桶（不加锁读取）足够时只扣减该桶；否则按桶序号升序锁住各桶借用。
+     * 所有结算都按桶序号升序加锁：路由桶库存不足时不先锁住它，避免持有路由桶再去锁序号更小的桶造成死锁
+     * @param routingKey 路由键（如用户ID），为 null 时随机选桶
+     * @return 库存不足或商品未分桶（缓存过期）时返回 false，不做任何扣减
+     */
+    public boolean reserve(Long productId, int quantity, Object routingKey) {
+        int bucketCount = bucketCount(productId);
+        if (bucketCount == 0) {
+            return false;
+        }
+
+        int home = homeBucket(routingKey, bucketCount);
+        Integer homeQuantity = stockBucketRepository.findQuantity(productId, home);
+        if (homeQuantity == null || homeQuantity < quantity) {
+            return borrow(productId, 0, quantity);
+        }
+        if (stockBucketRepository.decrement(productId, home, quantity) == 1) {
+            homeBucketHits.incrementAndGet();
+            return true;
+        }
+        // 读取之后被其他结算取走：条件更新已锁住路由桶，只能继续按升序锁住它之后的桶
+        // （少数情况下序号更小的桶还有库存也会返回不足，用户重新结算即可）
+        contendedCount.incrementAndGet();
+        return borrow(productId, home, quantity);
+    }
+
+    /**
+     * 在当前事务中把库存归还到路由桶（结算失败时补偿）
+     * @return 商品未分桶（缓存过期）时返回 false
+     */
+    public boolean release(Long productId, int quantity, Object routingKey) {
+        int bucketCount = bucketCount(productId);
+        if (bucketCount == 0) {
+            return false;
+        }
+        return stockBucketRepository.increment(productId, homeBucket(routingKey, bucketCount), quantity) == 1;
+    }
+
+    /**
+     * 按桶序号升序锁住 fromIndex 及之后的桶，库存之和足够时依次扣减
+     */
+    private boolean borrow(Long productId, int fromIndex, int quantity) {
+        List<StockBucket> buckets = stockBucketRepository.findFromIndexForUpdate(productId, fromIndex);
+        int available = buckets.stream().mapToInt(StockBucket::getQuantity).sum();
+        if (available < quantity) {
+            failedCount.incrementAndGet();
+            return false;
+        }
+
+        int remaining = quantity;
+        for (StockBucket bucket : buckets) {
+            int take = Math.min(bucket.getQuantity(), remaining);
+            if (take > 0) {
+                // 桶已加锁，扣减一定成功
+                stockBucketRepository.decrement(productId, bucket.getBucketIndex(), take);
+                remaining -= take;
+            }
+            if (remaining == 0) {
+                break;
+            }
+        }
+        borrowCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 各分桶商品的桶库存明细与统计
+     */
+    public Map<String, Object> stats() {
+        Map<Long, List<Integer>> buckets = new TreeMap<>();
+        for (Long productId : stockBucketRepository.findShardedProductIds()) {
+            buckets.put(productId, stockBucketRepository.findByProductIdOrderByBucketIndex(productId).stream()
+                .map(StockBucket::getQuantity)
+                .toList());
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("buckets", buckets);
+        stats.put("homeBucketHits", homeBucketHits.get());
+        stats.put("borrows", borrowCount.get());
+        stats.put("contended", contendedCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("reconciled", reconciledCount.get());
+        stats.put("refreshes", refreshCount.get());
+        stats.put("lookupCache", bucketCounts.stats());
+        return stats;
+    }
+
+    /**
+     * 商品变更时失效分桶状态缓存；删除商品时清理其分桶
+     */
+    @Override
+    public void onProductChanges(List<ProductChangeEvent> events) {
+        for (ProductChangeEvent event : events) {
+            bucketCounts.invalidate(event.getProductId());
+            if (event.isDelete() && isSharded(event.getProductId())) {
+                transactionTemplate.executeWithoutResult(status ->
+                    stockBucketRepository.deleteByProductId(event.getProductId()));
+                bucketCounts.invalidate(event.getProductId());
+            }
+        }
+    }
+
+    @Override
+    public void onEventsDropped() {
+        bucketCounts.invalidateAll();
+    }
+
+    private static int homeBucket(Object routingKey, int bucketCount) {
+        int hash = routingKey != null ? routingKey.hashCode() : ThreadLocalRandom.current().nextInt();
+        return Math.floorMod(hash, bucketCount);
+    }
+
+    private int bucketCount(Long productId) {
+        Integer count = bucketCounts.get(productId);
+        if (count == null) {
+            count = (int) stockBucketRepository.countByProductId(productId);
+            bucketCounts.put(productId, count);
+        }
+        return count;
+    }
+
+    private void reconcileQuietly() {
+        List<Long> productIds;
+        try {
+            productIds = stockBucketRepository.findShardedProductIds();
+        } catch (Exception e) {
+            System.err.println("读取分桶商品失败: " + e.getMessage());
+            return;
+        }
+        for (Long productId : productIds) {
+            try {
+                Boolean changed = transactionTemplate.execute(status -> {
+                    int available = available(productId);
+                    // 先按旧展示库存调整商家统计，再改写展示库存
+                    sellerStatsService.onStockReset(productId, available);
+                    return productRepository.updateDisplayStock(productId, available) > 0;
+                });
+                if (Boolean.TRUE.equals(changed)) {
+                    reconciledCount.incrementAndGet();
+                    productChangePublisher.publish(productId, ProductChangeEvent.Type.UPDATE);
+                }
+            } catch (Exception e) {
+                System.err.println("汇总分桶库存失败 - 商品ID: " + productId + ", " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 平均拆分库存，余数分给前面的桶
+     */
+    private static int[] split(int total, int bucketCount) {
+        int[] quantities = new int[bucketCount];
+        int base = Math.max(total, 0) / bucketCount;
+        int extra = Math.max(total, 0) % bucketCount;
+        for (int i = 0; i < bucketCount; i++) {
+            quantities[i] = base + (i < extra ? 1 : 0);
+        }
+        return quantities;
+    }
+
+    private static void afterCompletion(Consumer<Boolean> callback) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+}
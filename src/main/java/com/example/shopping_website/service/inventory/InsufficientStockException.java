@@ -0,0 +1,32 @@
+package com.example.shopping_website.service.inventory;
+
+import com.example.shopping_website.dto.StockShortage;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 库存不足：携带每个失败商品的需要数量和当前库存
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private final List<StockShortage> shortages;
+
+    public InsufficientStockException(List<StockShortage> shortages) {
+        super(buildMessage(shortages));
+        this.shortages = List.copyOf(shortages);
+    }
+
+    public List<StockShortage> getShortages() {
+        return shortages;
+    }
+
+    private static String buildMessage(List<StockShortage> shortages) {
+        return shortages.stream()
+            .map(shortage -> shortage.getProductName() == null
+                ? "商品(ID: " + shortage.getProductId() + ")已下架"
+                : "商品【" + shortage.getProductName() + "】库存不足，需要 " + shortage.getRequested()
+                    + "，当前库存: " + shortage.getAvailable())
+            .collect(Collectors.joining("；"));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.shopping_website.service.inventory;
+
+import com.example.shopping_website.dto.StockShortage;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.service.SellerStatsService;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import com.example.shopping_website.service.event.ProductChangePublisher;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 库存扣减
+ * 每个商品一条条件更新（stock_quantity >= 数量才扣减），不在 Java 中读-改-写，并发结算不会超卖
+ * 未分桶商品的条件更新按商品ID升序放进一个 JDBC 批次发送（一次往返），逐行检查受影响行数；
+ * 行锁按商品ID升序获取，多个结算之间不会死锁
+ * 开启了分桶的热点商品改为扣减分桶（见 HotSkuInventory）
+ */
+@Service
+public class InventoryService {
+
+    // 条件扣减（与 ProductRepository.decrementStock 相同）：库存足够且商品未开启分桶才扣减
+    private static final String DECREMENT_SQL =
+        "UPDATE products SET stock_quantity = stock_quantity - ?, updated_at = NOW() " +
+        "WHERE id = ? AND stock_quantity >= ? " +
+        "AND NOT EXISTS (SELECT 1 FROM stock_buckets b WHERE b.product_id = products.id)";
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ProductChangePublisher productChangePublisher;
+
+    @Autowired
+    private HotSkuInventory hotSkuInventory;
+
+    @Autowired
+    private SellerStatsService sellerStatsService;
+
+    /**
+     * 扣减一组商品的库存，全部成功或全部回滚
+     * 任一商品库存不足时继续尝试其余商品以得到完整的失败明细，然后抛出 InsufficientStockException
+     * @param quantities 商品ID -> 扣减数量
+     * @param routingKey 分桶商品的路由键（如用户ID）
+     */
+    @Transactional
+    public void reserve(Map<Long, Integer> quantities, Object routingKey) {
+        Map<Long, Integer> ordered = new TreeMap<>(quantities);
+        List<Long> failedIds = new ArrayList<>();
+
+        // 未分桶商品一个批次扣减；分桶商品逐个扣减分桶
+        List<Long> plainIds = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : ordered.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                continue;
+            }
+            if (!hotSkuInventory.isSharded(entry.getKey())) {
+                plainIds.add(entry.getKey());
+            } else if (!reserveSharded(entry.getKey(), entry.getValue(), routingKey)) {
+                failedIds.add(entry.getKey());
+            }
+        }
+
+        if (!plainIds.isEmpty()) {
+            int[] counts = decrementBatch(plainIds, ordered);
+            for (int i = 0; i < plainIds.size(); i++) {
+                Long productId = plainIds.get(i);
+                int quantity = ordered.get(productId);
+                if (counts[i] == 1) {
+                    sellerStatsService.onStockChanged(productId, -quantity);
+                    // 批量更新不经过实体监听器，手动发布变更以刷新缓存和搜索索引
+                    productChangePublisher.publishAfterCommit(productId, ProductChangeEvent.Type.UPDATE);
+                } else if (!hotSkuInventory.refresh(productId)
+                        || !hotSkuInventory.reserve(productId, quantity, routingKey)) {
+                    // 库存不足；或商品已开启分桶（可能是其他节点刚开启），改走分桶扣减仍失败
+                    failedIds.add(productId);
+                }
+            }
+        }
+
+        if (!failedIds.isEmpty()) {
+            failedIds.sort(null);
+            throw new InsufficientStockException(describeShortages(failedIds, ordered));
+        }
+    }
+
+    /**
+     * 归还一组商品的库存（结算失败时的补偿），在调用方事务中执行
+     * 分桶商品归还到路由桶；商品已删除时忽略
+     * @param routingKey 与扣减时相同的路由键
+     */
+    @Transactional
+    public void release(Map<Long, Integer> quantities, Object routingKey) {
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            Long productId = entry.getKey();
+            Integer quantity = entry.getValue();
+            if (quantity == null || quantity <= 0) {
+                continue;
+            }
+            boolean released = hotSkuInventory.isSharded(productId)
+                ? hotSkuInventory.release(productId, quantity, routingKey) || releasePlain(productId, quantity)
+                : releasePlain(productId, quantity)
+                    || (hotSkuInventory.refresh(productId) && hotSkuInventory.release(productId, quantity, routingKey));
+            if (!released) {
+                System.err.println("归还库存时商品已不存在 - 商品ID: " + productId + ", 数量: " + quantity);
+            }
+        }
+    }
+
+    private boolean releasePlain(Long productId, int quantity) {
+        if (productRepository.incrementStock(productId, quantity) != 1) {
+            return false;
+        }
+        sellerStatsService.onStockChanged(productId, quantity);
+        productChangePublisher.publishAfterCommit(productId, ProductChangeEvent.Type.UPDATE);
+        return true;
+    }
+
+    /**
+     * 扣减分桶商品；分桶已被关闭（可能是其他节点）时改为条件扣减重试一次
+     */
+    private boolean reserveSharded(Long productId, int quantity, Object routingKey) {
+        if (hotSkuInventory.reserve(productId, quantity, routingKey)) {
+            return true;
+        }
+        if (hotSkuInventory.refresh(productId)) {
+            return false;
+        }
+        if (productRepository.decrementStock(productId, quantity) == 1) {
+            sellerStatsService.onStockChanged(productId, -quantity);
+            productChangePublisher.publishAfterCommit(productId, ProductChangeEvent.Type.UPDATE);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 按给定顺序（商品ID升序）一个批次执行条件扣减，返回每条语句的受影响行数
+     * 受影响行数只有 1 才算扣减成功；驱动不返回逐条行数（如 MySQL 开启 rewriteBatchedStatements）时
+     * 全部视为失败，事务回滚，不会超卖
+     */
+    private int[] decrementBatch(List<Long> productIds, Map<Long, Integer> quantities) {
+        // JDBC 批次不经过持久化上下文：先写出待执行的修改，执行后清空，之后读取到的是最新库存
+        entityManager.flush();
+        List<Object[]> args = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            int quantity = quantities.get(productId);
+            args.add(new Object[] { quantity, productId, quantity });
+        }
+        int[] counts = jdbcTemplate.batchUpdate(DECREMENT_SQL, args);
+        entityManager.clear();
+        return counts;
+    }
+
+    private List<StockShortage> describeShortages(List<Long> failedIds, Map<Long, Integer> requested) {
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(failedIds)) {
+            products.put(product.getId(), product);
+        }
+
+        List<StockShortage> shortages = new ArrayList<>(failedIds.size());
+        for (Long id : failedIds) {
+            Product product = products.get(id);
+            shortages.add(new StockShortage(
+                id,
+                product != null ? product.getName() : null,
+                requested.get(id),
+                product == null ? 0
+                    : hotSkuInventory.isSharded(id) ? hotSkuInventory.available(id) : product.getStockQuantity()
+            ));
+        }
+        return shortages;
+    }
+}
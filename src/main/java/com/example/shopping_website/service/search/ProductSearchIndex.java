@@ -0,0 +1,433 @@
+package com.example.shopping_website.service.search;
+
+import com.example.shopping_website.dto.ProductCardDto;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import com.example.shopping_website.service.event.ProductChangeListener;
+import com.example.shopping_website.util.FileUploadUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 商品全文搜索内存倒排索引
+ * - 启动时从 products 表分批构建，之后根据事务提交后的商品变更事件增量维护
+ * - 重建时在新的索引结构中构建，完成后整体替换；重建期间的增量变更会先作用于旧索引，替换前再重放到新索引
+ * - 使用 BM25 排序，商品名称的词频权重高于描述
+ * - 查询完全在内存中完成，不访问数据库
+ */
+@Component
+public class ProductSearchIndex implements ProductChangeListener {
+
+    // BM25 参数
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // 名称中出现的词按此倍数计入词频
+    private static final int NAME_WEIGHT = 3;
+
+    // 单个查询词前缀展开的最大词项数
+    private static final int MAX_PREFIX_EXPANSION = 64;
+
+    // 卡片摘要长度，与 ProductRepository 中的 SUBSTRING 保持一致
+    private static final int SUMMARY_LENGTH = 120;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    // 单次查询最多返回的结果数
+    @Value("${app.search.max-results:1000}")
+    private int maxResults;
+
+    // 启动构建时每批读取的商品数
+    @Value("${app.search.build-batch-size:500}")
+    private int buildBatchSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 当前使用的索引
+    private IndexData data = new IndexData();
+
+    // 重建期间增量变更过的商品（商品ID -> 最新的商品，已删除为 null），为 null 表示没有在重建
+    private Map<Long, Product> changedDuringRebuild;
+
+    // 同一时间只允许一次重建
+    private final Object rebuildMonitor = new Object();
+
+    private volatile boolean ready;
+
+    /**
+     * 应用启动完成后构建索引
+     * 在新的 IndexData 中分批构建（不持有写锁，查询和增量更新照常作用于旧索引），完成后整体替换
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            long start = System.currentTimeMillis();
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = new HashMap<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            IndexData rebuilt = new IndexData();
+            try {
+                int pageNumber = 0;
+                Page<Product> page;
+                do {
+                    page = productRepository.findAll(PageRequest.of(pageNumber++, buildBatchSize, Sort.by("id")));
+                    for (Product product : page.getContent()) {
+                        rebuilt.addDocument(product.getId(), toCard(product), product.getName(), product.getDescription());
+                    }
+                } while (page.hasNext());
+
+                lock.writeLock().lock();
+                try {
+                    // 分页读取的数据可能早于这些变更，以增量变更为准
+                    for (Map.Entry<Long, Product> change : changedDuringRebuild.entrySet()) {
+                        rebuilt.removeDocument(change.getKey());
+                        if (change.getValue() != null) {
+                            addDocument(rebuilt, change.getValue());
+                        }
+                    }
+                    data = rebuilt;
+                } finally {
+                    changedDuringRebuild = null;
+                    lock.writeLock().unlock();
+                }
+
+                ready = true;
+                System.out.println("✅ 商品搜索索引构建完成: " + size() + " 个商品, " +
+                    postingsSize() + " 个词项, 耗时 " + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                lock.writeLock().lock();
+                try {
+                    changedDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                System.err.println("构建商品搜索索引失败，继续使用旧索引: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 批量应用商品变更：删除直接移除，插入/更新按ID一次性重新加载
+     */
+    @Override
+    public void onProductChanges(List<ProductChangeEvent> events) {
+        List<Long> upsertIds = new ArrayList<>();
+        for (ProductChangeEvent event : events) {
+            if (event.isDelete()) {
+                remove(event.getProductId());
+            } else {
+                upsertIds.add(event.getProductId());
+            }
+        }
+        if (upsertIds.isEmpty()) {
+            return;
+        }
+
+        Set<Long> missing = new HashSet<>(upsertIds);
+        for (Product product : productRepository.findAllById(upsertIds)) {
+            index(product);
+            missing.remove(product.getId());
+        }
+        // 提交后又被删除的商品
+        for (Long id : missing) {
+            remove(id);
+        }
+    }
+
+    /**
+     * 变更事件丢失时全量重建
+     */
+    @Override
+    public void onEventsDropped() {
+        System.err.println("商品变更事件丢失，重建搜索索引");
+        rebuild();
+    }
+
+    /**
+     * 新增或更新商品的索引
+     */
+    public void index(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            data.removeDocument(product.getId());
+            addDocument(data, product);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.put(product.getId(), product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从索引中移除商品
+     */
+    public void remove(Long productId) {
+        if (productId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            data.removeDocument(productId);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.put(productId, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索商品
+     * 所有查询词都必须命中（AND）；最后一个查询词按前缀匹配，单个汉字匹配包含该字的所有商品
+     * @param query 查询关键词
+     * @param offset 结果偏移量
+     * @param limit 返回数量
+     */
+    public SearchHits search(String query, int offset, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(query)));
+        if (terms.isEmpty()) {
+            return new SearchHits(0, Collections.emptyList());
+        }
+
+        lock.readLock().lock();
+        try {
+            IndexData index = data;
+            int docCount = index.documents.size();
+            if (docCount == 0) {
+                return new SearchHits(0, Collections.emptyList());
+            }
+            double avgLength = (double) index.totalLength / docCount;
+
+            // 每个查询词的命中文档及得分
+            List<Map<Long, Double>> perTerm = new ArrayList<>(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                String term = terms.get(i);
+                // 单个汉字在索引中有一元词，直接精确匹配
+                boolean prefix = i == terms.size() - 1 && !SearchTokenizer.isSingleCjkChar(term);
+                Map<Long, Double> scores = index.scoreTerm(term, prefix, docCount, avgLength);
+                if (scores.isEmpty()) {
+                    return new SearchHits(0, Collections.emptyList());
+                }
+                perTerm.add(scores);
+            }
+
+            // 从命中最少的词开始求交集
+            perTerm.sort(Comparator.comparingInt(Map::size));
+            Map<Long, Double> combined = new HashMap<>(perTerm.get(0));
+            for (int i = 1; i < perTerm.size() && !combined.isEmpty(); i++) {
+                Map<Long, Double> next = perTerm.get(i);
+                combined.keySet().retainAll(next.keySet());
+                combined.replaceAll((id, score) -> score + next.get(id));
+            }
+
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(combined.entrySet());
+            ranked.sort((a, b) -> {
+                int byScore = Double.compare(b.getValue(), a.getValue());
+                if (byScore != 0) {
+                    return byScore;
+                }
+                // 得分相同按发布时间倒序
+                return compareNewestFirst(index.documents.get(a.getKey()).card, index.documents.get(b.getKey()).card);
+            });
+
+            int total = Math.min(ranked.size(), maxResults);
+            List<ProductCardDto> hits = new ArrayList<>();
+            for (int i = Math.max(offset, 0); i < total && hits.size() < limit; i++) {
+                hits.add(copyOf(index.documents.get(ranked.get(i).getKey()).card));
+            }
+            return new SearchHits(total, hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return data.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int postingsSize() {
+        lock.readLock().lock();
+        try {
+            return data.postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============== 内部实现（调用方需持有锁） ==============
+
+    private void addDocument(IndexData index, Product product) {
+        index.addDocument(product.getId(), toCard(product), product.getName(), product.getDescription());
+    }
+
+    private ProductCardDto toCard(Product product) {
+        String description = product.getDescription();
+        String summary = description != null && description.length() > SUMMARY_LENGTH
+            ? description.substring(0, SUMMARY_LENGTH)
+            : description;
+        return new ProductCardDto(
+            product.getId(),
+            product.getName(),
+            summary,
+            product.getPrice(),
+            fileUploadUtil.getImageUrl(product.getImageUrl()),
+            product.getStockQuantity(),
+            product.getCreatedAt()
+        );
+    }
+
+    private static ProductCardDto copyOf(ProductCardDto card) {
+        return new ProductCardDto(card.getId(), card.getName(), card.getSummary(), card.getPrice(),
+            card.getImageUrl(), card.getStockQuantity(), card.getCreatedAt());
+    }
+
+    private static int compareNewestFirst(ProductCardDto a, ProductCardDto b) {
+        if (a.getCreatedAt() != null && b.getCreatedAt() != null) {
+            int byTime = b.getCreatedAt().compareTo(a.getCreatedAt());
+            if (byTime != 0) {
+                return byTime;
+            }
+        }
+        return Long.compare(b.getId(), a.getId());
+    }
+
+    /**
+     * 一份完整的索引：倒排表、文档和文档总长度
+     */
+    private static class IndexData {
+
+        // 词项 -> (商品ID -> 加权词频)，有序以支持前缀匹配
+        private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+        // 商品ID -> 已索引文档
+        private final Map<Long, IndexedDocument> documents = new HashMap<>();
+
+        // 所有文档加权长度之和（用于计算平均长度）
+        private long totalLength;
+
+        private Map<Long, Double> scoreTerm(String term, boolean prefix, int docCount, double avgLength) {
+            Map<Long, Double> scores = new HashMap<>();
+            NavigableMap<String, Map<Long, Integer>> matched = prefix
+                ? postings.subMap(term, true, term + Character.MAX_VALUE, true)
+                : postings.subMap(term, true, term, true);
+
+            int expanded = 0;
+            for (Map<Long, Integer> docs : matched.values()) {
+                if (expanded++ >= MAX_PREFIX_EXPANSION) {
+                    break;
+                }
+                int df = docs.size();
+                double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+                for (Map.Entry<Long, Integer> posting : docs.entrySet()) {
+                    int tf = posting.getValue();
+                    int length = documents.get(posting.getKey()).length;
+                    double norm = tf + K1 * (1 - B + B * length / avgLength);
+                    double score = idf * tf * (K1 + 1) / norm;
+                    scores.merge(posting.getKey(), score, Double::sum);
+                }
+            }
+            return scores;
+        }
+
+        private void addDocument(Long productId, ProductCardDto card, String name, String description) {
+            Map<String, Integer> termFreqs = new HashMap<>();
+            for (String token : SearchTokenizer.tokenizeForIndex(name)) {
+                termFreqs.merge(token, NAME_WEIGHT, Integer::sum);
+            }
+            for (String token : SearchTokenizer.tokenizeForIndex(description)) {
+                termFreqs.merge(token, 1, Integer::sum);
+            }
+
+            int length = 0;
+            for (Map.Entry<String, Integer> entry : termFreqs.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                    .put(productId, entry.getValue());
+                length += entry.getValue();
+            }
+
+            documents.put(productId, new IndexedDocument(card, termFreqs.keySet(), length));
+            totalLength += length;
+        }
+
+        private void removeDocument(Long productId) {
+            IndexedDocument document = documents.remove(productId);
+            if (document == null) {
+                return;
+            }
+            for (String term : document.terms) {
+                Map<Long, Integer> docs = postings.get(term);
+                if (docs != null) {
+                    docs.remove(productId);
+                    if (docs.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= document.length;
+        }
+    }
+
+    /**
+     * 已索引的文档：展示用卡片、包含的词项、加权长度
+     */
+    @AllArgsConstructor
+    private static class IndexedDocument {
+        private final ProductCardDto card;
+        private final Set<String> terms;
+        private final int length;
+    }
+
+    /**
+     * 搜索结果：命中总数（受 max-results 限制）和当前页商品
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class SearchHits {
+        private final int total;
+        private final List<ProductCardDto> hits;
+    }
+}
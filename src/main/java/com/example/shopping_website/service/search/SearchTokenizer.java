@@ -0,0 +1,98 @@
+package com.example.shopping_website.service.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 商品搜索分词器
+ * - 中日韩文字：按二元组（bigram）切分，单个汉字保留为一元词；
+ *   建索引时每个汉字另外作为一元词索引，单字查询可以匹配出现在任意位置的该字
+ * - 字母/数字：按连续片段切分为单词，统一小写
+ * - 其他字符（空格、标点等）作为分隔符
+ */
+public final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 对查询文本分词，返回词项列表（可能包含重复词，用于计算词频）
+     */
+    public static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * 对被索引的文本分词：在 tokenize 的基础上，连续的中日韩文字中每个字也作为一元词
+     */
+    public static List<String> tokenizeForIndex(String text) {
+        return tokenize(text, true);
+    }
+
+    private static List<String> tokenize(String text, boolean cjkUnigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        String lower = text.toLowerCase();
+        int length = lower.length();
+        int i = 0;
+        while (i < length) {
+            int cp = lower.codePointAt(i);
+            if (isCjk(cp)) {
+                // 收集连续的CJK片段
+                int start = i;
+                while (i < length && isCjk(lower.codePointAt(i))) {
+                    i += Character.charCount(lower.codePointAt(i));
+                }
+                addCjkTokens(lower.substring(start, i), cjkUnigrams, tokens);
+            } else if (Character.isLetterOrDigit(cp)) {
+                // 收集连续的字母数字片段
+                int start = i;
+                while (i < length) {
+                    int c = lower.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) {
+                        break;
+                    }
+                    i += Character.charCount(c);
+                }
+                tokens.add(lower.substring(start, i));
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 判断词项是否为单个CJK字符（查询时作为前缀展开）
+     */
+    public static boolean isSingleCjkChar(String token) {
+        return token.codePointCount(0, token.length()) == 1 && isCjk(token.codePointAt(0));
+    }
+
+    private static void addCjkTokens(String run, boolean unigrams, List<String> tokens) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            tokens.add(run);
+            return;
+        }
+        for (int j = 0; j + 1 < cps.length; j++) {
+            tokens.add(new String(cps, j, 2));
+        }
+        if (unigrams) {
+            for (int cp : cps) {
+                tokens.add(new String(Character.toChars(cp)));
+            }
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+}
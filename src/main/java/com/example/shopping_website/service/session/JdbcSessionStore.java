@@ -0,0 +1,158 @@
+package com.example.shopping_website.service.session;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 数据库会话存储（MySQL）
+ * - http_sessions 保存会话元数据，http_session_attributes 每个属性一行，只写入变化的属性
+ * - 属性表外键级联：删除会话、更换会话ID时只需要操作会话表
+ * - 表在启动时创建（不存在时）
+ */
+@Component
+@ConditionalOnProperty(name = "app.session.store", havingValue = "jdbc")
+public class JdbcSessionStore implements SessionStore {
+
+    private static final String HEADER_COLUMNS =
+        "session_id, creation_time, last_access_time, max_inactive_interval, version";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void createTables() {
+        jdbcTemplate.execute(
+            "CREATE TABLE IF NOT EXISTS http_sessions (" +
+            "session_id VARCHAR(64) NOT NULL PRIMARY KEY, " +
+            "creation_time BIGINT NOT NULL, " +
+            "last_access_time BIGINT NOT NULL, " +
+            "max_inactive_interval INT NOT NULL, " +
+            "expiry_time BIGINT NOT NULL, " +
+            "version BIGINT NOT NULL, " +
+            "INDEX idx_http_sessions_expiry (expiry_time)) ENGINE=InnoDB");
+        jdbcTemplate.execute(
+            "CREATE TABLE IF NOT EXISTS http_session_attributes (" +
+            "session_id VARCHAR(64) NOT NULL, " +
+            "attribute_name VARCHAR(200) NOT NULL, " +
+            "attribute_bytes MEDIUMBLOB NOT NULL, " +
+            "PRIMARY KEY (session_id, attribute_name), " +
+            "CONSTRAINT fk_http_session_attributes_session FOREIGN KEY (session_id) " +
+            "REFERENCES http_sessions (session_id) ON DELETE CASCADE ON UPDATE CASCADE) ENGINE=InnoDB");
+    }
+
+    @Override
+    public StoredSession findHeader(String id) {
+        List<StoredSession> rows = jdbcTemplate.query(
+            "SELECT " + HEADER_COLUMNS + " FROM http_sessions WHERE session_id = ?",
+            (rs, rowNum) -> new StoredSession(
+                rs.getString("session_id"),
+                rs.getLong("creation_time"),
+                rs.getLong("last_access_time"),
+                rs.getInt("max_inactive_interval"),
+                rs.getLong("version"),
+                null),
+            id);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public StoredSession find(String id) {
+        StoredSession session = findHeader(id);
+        if (session == null) {
+            return null;
+        }
+        Map<String, byte[]> attributes = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT attribute_name, attribute_bytes FROM http_session_attributes WHERE session_id = ?",
+            rs -> {
+                attributes.put(rs.getString("attribute_name"), rs.getBytes("attribute_bytes"));
+            },
+            id);
+        session.setAttributes(attributes);
+        return session;
+    }
+
+    @Override
+    @Transactional
+    public void create(StoredSession session) {
+        jdbcTemplate.update(
+            "INSERT INTO http_sessions (" + HEADER_COLUMNS + ", expiry_time) VALUES (?, ?, ?, ?, ?, ?)",
+            session.getId(), session.getCreationTime(), session.getLastAccessedTime(),
+            session.getMaxInactiveInterval(), session.getVersion(), session.getExpiryTime());
+        if (session.getAttributes() != null && !session.getAttributes().isEmpty()) {
+            upsertAttributes(session.getId(), session.getAttributes());
+        }
+    }
+
+    @Override
+    @Transactional
+    public long update(String id, long lastAccessedTime, int maxInactiveInterval,
+                       Map<String, byte[]> changed, Set<String> removed) {
+        StoredSession header = new StoredSession(id, 0, lastAccessedTime, maxInactiveInterval, 0, null);
+        int updated = jdbcTemplate.update(
+            "UPDATE http_sessions SET last_access_time = ?, max_inactive_interval = ?, expiry_time = ?, " +
+            "version = version + 1 WHERE session_id = ?",
+            lastAccessedTime, maxInactiveInterval, header.getExpiryTime(), id);
+        if (updated == 0) {
+            return -1;
+        }
+        if (!changed.isEmpty()) {
+            upsertAttributes(id, changed);
+        }
+        if (!removed.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(removed.size());
+            for (String name : removed) {
+                args.add(new Object[] { id, name });
+            }
+            jdbcTemplate.batchUpdate(
+                "DELETE FROM http_session_attributes WHERE session_id = ? AND attribute_name = ?", args);
+        }
+        Long version = jdbcTemplate.queryForObject(
+            "SELECT version FROM http_sessions WHERE session_id = ?", Long.class, id);
+        return version != null ? version : -1;
+    }
+
+    @Override
+    public void touch(String id, long lastAccessedTime, int maxInactiveInterval) {
+        StoredSession header = new StoredSession(id, 0, lastAccessedTime, maxInactiveInterval, 0, null);
+        jdbcTemplate.update(
+            "UPDATE http_sessions SET last_access_time = ?, expiry_time = ? WHERE session_id = ? AND last_access_time < ?",
+            lastAccessedTime, header.getExpiryTime(), id, lastAccessedTime);
+    }
+
+    @Override
+    public void changeId(String oldId, String newId) {
+        jdbcTemplate.update("UPDATE http_sessions SET session_id = ? WHERE session_id = ?", newId, oldId);
+    }
+
+    @Override
+    public void delete(String id) {
+        jdbcTemplate.update("DELETE FROM http_sessions WHERE session_id = ?", id);
+    }
+
+    @Override
+    public int deleteExpired(long now) {
+        return jdbcTemplate.update("DELETE FROM http_sessions WHERE expiry_time < ?", now);
+    }
+
+    private void upsertAttributes(String id, Map<String, byte[]> attributes) {
+        List<Object[]> args = new ArrayList<>(attributes.size());
+        for (Map.Entry<String, byte[]> entry : attributes.entrySet()) {
+            args.add(new Object[] { id, entry.getKey(), entry.getValue() });
+        }
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO http_session_attributes (session_id, attribute_name, attribute_bytes) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE attribute_bytes = VALUES(attribute_bytes)", args);
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.shopping_website.service.session;
+
+import com.example.shopping_website.service.cache.BoundedLruCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.ServletContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 外部会话（app.session.store=jdbc 时启用）
+ * - 节点本地近端缓存保存会话的序列化属性；每个请求只查询一次会话元数据（version），
+ *   version 未变化时直接使用缓存中的属性，不读取属性表
+ * - 请求结束时比较属性的序列化结果，只写入变化和删除的属性；属性都没有变化时只按 touch-interval 更新访问时间
+ * - 后台定期删除过期会话
+ */
+@Component
+@ConditionalOnProperty(name = "app.session.store", havingValue = "jdbc")
+public class SessionRepository {
+
+    @Autowired
+    private SessionStore sessionStore;
+
+    @Value("${app.session.cookie-name:SESSION}")
+    private String cookieName;
+
+    // 只通过 HTTPS 发送会话 Cookie（生产环境应开启）
+    @Value("${app.session.secure-cookie:false}")
+    private boolean secureCookie;
+
+    // 最大空闲时间（秒）
+    @Value("${app.session.timeout-seconds:1800}")
+    private int timeoutSeconds;
+
+    // 属性未变化时，访问时间至少间隔多久才写回（秒）
+    @Value("${app.session.touch-interval-seconds:60}")
+    private long touchIntervalSeconds;
+
+    // 过期会话清理间隔（秒）
+    @Value("${app.session.cleanup-interval-seconds:60}")
+    private long cleanupIntervalSeconds;
+
+    // 近端缓存的会话数和估算内存上限
+    @Value("${app.session.near-cache.max-entries:10000}")
+    private int nearCacheMaxEntries;
+
+    @Value("${app.session.near-cache.max-bytes:67108864}")
+    private long nearCacheMaxBytes;
+
+    private BoundedLruCache<String, StoredSession> nearCache;
+
+    private ScheduledExecutorService cleaner;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+
+    // 统计信息
+    private final AtomicLong nearCacheHitCount = new AtomicLong();
+    private final AtomicLong storeLoadCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong deltaWriteCount = new AtomicLong();
+    private final AtomicLong changedAttributeCount = new AtomicLong();
+    private final AtomicLong touchCount = new AtomicLong();
+    private final AtomicLong unchangedCount = new AtomicLong();
+    private final AtomicLong invalidatedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong serializationFailureCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        nearCache = new BoundedLruCache<>("session", nearCacheMaxEntries, nearCacheMaxBytes,
+            timeoutSeconds * 1000L, SessionRepository::estimateBytes, 16);
+
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::cleanupQuietly, cleanupIntervalSeconds, cleanupIntervalSeconds, TimeUnit.SECONDS);
+        System.out.println("外部会话存储已启用: " + sessionStore.getClass().getSimpleName());
+    }
+
+    @PreDestroy
+    public void stop() {
+        cleaner.shutdownNow();
+    }
+
+    public String getCookieName() {
+        return cookieName;
+    }
+
+    public boolean isSecureCookie() {
+        return secureCookie;
+    }
+
+    /**
+     * 按ID加载会话，不存在或已过期返回 null
+     */
+    public StoreBackedSession find(String id, ServletContext servletContext) {
+        long now = System.currentTimeMillis();
+        StoredSession header = sessionStore.findHeader(id);
+        if (header == null || header.isExpired(now)) {
+            nearCache.invalidate(id);
+            return null;
+        }
+
+        StoredSession cached = nearCache.get(id);
+        StoredSession stored;
+        if (cached != null && cached.getVersion() == header.getVersion()) {
+            nearCacheHitCount.incrementAndGet();
+            stored = new StoredSession(id, cached.getCreationTime(), header.getLastAccessedTime(),
+                header.getMaxInactiveInterval(), header.getVersion(), cached.getAttributes());
+        } else {
+            stored = sessionStore.find(id);
+            if (stored == null) {
+                nearCache.invalidate(id);
+                return null;
+            }
+            storeLoadCount.incrementAndGet();
+            nearCache.put(id, stored);
+        }
+        return new StoreBackedSession(this, servletContext, stored, false);
+    }
+
+    /**
+     * 新建会话（请求结束时才写入存储）
+     */
+    public StoreBackedSession create(ServletContext servletContext) {
+        long now = System.currentTimeMillis();
+        StoredSession stored = new StoredSession(generateId(), now, now, timeoutSeconds, 0, Map.of());
+        return new StoreBackedSession(this, servletContext, stored, true);
+    }
+
+    public String generateId() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * 请求结束时写回会话
+     */
+    public void commit(StoreBackedSession session) {
+        long now = System.currentTimeMillis();
+        String storedId = session.getPreviousId() != null ? session.getPreviousId() : session.getId();
+
+        if (session.isInvalidated()) {
+            if (!session.isStoredNew()) {
+                sessionStore.delete(storedId);
+            }
+            nearCache.invalidate(storedId);
+            nearCache.invalidate(session.getId());
+            invalidatedCount.incrementAndGet();
+            return;
+        }
+
+        // 只保留序列化结果与加载时不同的属性
+        Map<String, byte[]> original = session.getOriginal();
+        Map<String, byte[]> changed = new HashMap<>();
+        for (Map.Entry<String, Object> entry : session.getValues().entrySet()) {
+            byte[] bytes = serialize(entry.getKey(), entry.getValue());
+            if (bytes != null && !Arrays.equals(bytes, session.getBaseline(entry.getKey()))) {
+                changed.put(entry.getKey(), bytes);
+            }
+        }
+        Set<String> removed = new HashSet<>(session.getRemoved());
+        removed.retainAll(original.keySet());
+
+        if (session.isStoredNew()) {
+            StoredSession stored = new StoredSession(session.getId(), session.getCreationTime(), now,
+                session.getMaxInactiveInterval(), 1, changed);
+            sessionStore.create(stored);
+            nearCache.put(stored.getId(), stored);
+            createdCount.incrementAndGet();
+            return;
+        }
+
+        if (session.getPreviousId() != null) {
+            sessionStore.changeId(session.getPreviousId(), session.getId());
+            nearCache.invalidate(session.getPreviousId());
+        }
+
+        if (changed.isEmpty() && removed.isEmpty()) {
+            if (now - session.getLastAccessedTime() >= touchIntervalSeconds * 1000) {
+                sessionStore.touch(session.getId(), now, session.getMaxInactiveInterval());
+                touchCount.incrementAndGet();
+            } else {
+                unchangedCount.incrementAndGet();
+            }
+            if (session.getPreviousId() != null) {
+                nearCache.put(session.getId(), new StoredSession(session.getId(), session.getCreationTime(), now,
+                    session.getMaxInactiveInterval(), session.getVersion(), original));
+            }
+            return;
+        }
+
+        long version = sessionStore.update(session.getId(), now, session.getMaxInactiveInterval(), changed, removed);
+        deltaWriteCount.incrementAndGet();
+        changedAttributeCount.addAndGet(changed.size() + removed.size());
+        if (version == session.getVersion() + 1) {
+            // 期间没有其他请求修改过该会话，直接更新近端缓存
+            Map<String, byte[]> merged = new HashMap<>(original);
+            merged.putAll(changed);
+            merged.keySet().removeAll(removed);
+            nearCache.put(session.getId(), new StoredSession(session.getId(), session.getCreationTime(), now,
+                session.getMaxInactiveInterval(), version, merged));
+        } else {
+            // 会话已不存在，或有并发修改（下次从存储重新加载）
+            nearCache.invalidate(session.getId());
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("store", sessionStore.getClass().getSimpleName());
+        metrics.put("nearCacheHits", nearCacheHitCount.get());
+        metrics.put("storeLoads", storeLoadCount.get());
+        metrics.put("created", createdCount.get());
+        metrics.put("deltaWrites", deltaWriteCount.get());
+        metrics.put("changedAttributes", changedAttributeCount.get());
+        metrics.put("touches", touchCount.get());
+        metrics.put("unchanged", unchangedCount.get());
+        metrics.put("invalidated", invalidatedCount.get());
+        metrics.put("expiredDeleted", expiredCount.get());
+        metrics.put("serializationFailures", serializationFailureCount.get());
+        metrics.put("nearCache", nearCache.stats());
+        return metrics;
+    }
+
+    Object deserialize(String name, byte[] bytes) {
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(bytes), classLoader)) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            serializationFailureCount.incrementAndGet();
+            System.err.println("会话属性无法反序列化，已忽略: " + name + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    byte[] serialize(String name, Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            // 不可序列化的属性只在本次请求中有效
+            serializationFailureCount.incrementAndGet();
+            System.err.println("会话属性无法序列化，未写入会话存储: " + name + " - " + e.getMessage());
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private void cleanupQuietly() {
+        try {
+            int deleted = sessionStore.deleteExpired(System.currentTimeMillis());
+            expiredCount.addAndGet(deleted);
+        } catch (Exception e) {
+            System.err.println("清理过期会话失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 粗略估算会话占用的字节数（对象头与字段 + 属性名 + 序列化后的属性）
+     */
+    private static int estimateBytes(StoredSession session) {
+        int bytes = 200;
+        if (session.getAttributes() != null) {
+            for (Map.Entry<String, byte[]> entry : session.getAttributes().entrySet()) {
+                bytes += 80 + entry.getKey().length() * 2 + entry.getValue().length;
+            }
+        }
+        return bytes;
+    }
+}
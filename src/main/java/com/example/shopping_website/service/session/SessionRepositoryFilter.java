@@ -0,0 +1,407 @@
+package com.example.shopping_website.service.session;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.Duration;
+
+/**
+ * 把请求的 HttpSession 换成 SessionRepository 管理的会话（在 Spring Security 之前执行）
+ * 会话在响应提交之前写回（重定向、发送错误、刷新响应，以及响应体写满缓冲区或达到 Content-Length），
+ * 保证客户端收到响应、发出下一个请求时（可能到达其他节点）会话已经保存，Set-Cookie 也还能写入响应头
+ */
+public class SessionRepositoryFilter extends OncePerRequestFilter {
+
+    private final SessionRepository sessionRepository;
+
+    public SessionRepositoryFilter(SessionRepository sessionRepository) {
+        this.sessionRepository = sessionRepository;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected boolean shouldNotFilterErrorDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SessionRequest sessionRequest = new SessionRequest(request, response);
+        SessionResponse sessionResponse = new SessionResponse(response, sessionRequest);
+        try {
+            filterChain.doFilter(sessionRequest, sessionResponse);
+        } finally {
+            sessionRequest.commitSession();
+        }
+    }
+
+    private final class SessionRequest extends HttpServletRequestWrapper {
+
+        private final HttpServletResponse response;
+
+        private final String requestedSessionId;
+
+        private StoreBackedSession session;
+
+        private boolean requestedSessionLoaded;
+
+        private boolean committed;
+
+        private SessionRequest(HttpServletRequest request, HttpServletResponse response) {
+            super(request);
+            this.response = response;
+            this.requestedSessionId = readCookie(request);
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (session != null && !session.isInvalidated()) {
+                return session;
+            }
+            if (session == null && !requestedSessionLoaded) {
+                requestedSessionLoaded = true;
+                if (requestedSessionId != null) {
+                    session = sessionRepository.find(requestedSessionId, getServletContext());
+                    if (session != null) {
+                        return session;
+                    }
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            if (session != null) {
+                // 本请求中注销了旧会话（如退出登录后又需要会话），先删除旧会话
+                sessionRepository.commit(session);
+            }
+            session = sessionRepository.create(getServletContext());
+            writeCookie(session.getId(), null);
+            return session;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public String changeSessionId() {
+            HttpSession current = getSession(false);
+            if (current == null) {
+                throw new IllegalStateException("当前请求没有会话");
+            }
+            String newId = sessionRepository.generateId();
+            session.changeId(newId);
+            writeCookie(newId, null);
+            return newId;
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            return requestedSessionId;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            if (requestedSessionId == null) {
+                return false;
+            }
+            HttpSession current = getSession(false);
+            return current != null && (requestedSessionId.equals(current.getId())
+                || requestedSessionId.equals(session.getPreviousId()));
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            return requestedSessionId != null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            return false;
+        }
+
+        private void commitSession() {
+            if (committed) {
+                return;
+            }
+            committed = true;
+            if (session == null) {
+                if (requestedSessionLoaded && requestedSessionId != null) {
+                    // Cookie 中的会话已过期或被删除
+                    writeCookie("", Duration.ZERO);
+                }
+                return;
+            }
+            sessionRepository.commit(session);
+            if (session.isInvalidated()) {
+                writeCookie("", Duration.ZERO);
+            }
+        }
+
+        private void writeCookie(String value, Duration maxAge) {
+            if (response.isCommitted()) {
+                return;
+            }
+            String contextPath = getContextPath();
+            ResponseCookie.ResponseCookieBuilder cookie = ResponseCookie.from(sessionRepository.getCookieName(), value)
+                .path(contextPath.isEmpty() ? "/" : contextPath)
+                .httpOnly(true)
+                .secure(sessionRepository.isSecureCookie())
+                .sameSite("Lax");
+            if (maxAge != null) {
+                cookie.maxAge(maxAge);
+            }
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.build().toString());
+        }
+
+        private String readCookie(HttpServletRequest request) {
+            Cookie[] cookies = request.getCookies();
+            if (cookies == null) {
+                return null;
+            }
+            for (Cookie cookie : cookies) {
+                if (sessionRepository.getCookieName().equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                    return cookie.getValue();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 响应提交之前先写回会话（同 Spring Session 的 OnCommittedResponseWrapper）
+     * 除重定向、发送错误和 flushBuffer 外，响应体写满缓冲区、达到 Content-Length、
+     * 或刷新/关闭输出流时容器也会自动提交响应，因此在把这些字节交给容器之前先写回会话和 Cookie
+     */
+    private static final class SessionResponse extends HttpServletResponseWrapper {
+
+        private final SessionRequest request;
+
+        private long contentLength = -1;
+
+        private long contentWritten;
+
+        private ServletOutputStream outputStream;
+
+        private PrintWriter writer;
+
+        private SessionResponse(HttpServletResponse response, SessionRequest request) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            request.commitSession();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            request.commitSession();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            request.commitSession();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            request.commitSession();
+            super.flushBuffer();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new SessionOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new SessionWriter(super.getWriter()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            contentLength = len;
+            super.setContentLength(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            contentLength = len;
+            super.setContentLengthLong(len);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            trackContentLengthHeader(name, value);
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            trackContentLengthHeader(name, value);
+            super.addHeader(name, value);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            trackContentLengthHeader(name, String.valueOf(value));
+            super.setIntHeader(name, value);
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            trackContentLengthHeader(name, String.valueOf(value));
+            super.addIntHeader(name, value);
+        }
+
+        @Override
+        public void reset() {
+            contentLength = -1;
+            contentWritten = 0;
+            super.reset();
+        }
+
+        @Override
+        public void resetBuffer() {
+            contentWritten = 0;
+            super.resetBuffer();
+        }
+
+        private void trackContentLengthHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                try {
+                    contentLength = Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                    contentLength = -1;
+                }
+            }
+        }
+
+        /**
+         * 即将写入 length 个字节（字符）：写满缓冲区或达到 Content-Length 时容器会提交响应，先写回会话
+         */
+        private void beforeWrite(long length) {
+            contentWritten += length;
+            int bufferSize = getBufferSize();
+            if ((contentLength >= 0 && contentWritten >= contentLength)
+                    || (bufferSize > 0 && contentWritten >= bufferSize)) {
+                request.commitSession();
+            }
+        }
+
+        private final class SessionOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream delegate;
+
+            private SessionOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                beforeWrite(1);
+                delegate.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                beforeWrite(len);
+                delegate.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                request.commitSession();
+                delegate.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                request.commitSession();
+                delegate.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+        }
+
+        // PrintWriter 的 print/println 最终都调用底层 Writer 的 write，在这一层统计
+        private final class SessionWriter extends Writer {
+
+            private final PrintWriter delegate;
+
+            private SessionWriter(PrintWriter delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int c) {
+                beforeWrite(1);
+                delegate.write(c);
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                beforeWrite(len);
+                delegate.write(cbuf, off, len);
+            }
+
+            @Override
+            public void write(String str, int off, int len) {
+                beforeWrite(len);
+                delegate.write(str, off, len);
+            }
+
+            @Override
+            public void flush() {
+                request.commitSession();
+                delegate.flush();
+            }
+
+            @Override
+            public void close() {
+                request.commitSession();
+                delegate.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.shopping_website.service.session;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 外部会话存储
+ * 通过 app.session.store 选择：container（默认，使用 Servlet 容器自己的 HttpSession，不创建任何 SessionStore）
+ * 或 jdbc（会话保存在数据库中，多个节点共享）
+ * 读写由 SessionRepository 调用，前面有节点本地的近端缓存，只在属性变化时写入变化的属性
+ */
+public interface SessionStore {
+
+    /**
+     * 只读取会话元数据（含 version，不含属性），不存在返回 null
+     */
+    StoredSession findHeader(String id);
+
+    /**
+     * 读取会话及全部属性，不存在返回 null
+     */
+    StoredSession find(String id);
+
+    /**
+     * 保存新会话（含属性）
+     */
+    void create(StoredSession session);
+
+    /**
+     * 写入变化的属性并更新访问时间，version 加一
+     * @return 新的 version，会话已不存在（被其他节点注销或已过期清理）时返回 -1
+     */
+    long update(String id, long lastAccessedTime, int maxInactiveInterval,
+                Map<String, byte[]> changed, Set<String> removed);
+
+    /**
+     * 只更新访问时间（属性未变化，version 不变）
+     */
+    void touch(String id, long lastAccessedTime, int maxInactiveInterval);
+
+    /**
+     * 更换会话ID（登录时防会话固定）
+     */
+    void changeId(String oldId, String newId);
+
+    void delete(String id);
+
+    /**
+     * 删除已过期的会话，返回删除数
+     */
+    int deleteExpired(long now);
+}
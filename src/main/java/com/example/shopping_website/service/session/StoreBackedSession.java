@@ -0,0 +1,208 @@
+package com.example.shopping_website.service.session;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpSession;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 由 SessionRepository 管理的 HttpSession（每个请求一个实例）
+ * 属性在第一次读取时才反序列化；请求结束时由 SessionRepository 比较序列化结果，只写回变化的属性
+ */
+public class StoreBackedSession implements HttpSession {
+
+    private final SessionRepository repository;
+
+    private final ServletContext servletContext;
+
+    private String id;
+
+    // 本请求中更换ID前的原ID
+    private String previousId;
+
+    private final long creationTime;
+
+    private long lastAccessedTime;
+
+    private int maxInactiveInterval;
+
+    private final long version;
+
+    private final boolean isNew;
+
+    private boolean invalidated;
+
+    // 加载时的序列化属性（只读）
+    private final Map<String, byte[]> original;
+
+    // 本请求中读取或设置过的属性（读取过的对象可能被原地修改，提交时也要比较）
+    private final Map<String, Object> values = new HashMap<>();
+
+    // 读取时把反序列化得到的对象重新序列化一次作为比较基准
+    // （HashMap、HashSet 等反序列化后容量不同，序列化结果与存储中的字节不一定相同，直接比较会误判为已修改）
+    private final Map<String, byte[]> baseline = new HashMap<>();
+
+    private final Set<String> removed = new HashSet<>();
+
+    StoreBackedSession(SessionRepository repository, ServletContext servletContext, StoredSession stored, boolean isNew) {
+        this.repository = repository;
+        this.servletContext = servletContext;
+        this.id = stored.getId();
+        this.creationTime = stored.getCreationTime();
+        this.lastAccessedTime = stored.getLastAccessedTime();
+        this.maxInactiveInterval = stored.getMaxInactiveInterval();
+        this.version = stored.getVersion();
+        this.isNew = isNew;
+        this.original = stored.getAttributes() != null ? stored.getAttributes() : Collections.emptyMap();
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        maxInactiveInterval = interval;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        Object value = values.get(name);
+        if (value != null || removed.contains(name)) {
+            return value;
+        }
+        byte[] bytes = original.get(name);
+        if (bytes == null) {
+            return null;
+        }
+        value = repository.deserialize(name, bytes);
+        if (value != null) {
+            values.put(name, value);
+            byte[] reserialized = repository.serialize(name, value);
+            if (reserialized != null) {
+                baseline.put(name, reserialized);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        Set<String> names = new LinkedHashSet<>(original.keySet());
+        names.addAll(values.keySet());
+        names.removeAll(removed);
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        if (value == null) {
+            removeAttribute(name);
+            return;
+        }
+        values.put(name, value);
+        removed.remove(name);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        values.remove(name);
+        removed.add(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalidated = true;
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+
+    // ============== 供 SessionRepository 使用 ==============
+
+    void changeId(String newId) {
+        if (previousId == null) {
+            previousId = id;
+        }
+        id = newId;
+    }
+
+    String getPreviousId() {
+        return previousId;
+    }
+
+    boolean isInvalidated() {
+        return invalidated;
+    }
+
+    boolean isStoredNew() {
+        return isNew;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    Map<String, byte[]> getOriginal() {
+        return original;
+    }
+
+    /**
+     * 属性修改前的序列化结果：读取过的属性用重新序列化的基准，否则用存储中的原始字节
+     */
+    byte[] getBaseline(String name) {
+        byte[] bytes = baseline.get(name);
+        return bytes != null ? bytes : original.get(name);
+    }
+
+    Map<String, Object> getValues() {
+        return values;
+    }
+
+    Set<String> getRemoved() {
+        return removed;
+    }
+
+    private void checkValid() {
+        if (invalidated) {
+            throw new IllegalStateException("会话已注销");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.shopping_website.service.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 会话存储中的一条会话：元数据 + 序列化后的属性
+ * version 在属性每次变化时加一，用于判断节点本地缓存的副本是否仍是最新
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredSession {
+
+    private String id;
+
+    private long creationTime;
+
+    private long lastAccessedTime;
+
+    // 最大空闲时间（秒），<= 0 表示不过期
+    private int maxInactiveInterval;
+
+    private long version;
+
+    // 属性名 -> Java 序列化后的字节，只查询元数据时为 null
+    private Map<String, byte[]> attributes;
+
+    public boolean isExpired(long now) {
+        return maxInactiveInterval > 0 && now - lastAccessedTime >= maxInactiveInterval * 1000L;
+    }
+
+    /**
+     * 过期时间（毫秒），不过期时为 Long.MAX_VALUE
+     */
+    public long getExpiryTime() {
+        return maxInactiveInterval > 0 ? lastAccessedTime + maxInactiveInterval * 1000L : Long.MAX_VALUE;
+    }
+}
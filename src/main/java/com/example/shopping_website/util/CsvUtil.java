@@ -0,0 +1,26 @@
+package com.example.shopping_website.util;
+
+/**
+ * CSV 输出工具（RFC 4180）
+ */
+public final class CsvUtil {
+    
+    // UTF-8 BOM，Excel 据此识别中文
+    public static final String BOM = "\uFEFF";
+    
+    private CsvUtil() {
+    }
+    
+    /**
+     * 转义单个字段：包含逗号、引号或换行时用双引号包裹，内部引号写成 ""
+     */
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
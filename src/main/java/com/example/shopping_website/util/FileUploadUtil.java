@@ -1,18 +1,31 @@
 package com.example.shopping_website.util;
 
+import com.example.shopping_website.model.ImageBlob;
+import com.example.shopping_website.model.ProductImage;
+import com.example.shopping_website.service.image.ContentAddressedImageStore;
+import com.example.shopping_website.service.image.ImageVariantPipeline;
+import com.example.shopping_website.service.image.ProductImageIndex;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 public class FileUploadUtil {
@@ -21,6 +34,27 @@ public class FileUploadUtil {
     @Value("${app.upload.dir:/home/shopping-website/uploads}")
     private String uploadDir;
     
+    // 图片文件大小上限（multipart 上限按批量导入文件放宽，图片单独限制）
+    @Value("${app.upload.max-image-bytes:5242880}")
+    private long maxImageBytes;
+    
+    // 启动时扫描一次上传目录，为升级前上传、还没有元数据的图片补录
+    @Value("${app.images.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+    
+    @Autowired
+    private ProductImageIndex productImageIndex;
+    
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+    
+    @Autowired
+    private ImageVariantPipeline imageVariantPipeline;
+    
+    // 上传目录中的商品图片文件名：product_{id}.{ext} 或 product_{id}_{timestamp}.{ext}
+    private static final Pattern PRODUCT_IMAGE_NAME =
+        Pattern.compile("product_(\\d+)(?:_\\d+)?\\.(jpg|jpeg|png|gif|bmp|webp)");
+    
     // Web访问路径前缀
     private final String ACCESS_PATH = "/uploads/";
     
@@ -37,6 +71,67 @@ public class FileUploadUtil {
         // 在依赖注入完成后执行
         System.out.println("FileUploadUtil初始化，uploadDir=" + uploadDir);
         ensureUploadDirExists();
+        try {
+            imageStore.open(Paths.get(uploadDir, "products"));
+        } catch (IOException e) {
+            System.err.println("初始化图片存储失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 应用启动完成后加载商品图片索引，并按需回填旧图片的元数据
+     * 只在这里扫描一次上传目录，之后判断图片是否存在只查索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadImageIndex() {
+        productImageIndex.load();
+        if (!backfillOnStartup || !productImageIndex.isReady()) {
+            return;
+        }
+        
+        long start = System.currentTimeMillis();
+        Path productDir = Paths.get(uploadDir, "products");
+        if (!Files.isDirectory(productDir)) {
+            return;
+        }
+        
+        // 每个商品保留最近修改的一张图片
+        Map<Long, Path> latest = new HashMap<>();
+        try (var dirStream = Files.newDirectoryStream(productDir)) {
+            for (Path filePath : dirStream) {
+                Matcher matcher = PRODUCT_IMAGE_NAME.matcher(filePath.getFileName().toString().toLowerCase());
+                if (!matcher.matches() || !Files.isRegularFile(filePath)) {
+                    continue;
+                }
+                Long productId = Long.valueOf(matcher.group(1));
+                if (productImageIndex.contains(productId)) {
+                    continue;
+                }
+                Path current = latest.get(productId);
+                if (current == null || Files.getLastModifiedTime(filePath).compareTo(Files.getLastModifiedTime(current)) > 0) {
+                    latest.put(productId, filePath);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("扫描商品图片目录失败: " + e.getMessage());
+            return;
+        }
+        if (latest.isEmpty()) {
+            return;
+        }
+        
+        Map<Long, ProductImage> candidates = new HashMap<>();
+        for (Map.Entry<Long, Path> entry : latest.entrySet()) {
+            Path filePath = entry.getValue();
+            try {
+                candidates.put(entry.getKey(),
+                    ProductImageIndex.describe(entry.getKey(), filePath.getFileName().toString(), filePath, null));
+            } catch (IOException e) {
+                System.err.println("读取图片元数据失败: " + filePath + ", " + e.getMessage());
+            }
+        }
+        int saved = productImageIndex.backfill(candidates);
+        System.out.println("商品图片元数据回填完成: " + saved + " 张, 耗时 " + (System.currentTimeMillis() - start) + "ms");
     }
     
     /**
@@ -76,20 +171,22 @@ public class FileUploadUtil {
      * 上传商品图片 - 兼容旧版本的方法
      */
     public String uploadProductImageWithId(MultipartFile file, Long productId) throws IOException {
-        return uploadProductImage(file, productId, false);
+        return storeProductImage(file, productId);
     }
     
     /**
      * 上传商品图片（新版方法）
      */
     public String uploadProductImage(MultipartFile file, Long productId) throws IOException {
-        return uploadProductImage(file, productId, true);
+        return storeProductImage(file, productId);
     }
     
     /**
      * 通用的图片上传方法
+     * 图片按内容寻址保存（products/ab/cd/{sha256}.{ext}），相同内容只存一份，
+     * 返回的文件名在内容不变时保持不变，对应的URL可以永久缓存
      */
-    private String uploadProductImage(MultipartFile file, Long productId, boolean useTimestamp) throws IOException {
+    private String storeProductImage(MultipartFile file, Long productId) throws IOException {
         if (file == null || file.isEmpty()) {
             System.out.println("文件为空，不上传图片");
             return null;
@@ -104,26 +201,24 @@ public class FileUploadUtil {
         String originalFilename = file.getOriginalFilename();
         String fileExtension = getFileExtension(originalFilename);
         
-        // 生成文件名
-        String fileName;
-        if (useTimestamp) {
-            // 新格式：product_{id}_{timestamp}.{extension}
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-            fileName = "product_" + productId + "_" + timestamp + fileExtension;
-        } else {
-            // 旧格式：product_{id}.{extension}
-            fileName = "product_" + productId + fileExtension;
+        // 保存文件（写临时文件时计算哈希，再原子重命名到内容寻址路径）
+        ImageBlob blob;
+        try (InputStream in = file.getInputStream()) {
+            blob = imageStore.store(in, fileExtension);
         }
+        String fileName = blob.getFileName();
+        Path filePath = imageStore.resolve(fileName);
         
-        // 确保产品图片目录存在
-        Path productDir = Paths.get(uploadDir, "products");
-        if (!Files.exists(productDir)) {
-            Files.createDirectories(productDir);
+        // 记录图片元数据（大小、哈希、宽高），替换原有图片时释放原图片的引用
+        try {
+            productImageIndex.record(ProductImageIndex.describe(productId, fileName, filePath, blob.getContentHash()));
+        } catch (RuntimeException | IOException e) {
+            imageStore.release(blob.getContentHash());
+            throw e;
         }
         
-        // 保存文件
-        Path filePath = productDir.resolve(fileName);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        // 异步生成缩略图等缩放尺寸（相同内容已生成过时直接复用）
+        imageVariantPipeline.submit(productId, blob);
         
         System.out.println("========== 图片上传成功 ==========");
         System.out.println("产品ID: " + productId);
@@ -229,6 +324,15 @@ public class FileUploadUtil {
         }
         
         try {
+            // 内容寻址的图片可能被多个商品共用，只能通过 deleteProductImagesByProductId 释放引用
+            String relativeName = fileName.startsWith(ACCESS_PATH + "products/")
+                ? fileName.substring((ACCESS_PATH + "products/").length())
+                : fileName;
+            if (imageStore.isBlobFileName(relativeName)) {
+                System.out.println("内容寻址图片不能按文件名删除: " + fileName);
+                return false;
+            }
+            
             // 如果是完整URL，提取文件名
             if (fileName.contains("/")) {
                 String[] parts = fileName.split("/");
@@ -274,6 +378,17 @@ public class FileUploadUtil {
             System.out.println("尝试删除产品ID为 " + productId + " 的所有图片");
             Path productDir = Paths.get(uploadDir, "products");
             
+            // 已记录元数据的图片：内容寻址的文件由引用计数决定是否删除（其他商品可能还在使用），
+            // 旧格式文件直接按文件名删除，都不遍历目录
+            ProductImage removed = productImageIndex.remove(productId);
+            if (removed != null) {
+                if (!imageStore.isBlobFileName(removed.getFileName())) {
+                    Files.deleteIfExists(productDir.resolve(removed.getFileName()));
+                }
+                System.out.println("删除图片: " + removed.getFileName());
+                return true;
+            }
+            
             if (!Files.exists(productDir)) {
                 return false;
             }
@@ -318,45 +433,10 @@ public class FileUploadUtil {
     
     /**
      * 检查指定产品ID的图片是否存在 - 兼容旧版本方法
+     * 只查询图片元数据索引，不访问文件系统
      */
     public String checkProductImageExists(Long productId) {
-        if (productId == null) {
-            return null;
-        }
-        
-        System.out.println("检查产品ID为 " + productId + " 的图片");
-        Path productDir = Paths.get(uploadDir, "products");
-        
-        if (!Files.exists(productDir)) {
-            return null;
-        }
-        
-        // 先检查旧格式：product_{id}.{extension}
-        String[] extensions = {".jpg", ".jpeg", ".png", ".gif", ".bmp", ".webp"};
-        for (String ext : extensions) {
-            String fileName = "product_" + productId + ext;
-            Path filePath = productDir.resolve(fileName);
-            if (Files.exists(filePath)) {
-                System.out.println("找到旧格式图片: " + fileName);
-                return fileName;
-            }
-        }
-        
-        // 再检查新格式：product_{id}_{timestamp}.{extension}
-        try (var dirStream = Files.newDirectoryStream(productDir, "product_" + productId + "_*")) {
-            for (Path filePath : dirStream) {
-                if (Files.isRegularFile(filePath)) {
-                    String fileName = filePath.getFileName().toString();
-                    System.out.println("找到新格式图片: " + fileName);
-                    return fileName;
-                }
-            }
-        } catch (IOException e) {
-            // 忽略目录流错误
-        }
-        
-        System.out.println("未找到产品ID为 " + productId + " 的图片");
-        return null;
+        return productImageIndex.getFileName(productId);
     }
     
     /**
@@ -367,6 +447,11 @@ public class FileUploadUtil {
             return false;
         }
         
+        if (file.getSize() > maxImageBytes) {
+            System.out.println("图片文件过大: " + file.getSize() + " 字节");
+            return false;
+        }
+        
         String contentType = file.getContentType();
         String originalFilename = file.getOriginalFilename();
         
@@ -0,0 +1,14 @@
+package com.example.shopping_website;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ShoppingWebsiteApplicationTests {
+
+    @Test
+    void contextLoads() {
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.shopping_website.controller;
+
+import com.example.shopping_website.dto.ProductStockSnapshot;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.model.SellerStats;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.SellerStatsRepository;
+import com.example.shopping_website.repository.StockBucketRepository;
+import com.example.shopping_website.repository.UserRepository;
+import com.example.shopping_website.service.ProductService;
+import com.example.shopping_website.service.SellerStatsService;
+import com.example.shopping_website.service.inventory.HotSkuInventory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+
+/**
+ * 商家编辑商品（经过 Spring MVC 和 open-in-view，商品在整个请求中是托管实体）
+ */
+@SpringBootTest(properties = "app.seller-stats.flush-interval-ms=3600000")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private SellerStatsService sellerStatsService;
+
+    @Autowired
+    private SellerStatsRepository sellerStatsRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StockBucketRepository stockBucketRepository;
+
+    @Autowired
+    private HotSkuInventory hotSkuInventory;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void editingPriceAndStockUpdatesSellerStats() throws Exception {
+        Long sellerId = userRepository.findByUsername("seller1").orElseThrow().getId();
+        Long productId = createProduct(sellerId, 5);
+        SellerStats before = sellerStatsService.rebuild(sellerId);
+
+        mockMvc.perform(multipart("/products/edit/{id}", productId)
+                .param("name", "编辑后")
+                .param("description", "")
+                .param("price", "12.0")
+                .param("stockQuantity", "8")
+                .with(user(userDetailsService.loadUserByUsername("seller1"))))
+            .andExpect(redirectedUrl("/products/my-products"));
+
+        Product updated = productRepository.findById(productId).orElseThrow();
+        assertThat(updated.getStockQuantity()).isEqualTo(8);
+        SellerStats after = sellerStatsRepository.findById(sellerId).orElseThrow();
+        assertThat(after.getProductCount()).isEqualTo(before.getProductCount());
+        assertThat(after.getTotalStock()).isEqualTo(before.getTotalStock() + 3);
+        assertThat(after.getTotalValue()).isCloseTo(before.getTotalValue() + 96.0 - 50.0, within(1e-6));
+    }
+
+    @Test
+    void editingStockResplitsBuckets() throws Exception {
+        Long sellerId = userRepository.findByUsername("seller1").orElseThrow().getId();
+        Long productId = createProduct(sellerId, 10);
+        hotSkuInventory.enable(productId, 2);
+
+        mockMvc.perform(multipart("/products/edit/{id}", productId)
+                .param("name", "分桶商品")
+                .param("description", "")
+                .param("price", "10.0")
+                .param("stockQuantity", "21")
+                .with(user(userDetailsService.loadUserByUsername("seller1"))))
+            .andExpect(redirectedUrl("/products/my-products"));
+
+        assertThat(stockBucketRepository.sumQuantityByProductId(productId)).isEqualTo(21);
+    }
+
+    @Test
+    void bucketResplitRollsBackWithTheProductSave() {
+        Long sellerId = userRepository.findByUsername("seller1").orElseThrow().getId();
+        Long productId = createProduct(sellerId, 10);
+        hotSkuInventory.enable(productId, 2);
+
+        // 保存商品的事务回滚时，分桶库存也不能保留新值
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Product product = productService.findProductForUpdate(productId);
+            ProductStockSnapshot before = productService.snapshotOf(product);
+            product.setStockQuantity(30);
+            productService.saveProduct(product, before);
+            assertThat(stockBucketRepository.sumQuantityByProductId(productId)).isEqualTo(30);
+            status.setRollbackOnly();
+        });
+
+        assertThat(productRepository.findById(productId).orElseThrow().getStockQuantity()).isEqualTo(10);
+        assertThat(stockBucketRepository.sumQuantityByProductId(productId)).isEqualTo(10);
+    }
+
+    private Long createProduct(Long sellerId, int stock) {
+        Product product = new Product();
+        product.setName("编辑前");
+        product.setPrice(10.0);
+        product.setStockQuantity(stock);
+        product.setUser(userRepository.getReferenceById(sellerId));
+        return productRepository.save(product).getId();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.shopping_website.controller;
+
+import com.example.shopping_website.service.catalog.ProductExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 商品导出的并发上限：名额已满时返回 503
+ * （导出本身使用 MySQL 的流式读取，H2 不支持，这里不执行完整导出）
+ */
+@SpringBootTest(properties = "app.export.max-concurrent=1")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SellerControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private ProductExportService productExportService;
+
+    @Test
+    void exportIsRejectedWhileAllSlotsAreInUse() throws Exception {
+        // 模拟另一个正在下载的导出
+        assertThat(productExportService.tryAcquireSlot()).isTrue();
+        try {
+            mockMvc.perform(get("/seller/products/export").with(user(userDetailsService.loadUserByUsername("seller1"))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        } finally {
+            productExportService.releaseSlot();
+        }
+
+        // 被拒绝的请求不占用名额
+        assertThat(productExportService.getMetrics().get("active")).isEqualTo(0);
+        assertThat(productExportService.getMetrics().get("rejected")).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.shopping_website.service;
+
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.model.SellerStats;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.SellerStatsRepository;
+import com.example.shopping_website.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 商家统计的库存增量：提交后累计，按商家汇总写入（内嵌 H2，MySQL 兼容模式）
+ */
+@SpringBootTest(properties = "app.seller-stats.flush-interval-ms=3600000")
+@ActiveProfiles("test")
+class SellerStatsServiceTest {
+
+    @Autowired
+    private SellerStatsService sellerStatsService;
+
+    @Autowired
+    private SellerStatsRepository sellerStatsRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void committedDeltasAreAggregatedPerSeller() {
+        Long seller1 = userId("seller1");
+        Long seller2 = userId("seller2");
+        Long a = newProduct(seller1, 10.0, 100);
+        Long b = newProduct(seller1, 2.5, 100);
+        Long c = newProduct(seller2, 4.0, 100);
+        SellerStats before1 = sellerStatsService.rebuild(seller1);
+        SellerStats before2 = sellerStatsService.rebuild(seller2);
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            sellerStatsService.onStockChanged(a, -3);
+            sellerStatsService.onStockChanged(b, -2);
+            sellerStatsService.onStockChanged(c, -1);
+            // 提交前不写商家统计
+            assertThat(sellerStatsRepository.findById(seller1).orElseThrow().getTotalStock())
+                .isEqualTo(before1.getTotalStock());
+        });
+        transaction.executeWithoutResult(status -> sellerStatsService.onStockChanged(a, 1));
+        assertThat(sellerStatsService.getMetrics().get("pendingProducts")).isEqualTo(3);
+
+        sellerStatsService.flush();
+
+        SellerStats after1 = sellerStatsRepository.findById(seller1).orElseThrow();
+        SellerStats after2 = sellerStatsRepository.findById(seller2).orElseThrow();
+        assertThat(after1.getTotalStock()).isEqualTo(before1.getTotalStock() - 4);
+        assertThat(after1.getTotalValue()).isCloseTo(before1.getTotalValue() - 25.0, within(1e-6));
+        assertThat(after2.getTotalStock()).isEqualTo(before2.getTotalStock() - 1);
+        assertThat(sellerStatsService.getMetrics().get("pendingProducts")).isEqualTo(0);
+    }
+
+    @Test
+    void rolledBackDeltasAreDiscarded() {
+        Long seller1 = userId("seller1");
+        Long a = newProduct(seller1, 10.0, 100);
+        SellerStats before = sellerStatsService.rebuild(seller1);
+
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            sellerStatsService.onStockChanged(a, -5);
+            throw new IllegalStateException("rollback");
+        })).isInstanceOf(IllegalStateException.class);
+        sellerStatsService.flush();
+
+        assertThat(sellerStatsRepository.findById(seller1).orElseThrow().getTotalStock())
+            .isEqualTo(before.getTotalStock());
+    }
+
+    @Test
+    void stockResetAdjustsByDifferenceFromCurrentStock() {
+        Long seller2 = userId("seller2");
+        Long a = newProduct(seller2, 3.0, 10);
+        SellerStats before = sellerStatsService.rebuild(seller2);
+
+        // 分桶汇总：改写展示库存前按与当前库存的差值调整
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            sellerStatsService.onStockReset(a, 4);
+            productRepository.updateDisplayStock(a, 4);
+        });
+        // 库存未变化时不调整
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            sellerStatsService.onStockReset(a, 4));
+
+        SellerStats after = sellerStatsRepository.findById(seller2).orElseThrow();
+        assertThat(after.getTotalStock()).isEqualTo(before.getTotalStock() - 6);
+        assertThat(after.getTotalValue()).isCloseTo(before.getTotalValue() - 18.0, within(1e-6));
+        assertThat(after).usingRecursiveComparison().comparingOnlyFields("totalStock")
+            .isEqualTo(sellerStatsService.rebuild(seller2));
+    }
+
+    private Long userId(String username) {
+        return userRepository.findByUsername(username).orElseThrow().getId();
+    }
+
+    private Long newProduct(Long userId, double price, int stock) {
+        Product product = new Product();
+        product.setName("统计商品");
+        product.setPrice(price);
+        product.setStockQuantity(stock);
+        product.setUser(userRepository.getReferenceById(userId));
+        return productRepository.save(product).getId();
+    }
+}
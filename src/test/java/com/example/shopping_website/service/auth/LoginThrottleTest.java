@@ -0,0 +1,75 @@
+package com.example.shopping_website.service.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 登录限流的来源IP解析（受信任代理与 X-Forwarded-For）
+ */
+class LoginThrottleTest {
+
+    private LoginThrottle throttle;
+
+    @AfterEach
+    void stop() {
+        if (throttle != null) {
+            throttle.stop();
+        }
+    }
+
+    @Test
+    void forwardedHeaderIsIgnoredWithoutTrustedProxies() {
+        throttle = newThrottle(List.of());
+
+        assertThat(throttle.resolveClientIp("203.0.113.7", "198.51.100.1")).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    void clientIsRightmostUntrustedHop() {
+        throttle = newThrottle(List.of("10.0.0.0/8", "192.168.1.10"));
+
+        // 客户端伪造的最左侧地址不被采用
+        assertThat(throttle.resolveClientIp("10.0.0.5", "1.2.3.4, 203.0.113.7, 192.168.1.10"))
+            .isEqualTo("203.0.113.7");
+        // 直连地址不是受信任代理时不读取请求头
+        assertThat(throttle.resolveClientIp("203.0.113.9", "1.2.3.4")).isEqualTo("203.0.113.9");
+        // 转发链全部是代理时取最左侧
+        assertThat(throttle.resolveClientIp("10.0.0.5", "10.1.1.1, 192.168.1.10")).isEqualTo("10.1.1.1");
+        // 非法地址按不受信任处理
+        assertThat(throttle.resolveClientIp("10.0.0.5", "not-an-ip")).isEqualTo("not-an-ip");
+    }
+
+    @Test
+    void bucketsAreKeyedByResolvedClient() {
+        throttle = newThrottle(List.of("10.0.0.0/8"));
+
+        // 同一代理后的不同客户端各自计数
+        for (int i = 0; i < 3; i++) {
+            assertThat(throttle.tryAcquire(throttle.resolveClientIp("10.0.0.5", "203.0.113.1"), null)).isZero();
+        }
+        assertThat(throttle.tryAcquire(throttle.resolveClientIp("10.0.0.5", "203.0.113.1"), null)).isPositive();
+        assertThat(throttle.tryAcquire(throttle.resolveClientIp("10.0.0.5", "203.0.113.2"), null)).isZero();
+    }
+
+    private static LoginThrottle newThrottle(List<String> trustedProxies) {
+        LoginThrottle throttle = new LoginThrottle();
+        ReflectionTestUtils.setField(throttle, "enabled", true);
+        ReflectionTestUtils.setField(throttle, "ipCapacity", 3);
+        ReflectionTestUtils.setField(throttle, "ipRefillPerMinute", 0.0);
+        ReflectionTestUtils.setField(throttle, "usernameCapacity", 5);
+        ReflectionTestUtils.setField(throttle, "usernameRefillPerMinute", 1.0);
+        ReflectionTestUtils.setField(throttle, "untrackedAttempts", 2);
+        ReflectionTestUtils.setField(throttle, "maxTrackedKeys", 1000);
+        ReflectionTestUtils.setField(throttle, "windowSeconds", 300L);
+        ReflectionTestUtils.setField(throttle, "sketchWidth", 1024);
+        ReflectionTestUtils.setField(throttle, "sketchDepth", 4);
+        ReflectionTestUtils.setField(throttle, "trustedProxies", trustedProxies);
+        throttle.start();
+        return throttle;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.shopping_website.service.cache;
+
+import com.example.shopping_website.dto.CartLineDto;
+import com.example.shopping_website.dto.CartSummary;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartSummaryCacheTest {
+
+    private CartSummaryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CartSummaryCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.init();
+    }
+
+    @Test
+    void productChangeInvalidatesOnlyUsersHoldingThatProduct() {
+        cache.put(1L, summaryOf(10L, 11L), cache.stamp());
+        cache.put(2L, summaryOf(20L), cache.stamp());
+
+        changed(11L);
+
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.get(2L)).isNotNull();
+    }
+
+    @Test
+    void changeDuringLoadMakesEntryStale() {
+        long stamp = cache.stamp();
+        CartSummary loaded = summaryOf(10L);
+
+        // 读取购物车之后、放入之前，商品变更事件已处理
+        changed(10L);
+        cache.put(1L, loaded, stamp);
+
+        assertThat(cache.get(1L)).isNull();
+
+        // 变更之后重新读取的汇总可以命中
+        cache.put(1L, summaryOf(10L), cache.stamp());
+        assertThat(cache.get(1L)).isNotNull();
+    }
+
+    @Test
+    void emptyCartIsUnaffectedByProductChanges() {
+        cache.put(1L, CartSummary.empty(), cache.stamp());
+        changed(10L);
+        assertThat(cache.get(1L)).isNotNull();
+    }
+
+    private void changed(Long productId) {
+        cache.onProductChanges(List.of(
+            new ProductChangeEvent(productId, ProductChangeEvent.Type.UPDATE, System.currentTimeMillis())));
+    }
+
+    private static CartSummary summaryOf(Long... productIds) {
+        List<CartLineDto> lines = java.util.Arrays.stream(productIds)
+            .map(id -> new CartLineDto(id * 100, id, "商品" + id, 1.0, null, 10, 1))
+            .toList();
+        return CartSummary.of(lines);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.shopping_website.service.cache;
+
+import com.example.shopping_website.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductCacheTest {
+
+    private ProductCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ProductCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.init();
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void readThroughPutIsDroppedWhenInvalidatedDuringLoad() {
+        long generation = cache.generation(1L);
+        Product loadedBeforeUpdate = product(1L, "旧名称");
+
+        // 读取数据库之后、放入缓存之前，商品被修改并失效
+        cache.invalidate(1L);
+        cache.put(loadedBeforeUpdate, generation);
+
+        assertThat(cache.get(1L)).isNull();
+
+        // 之后正常的读穿透可以放入
+        long fresh = cache.generation(1L);
+        cache.put(product(1L, "新名称"), fresh);
+        assertThat(cache.get(1L).getName()).isEqualTo("新名称");
+    }
+
+    @Test
+    void invalidationInTransactionIsRepeatedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(1L);
+
+        // 提交前并发读取到旧数据并放入（期间没有新的失效）
+        cache.put(product(1L, "旧名称"), cache.generation(1L));
+        assertThat(cache.get(1L)).isNotNull();
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    void cachedCopiesAreIsolatedFromCallers() {
+        Product product = product(1L, "名称");
+        cache.put(product, cache.generation(1L));
+        product.setName("调用方修改");
+        cache.get(1L).setName("读取方修改");
+
+        assertThat(cache.get(1L).getName()).isEqualTo("名称");
+    }
+
+    private static Product product(Long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setPrice(1.0);
+        return product;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.shopping_website.service.cache;
+
+import com.example.shopping_website.dto.ProductCardDto;
+import com.example.shopping_website.service.event.ProductChangeEvent;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductGridCacheTest {
+
+    @Test
+    void etagIsNotReusedAcrossRestartsOrNodes() {
+        // 两个实例的版本号都从 1 开始（模拟重启或另一个节点）
+        ProductGridCache first = newCache();
+        ProductGridCache second = newCache();
+
+        assertThat(first.currentEtag("home|null|null")).isNotEqualTo(second.currentEtag("home|null|null"));
+    }
+
+    @Test
+    void etagChangesWithKeyAndVersion() {
+        ProductGridCache cache = newCache();
+        String etag = cache.currentEtag("home|null|null");
+
+        assertThat(cache.currentEtag("home|null|null")).isEqualTo(etag);
+        // "Aa" 与 "BB" 的 hashCode 相同
+        assertThat(cache.currentEtag("search|Aa|null|null")).isNotEqualTo(cache.currentEtag("search|BB|null|null"));
+
+        cache.onEventsDropped();
+        assertThat(cache.currentEtag("home|null|null")).isNotEqualTo(etag);
+    }
+
+    @Test
+    void updateInvalidatesOnlyPagesShowingTheProduct() {
+        AtomicInteger renders = new AtomicInteger();
+        ProductGridCache cache = newCache(renders);
+        cache.getOrRender("home|null|2", () -> page(false, 1L, 2L), null, null);
+        cache.getOrRender("home|2|2", () -> page(false, 3L, 4L), null, null);
+        String firstPage = cache.currentEtag("home|null|2");
+        String secondPage = cache.currentEtag("home|2|2");
+
+        cache.onProductChanges(List.of(event(3L, ProductChangeEvent.Type.UPDATE)));
+
+        assertThat(cache.currentEtag("home|null|2")).isEqualTo(firstPage);
+        assertThat(cache.currentEtag("home|2|2")).isNotEqualTo(secondPage);
+        cache.getOrRender("home|null|2", () -> page(false, 1L, 2L), null, null);
+        cache.getOrRender("home|2|2", () -> page(false, 3L, 4L), null, null);
+        assertThat(renders.get()).isEqualTo(3);
+    }
+
+    @Test
+    void updateInvalidatesKeywordSearchPages() {
+        ProductGridCache cache = newCache(new AtomicInteger());
+        cache.getOrRender("search|phone|null|2", () -> page(true, 1L), null, null);
+        String etag = cache.currentEtag("search|phone|null|2");
+
+        // 改名后可能进入或离开搜索结果
+        cache.onProductChanges(List.of(event(9L, ProductChangeEvent.Type.UPDATE)));
+
+        assertThat(cache.currentEtag("search|phone|null|2")).isNotEqualTo(etag);
+    }
+
+    @Test
+    void insertOrDeleteInvalidatesAllPages() {
+        ProductGridCache cache = newCache(new AtomicInteger());
+        cache.getOrRender("home|null|2", () -> page(false, 1L, 2L), null, null);
+        String etag = cache.currentEtag("home|null|2");
+
+        cache.onProductChanges(List.of(event(1L, ProductChangeEvent.Type.UPDATE),
+            event(9L, ProductChangeEvent.Type.INSERT)));
+
+        assertThat(cache.currentEtag("home|null|2")).isNotEqualTo(etag);
+    }
+
+    @Test
+    void pageRenderedDuringUpdateOfItsProductIsNotCached() {
+        AtomicInteger renders = new AtomicInteger();
+        ProductGridCache cache = newCache(renders);
+        cache.getOrRender("home|null|2", () -> {
+            cache.onProductChanges(List.of(event(1L, ProductChangeEvent.Type.UPDATE)));
+            return page(false, 1L, 2L);
+        }, null, null);
+
+        cache.getOrRender("home|null|2", () -> page(false, 1L, 2L), null, null);
+        assertThat(renders.get()).isEqualTo(2);
+    }
+
+    private static Map<String, Object> page(boolean searchMode, Long... ids) {
+        List<ProductCardDto> products = new ArrayList<>();
+        for (Long id : ids) {
+            ProductCardDto card = new ProductCardDto();
+            card.setId(id);
+            products.add(card);
+        }
+        return Map.of("products", products, "searchMode", searchMode);
+    }
+
+    private static ProductChangeEvent event(Long productId, ProductChangeEvent.Type type) {
+        return new ProductChangeEvent(productId, type, System.currentTimeMillis());
+    }
+
+    // 不经过模板引擎，只统计渲染次数
+    private static ProductGridCache newCache(AtomicInteger renders) {
+        return configure(new ProductGridCache() {
+            @Override
+            String render(Map<String, Object> model, HttpServletRequest request, HttpServletResponse response) {
+                return "grid-" + renders.incrementAndGet();
+            }
+        });
+    }
+
+    private static ProductGridCache newCache() {
+        return configure(new ProductGridCache());
+    }
+
+    private static ProductGridCache configure(ProductGridCache cache) {
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.init();
+        return cache;
+    }
+}
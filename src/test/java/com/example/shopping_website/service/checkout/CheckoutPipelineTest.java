@@ -0,0 +1,165 @@
+package com.example.shopping_website.service.checkout;
+
+import com.example.shopping_website.dto.CheckoutReservation;
+import com.example.shopping_website.model.Order;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.UserRepository;
+import com.example.shopping_website.service.CartService;
+import com.example.shopping_website.service.OrderService;
+import com.example.shopping_website.service.SellerStatsService;
+import com.example.shopping_website.service.inventory.HotSkuInventory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * 分阶段结算：待处理订单、失败补偿与恢复（内嵌 H2，MySQL 兼容模式）
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CheckoutPipelineTest {
+
+    @Autowired
+    private CheckoutPipeline checkoutPipeline;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private HotSkuInventory hotSkuInventory;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private CartService cartService;
+
+    // 分桶库存汇总时调整商家统计的 SQL 使用 MySQL 多表 UPDATE，H2 不支持
+    @MockBean
+    private SellerStatsService sellerStatsService;
+
+    @Test
+    void submitWritesPendingOrderAndWorkerPlacesIt() throws Exception {
+        Long userId = userId("user1");
+        Long productId = newProduct(10);
+        cartService.addToCart(userId, productId, 3);
+
+        CheckoutTicket ticket = checkoutPipeline.submit(userId);
+        assertThat(orderService.getOrderStatus(ticket.getOrderNo())).isIn(Order.Status.PENDING, Order.Status.PLACED);
+        assertThat(stockOf(productId)).isEqualTo(7);
+
+        awaitFinished(ticket);
+        assertThat(ticket.getStatus()).isEqualTo(CheckoutTicket.Status.COMPLETED);
+        assertThat(orderService.getOrderStatus(ticket.getOrderNo())).isEqualTo(Order.Status.PLACED);
+        assertThat(cartService.getCartLines(userId)).isEmpty();
+    }
+
+    @Test
+    void failedTicketRestocksAndKeepsCart() throws Exception {
+        Long userId = userId("user2");
+        Long plain = newProduct(10);
+        Long sharded = newProduct(10);
+        hotSkuInventory.enable(sharded, 2);
+        cartService.addToCart(userId, plain, 2);
+        cartService.addToCart(userId, sharded, 4);
+        doThrow(new RuntimeException("模拟故障")).when(cartService).completeCheckout(eq(userId), any());
+
+        CheckoutTicket ticket = checkoutPipeline.submit(userId);
+
+        awaitFinished(ticket);
+        assertThat(ticket.getStatus()).isEqualTo(CheckoutTicket.Status.FAILED);
+        assertThat(orderService.getOrderStatus(ticket.getOrderNo())).isEqualTo(Order.Status.FAILED);
+        assertThat(stockOf(plain)).isEqualTo(10);
+        assertThat(hotSkuInventory.available(sharded)).isEqualTo(10);
+        assertThat(cartService.getCartLines(userId)).hasSize(2);
+    }
+
+    @Test
+    void pendingOrderLeftByCrashedProcessIsRecovered() throws Exception {
+        Long userId = userId("seller2");
+        Long productId = newProduct(10);
+        cartService.addToCart(userId, productId, 5);
+
+        // 模拟扣减库存并写入待处理订单后进程退出：订单没有进入任何队列
+        String orderNo = "recovered0000000000000000000001";
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            CheckoutReservation reservation = cartService.reserveCheckout(userId);
+            Order order = orderService.buildOrder(orderNo, userId, reservation.getLines());
+            order.setCreatedAt(LocalDateTime.now().minusHours(1));
+            orderService.placeOrders(List.of(order));
+        });
+        assertThat(stockOf(productId)).isEqualTo(5);
+
+        checkoutPipeline.recoverPendingOrders();
+
+        CheckoutTicket ticket = checkoutPipeline.getTicket(orderNo, userId);
+        awaitFinished(ticket);
+        assertThat(ticket.getStatus()).isEqualTo(CheckoutTicket.Status.COMPLETED);
+        assertThat(orderService.getOrderStatus(ticket.getOrderNo())).isEqualTo(Order.Status.PLACED);
+        assertThat(cartService.getCartLines(userId)).isEmpty();
+        assertThat(stockOf(productId)).isEqualTo(5);
+
+        // 已处理的订单不会再次恢复
+        checkoutPipeline.recoverPendingOrders();
+        assertThat(checkoutPipeline.getMetrics().get("recovered")).isEqualTo(1L);
+    }
+
+    @Test
+    void orderNumbersAreUnique() {
+        Set<String> orderNos = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            String orderNo = ReflectionTestUtils.invokeMethod(CheckoutPipeline.class, "nextOrderNo");
+            assertThat(orderNo).hasSize(32);
+            orderNos.add(orderNo);
+        }
+        assertThat(orderNos).hasSize(10000);
+    }
+
+    private void awaitFinished(CheckoutTicket ticket) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15000;
+        while (!ticket.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(ticket.isFinished()).as("结算单应在超时前处理完成").isTrue();
+    }
+
+    private Long userId(String username) {
+        return userRepository.findByUsername(username).orElseThrow().getId();
+    }
+
+    private Long newProduct(int stock) {
+        Product product = new Product();
+        product.setName("结算商品");
+        product.setPrice(10.0);
+        product.setStockQuantity(stock);
+        product.setUser(userRepository.findByUsername("seller1").orElseThrow());
+        return productRepository.save(product).getId();
+    }
+
+    private int stockOf(Long productId) {
+        return productRepository.findById(productId).orElseThrow().getStockQuantity();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.shopping_website.service.image;
+
+import com.example.shopping_website.model.ImageBlob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 缩放图随原图删除后，再次上传相同内容时重新生成（内嵌 H2，MySQL 兼容模式）
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ImageVariantPipelineTest {
+
+    @Autowired
+    private ImageVariantPipeline imageVariantPipeline;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Test
+    void reuploadAfterDeleteRegeneratesVariants() throws Exception {
+        byte[] png = png(new Color(0x3a, 0x7b, 0xd5));
+
+        ImageBlob blob = imageStore.store(new ByteArrayInputStream(png), ".png");
+        String imageUrl = "/uploads/products/" + blob.getFileName();
+        imageVariantPipeline.submit(null, blob);
+        String gridUrl = awaitVariant(imageUrl);
+        String gridFile = ContentAddressedImageStore.variantFileName(blob.getFileName(), "grid.jpg");
+        assertThat(gridUrl).endsWith(gridFile);
+        assertThat(Files.exists(imageStore.resolve(gridFile))).isTrue();
+
+        // 最后一个引用释放：原图和缩放图都被删除，不再返回缩放图URL
+        imageStore.release(blob.getContentHash());
+        assertThat(Files.exists(imageStore.resolve(gridFile))).isFalse();
+        assertThat(imageVariantPipeline.url(imageUrl, "grid")).isEqualTo(imageUrl);
+
+        // 相同内容重新上传：重新生成缩放图
+        ImageBlob again = imageStore.store(new ByteArrayInputStream(png), ".png");
+        assertThat(again.getContentHash()).isEqualTo(blob.getContentHash());
+        imageVariantPipeline.submit(null, again);
+        assertThat(awaitVariant(imageUrl)).isEqualTo(gridUrl);
+        assertThat(Files.exists(imageStore.resolve(gridFile))).isTrue();
+    }
+
+    private String awaitVariant(String imageUrl) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            String url = imageVariantPipeline.url(imageUrl, "grid");
+            if (!url.equals(imageUrl)) {
+                return url;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("缩放图未生成: " + imageUrl);
+    }
+
+    private static byte[] png(Color color) throws Exception {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 800, 600);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
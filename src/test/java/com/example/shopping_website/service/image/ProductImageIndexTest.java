@@ -0,0 +1,155 @@
+package com.example.shopping_website.service.image;
+
+import com.example.shopping_website.model.ImageBlob;
+import com.example.shopping_website.model.ProductImage;
+import com.example.shopping_website.repository.ImageBlobRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 图片元数据替换/删除时内容寻址图片的引用计数（内嵌 H2，MySQL 兼容模式）
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductImageIndexTest {
+
+    // 图片元数据不关联商品表，使用测试专用的商品ID
+    private static final AtomicLong PRODUCT_IDS = new AtomicLong(900_000);
+
+    @Autowired
+    private ProductImageIndex productImageIndex;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Test
+    void concurrentUploadsReleaseEachReplacedImageOnce() throws Exception {
+        Long productId = PRODUCT_IDS.incrementAndGet();
+        ImageBlob first = store("first-" + productId);
+        productImageIndex.record(image(productId, first));
+
+        // 同一商品并发上传不同图片：最终只保留一张，其余（包括最初的图片）都被释放且只释放一次
+        int uploads = 8;
+        List<ImageBlob> blobs = new ArrayList<>();
+        for (int i = 0; i < uploads; i++) {
+            blobs.add(store("upload-" + productId + "-" + i));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(uploads);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (ImageBlob blob : blobs) {
+            results.add(pool.submit(() -> {
+                startSignal.await();
+                return productImageIndex.record(image(productId, blob));
+            }));
+        }
+        startSignal.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        String current = productImageIndex.get(productId).getContentHash();
+        assertThat(refCount(first)).isZero();
+        for (ImageBlob blob : blobs) {
+            assertThat(refCount(blob)).isEqualTo(blob.getContentHash().equals(current) ? 1 : 0);
+        }
+    }
+
+    @Test
+    void firstUploadsRaceOnInsertAndStillReleaseOnce() throws Exception {
+        Long productId = PRODUCT_IDS.incrementAndGet();
+        ImageBlob a = store("race-a-" + productId);
+        ImageBlob b = store("race-b-" + productId);
+
+        // 商品还没有记录时无行可锁，一方插入冲突后重试
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        Future<ProductImage> first = pool.submit(() -> {
+            startSignal.await();
+            return productImageIndex.record(image(productId, a));
+        });
+        Future<ProductImage> second = pool.submit(() -> {
+            startSignal.await();
+            return productImageIndex.record(image(productId, b));
+        });
+        startSignal.countDown();
+        first.get();
+        second.get();
+        pool.shutdown();
+
+        assertThat(refCount(a) + refCount(b)).isEqualTo(1);
+        String current = productImageIndex.get(productId).getContentHash();
+        assertThat(refCount(current.equals(a.getContentHash()) ? a : b)).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRemovesReleaseSharedImageOnce() throws Exception {
+        Long productId = PRODUCT_IDS.incrementAndGet();
+        Long otherId = PRODUCT_IDS.incrementAndGet();
+        // 两个商品使用相同内容的图片，共享一个引用计数为 2 的文件
+        String content = "shared-" + productId;
+        ImageBlob shared = store(content);
+        productImageIndex.record(image(productId, shared));
+        productImageIndex.record(image(otherId, store(content)));
+        assertThat(refCount(shared)).isEqualTo(2);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<ProductImage>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(pool.submit(() -> {
+                startSignal.await();
+                return productImageIndex.remove(productId);
+            }));
+        }
+        startSignal.countDown();
+        int removed = 0;
+        for (Future<ProductImage> result : results) {
+            if (result.get() != null) {
+                removed++;
+            }
+        }
+        pool.shutdown();
+
+        assertThat(removed).isEqualTo(1);
+        assertThat(productImageIndex.get(productId)).isNull();
+        assertThat(refCount(shared)).isEqualTo(1);
+    }
+
+    private ImageBlob store(String content) throws Exception {
+        return imageStore.store(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), ".png");
+    }
+
+    private static ProductImage image(Long productId, ImageBlob blob) {
+        return new ProductImage(productId, blob.getFileName(), blob.getSizeBytes(), blob.getContentHash(),
+            "image/png", null, null, LocalDateTime.now());
+    }
+
+    private int refCount(ImageBlob blob) {
+        return refCount(blob.getContentHash());
+    }
+
+    // 引用为 0 的记录已被删除
+    private int refCount(String contentHash) {
+        return imageBlobRepository.findById(contentHash).map(ImageBlob::getRefCount).orElse(0);
+    }
+}
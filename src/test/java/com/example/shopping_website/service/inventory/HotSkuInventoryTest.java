@@ -0,0 +1,159 @@
+package com.example.shopping_website.service.inventory;
+
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.model.StockBucket;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.StockBucketRepository;
+import com.example.shopping_website.repository.UserRepository;
+import com.example.shopping_website.service.SellerStatsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 热点商品库存分桶（内嵌 H2，MySQL 兼容模式）
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class HotSkuInventoryTest {
+
+    @Autowired
+    private HotSkuInventory hotSkuInventory;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockBucketRepository stockBucketRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 分桶库存汇总时调整商家统计的 SQL 使用 MySQL 多表 UPDATE，H2 不支持
+    @MockBean
+    private SellerStatsService sellerStatsService;
+
+    @Test
+    void borrowsAcrossBucketsWithoutOverselling() throws Exception {
+        Long productId = newProduct(40);
+        hotSkuInventory.enable(productId, 4);
+        assertThat(hotSkuInventory.isSharded(productId)).isTrue();
+
+        // 每次买 3 件，每个桶 10 件：路由桶会先耗尽，之后的结算都要跨桶借用
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            long userId = i;
+            results.add(pool.submit(() -> {
+                try {
+                    inventoryService.reserve(Map.of(productId, 3), userId);
+                    return true;
+                } catch (InsufficientStockException e) {
+                    return false;
+                }
+            }));
+        }
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                succeeded++;
+            }
+        }
+        pool.shutdown();
+
+        int left = hotSkuInventory.available(productId);
+        assertThat(left).isEqualTo(40 - succeeded * 3).isGreaterThanOrEqualTo(0);
+        assertThat(stockBucketRepository.findByProductIdOrderByBucketIndex(productId))
+            .allSatisfy(bucket -> assertThat(bucket.getQuantity()).isNotNegative());
+        // 只有锁竞争时才会出现少量假性不足，剩余库存不足一次购买时才应全部失败
+        assertThat(succeeded).isGreaterThanOrEqualTo(10);
+    }
+
+    @Test
+    void failedReservationTakesNothing() {
+        Long productId = newProduct(4);
+        hotSkuInventory.enable(productId, 2);
+
+        assertThatThrownBy(() -> inventoryService.reserve(Map.of(productId, 5), 1L))
+            .isInstanceOf(InsufficientStockException.class);
+        assertThat(hotSkuInventory.available(productId)).isEqualTo(4);
+
+        inventoryService.reserve(Map.of(productId, 4), 1L);
+        assertThat(hotSkuInventory.available(productId)).isZero();
+    }
+
+    @Test
+    void shardingEnabledElsewhereIsPickedUpFromDatabase() {
+        Long productId = newProduct(10);
+        assertThat(hotSkuInventory.isSharded(productId)).isFalse();
+
+        // 模拟另一个节点开启分桶：直接写入分桶，本节点缓存中仍是未分桶
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> stockBucketRepository.saveAll(List.of(
+            new StockBucket(null, productId, 0, 5), new StockBucket(null, productId, 1, 5))));
+
+        inventoryService.reserve(Map.of(productId, 6), 1L);
+
+        assertThat(hotSkuInventory.isSharded(productId)).isTrue();
+        assertThat(hotSkuInventory.available(productId)).isEqualTo(4);
+        assertThat(productRepository.findById(productId).orElseThrow().getStockQuantity()).isEqualTo(10);
+    }
+
+    @Test
+    void shardingDisabledElsewhereFallsBackToProductStock() {
+        Long productId = newProduct(10);
+        hotSkuInventory.enable(productId, 2);
+        assertThat(hotSkuInventory.isSharded(productId)).isTrue();
+
+        // 模拟另一个节点关闭分桶
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            stockBucketRepository.deleteByProductId(productId));
+
+        inventoryService.reserve(Map.of(productId, 3), 1L);
+
+        assertThat(hotSkuInventory.isSharded(productId)).isFalse();
+        assertThat(productRepository.findById(productId).orElseThrow().getStockQuantity()).isEqualTo(7);
+    }
+
+    @Test
+    void rolledBackEnableIsNotRegistered() {
+        Long productId = newProduct(10);
+
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            hotSkuInventory.enable(productId, 2);
+            throw new IllegalStateException("rollback");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(hotSkuInventory.isSharded(productId)).isFalse();
+        inventoryService.reserve(Map.of(productId, 3), 1L);
+        assertThat(productRepository.findById(productId).orElseThrow().getStockQuantity()).isEqualTo(7);
+    }
+
+    private Long newProduct(int stock) {
+        Product product = new Product();
+        product.setName("热点商品");
+        product.setPrice(10.0);
+        product.setStockQuantity(stock);
+        product.setUser(userRepository.findByUsername("seller1").orElseThrow());
+        return productRepository.save(product).getId();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.shopping_website.service.inventory;
+
+import com.example.shopping_website.dto.StockShortage;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 库存条件扣减（内嵌 H2，MySQL 兼容模式）
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class InventoryServiceTest {
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void reservesAllLinesInOneBatch() {
+        Long a = newProduct("A", 5);
+        Long b = newProduct("B", 3);
+
+        inventoryService.reserve(Map.of(a, 2, b, 3), 1L);
+
+        assertThat(stockOf(a)).isEqualTo(3);
+        assertThat(stockOf(b)).isZero();
+    }
+
+    @Test
+    void shortageRollsBackEveryLineAndReportsAllFailures() {
+        Long a = newProduct("A", 5);
+        Long b = newProduct("B", 1);
+        Long c = newProduct("C", 0);
+
+        assertThatThrownBy(() -> inventoryService.reserve(Map.of(a, 2, b, 2, c, 1), 1L))
+            .isInstanceOfSatisfying(InsufficientStockException.class, e -> {
+                assertThat(e.getShortages()).extracting(StockShortage::getProductId).containsExactly(b, c);
+                assertThat(e.getShortages()).extracting(StockShortage::getAvailable).containsExactly(1, 0);
+            });
+
+        assertThat(stockOf(a)).isEqualTo(5);
+        assertThat(stockOf(b)).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        Long a = newProduct("A", 10);
+        Long b = newProduct("B", 10);
+
+        // 每个结算都同时购买两个商品，顺序相反地传入，验证不会超卖也不会死锁
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            long userId = i;
+            Callable<Boolean> task = () -> {
+                try {
+                    inventoryService.reserve(userId % 2 == 0 ? Map.of(a, 1, b, 1) : Map.of(b, 1, a, 1), userId);
+                    return true;
+                } catch (InsufficientStockException e) {
+                    return false;
+                }
+            };
+            results.add(pool.submit(task));
+        }
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                succeeded++;
+            }
+        }
+        pool.shutdown();
+
+        assertThat(succeeded).isEqualTo(10);
+        assertThat(stockOf(a)).isZero();
+        assertThat(stockOf(b)).isZero();
+    }
+
+    private Long newProduct(String name, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(10.0);
+        product.setStockQuantity(stock);
+        product.setUser(userRepository.findByUsername("seller1").orElseThrow());
+        return productRepository.save(product).getId();
+    }
+
+    private int stockOf(Long productId) {
+        return productRepository.findById(productId).orElseThrow().getStockQuantity();
+    }
+}
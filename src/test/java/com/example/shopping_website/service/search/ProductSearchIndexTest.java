@@ -0,0 +1,106 @@
+package com.example.shopping_website.service.search;
+
+import com.example.shopping_website.dto.ProductCardDto;
+import com.example.shopping_website.model.Product;
+import com.example.shopping_website.repository.ProductRepository;
+import com.example.shopping_website.util.FileUploadUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+
+    private ProductRepository productRepository;
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        index = new ProductSearchIndex();
+        ReflectionTestUtils.setField(index, "productRepository", productRepository);
+        ReflectionTestUtils.setField(index, "fileUploadUtil", mock(FileUploadUtil.class));
+        ReflectionTestUtils.setField(index, "maxResults", 1000);
+        ReflectionTestUtils.setField(index, "buildBatchSize", 2);
+    }
+
+    @Test
+    void singleCjkCharMatchesAnyPosition() {
+        index.index(product(1L, "华为手机", "旗舰"));
+        index.index(product(2L, "机械键盘", "青轴"));
+        index.index(product(3L, "耳机", null));
+        index.index(product(4L, "充电器", null));
+
+        assertThat(ids(index.search("机", 0, 10).getHits())).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(ids(index.search("手机", 0, 10).getHits())).containsExactly(1L);
+        assertThat(ids(index.search("电", 0, 10).getHits())).containsExactly(4L);
+    }
+
+    @Test
+    void changesDuringRebuildWinOverStalePages() {
+        Product keep = product(1L, "蓝牙耳机", null);
+        Product staleUpdated = product(2L, "旧名称", null);
+        Product staleDeleted = product(3L, "已删除商品", null);
+
+        // 第一批读取返回后，增量事件更新了2号商品、删除了3号商品；第二批的数据仍是旧的
+        when(productRepository.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(0);
+            if (pageable.getPageNumber() == 0) {
+                return new PageImpl<>(List.of(keep, staleUpdated), pageable, 3);
+            }
+            index.index(product(2L, "新名称", null));
+            index.remove(3L);
+            return new PageImpl<>(List.of(staleDeleted), pageable, 3);
+        });
+
+        index.rebuild();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(ids(index.search("新名称", 0, 10).getHits())).containsExactly(2L);
+        assertThat(index.search("旧名称", 0, 10).getHits()).isEmpty();
+        assertThat(index.search("已删除", 0, 10).getHits()).isEmpty();
+
+        // 再次重建（无并发变更）得到的索引大小一致
+        when(productRepository.findAll(any(Pageable.class))).thenAnswer(invocation ->
+            new PageImpl<>(List.of(keep, product(2L, "新名称", null)), invocation.getArgument(0), 2));
+        index.rebuild();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(ids(index.search("耳机", 0, 10).getHits())).containsExactly(1L);
+    }
+
+    @Test
+    void failedRebuildKeepsServingOldIndex() {
+        index.index(product(1L, "蓝牙耳机", null));
+        when(productRepository.findAll(any(Pageable.class))).thenThrow(new RuntimeException("数据库不可用"));
+
+        index.rebuild();
+
+        assertThat(ids(index.search("耳机", 0, 10).getHits())).containsExactly(1L);
+    }
+
+    private static Product product(Long id, String name, String description) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setDescription(description);
+        product.setPrice(10.0);
+        product.setStockQuantity(1);
+        product.setCreatedAt(LocalDateTime.now().minusMinutes(id));
+        return product;
+    }
+
+    private static List<Long> ids(List<ProductCardDto> cards) {
+        return cards.stream().map(ProductCardDto::getId).toList();
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.shopping_website.service.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 数据库会话存储与近端缓存（内嵌 H2，MySQL 兼容模式）
+ */
+@JdbcTest(properties = "app.session.store=jdbc")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({JdbcSessionStore.class, SessionRepository.class})
+class JdbcSessionStoreTest {
+
+    private final MockServletContext servletContext = new MockServletContext();
+
+    @Autowired
+    private JdbcSessionStore store;
+
+    @Autowired
+    private SessionRepository nodeA;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 模拟另一个节点：共享同一个存储，有自己的近端缓存
+    private SessionRepository nodeB;
+
+    @BeforeEach
+    void startSecondNode() {
+        nodeB = new SessionRepository();
+        ReflectionTestUtils.setField(nodeB, "sessionStore", store);
+        ReflectionTestUtils.setField(nodeB, "cookieName", "SESSION");
+        ReflectionTestUtils.setField(nodeB, "timeoutSeconds", 1800);
+        ReflectionTestUtils.setField(nodeB, "touchIntervalSeconds", 60L);
+        ReflectionTestUtils.setField(nodeB, "cleanupIntervalSeconds", 3600L);
+        ReflectionTestUtils.setField(nodeB, "nearCacheMaxEntries", 100);
+        ReflectionTestUtils.setField(nodeB, "nearCacheMaxBytes", 1024L * 1024);
+        nodeB.start();
+    }
+
+    @AfterEach
+    void stopSecondNode() {
+        nodeB.stop();
+    }
+
+    @Test
+    void createAndLoad() {
+        long now = System.currentTimeMillis();
+        store.create(new StoredSession("s-create", now, now, 1800, 1, Map.of("cart", bytes("a"), "user", bytes("b"))));
+
+        StoredSession header = store.findHeader("s-create");
+        assertThat(header.getVersion()).isEqualTo(1);
+        assertThat(header.getAttributes()).isNull();
+
+        StoredSession loaded = store.find("s-create");
+        assertThat(loaded.getCreationTime()).isEqualTo(now);
+        assertThat(loaded.getAttributes()).containsOnlyKeys("cart", "user");
+        assertThat(text(loaded.getAttributes().get("cart"))).isEqualTo("a");
+
+        assertThat(store.find("missing")).isNull();
+    }
+
+    @Test
+    void updateWritesOnlyDeltaAndBumpsVersion() {
+        long now = System.currentTimeMillis();
+        store.create(new StoredSession("s-delta", now, now, 1800, 1,
+            Map.of("keep", bytes("k"), "change", bytes("old"), "drop", bytes("d"))));
+
+        long version = store.update("s-delta", now + 1000, 1800, Map.of("change", bytes("new"), "add", bytes("x")), Set.of("drop"));
+
+        assertThat(version).isEqualTo(2);
+        Map<String, byte[]> attributes = store.find("s-delta").getAttributes();
+        assertThat(attributes).containsOnlyKeys("keep", "change", "add");
+        assertThat(text(attributes.get("keep"))).isEqualTo("k");
+        assertThat(text(attributes.get("change"))).isEqualTo("new");
+
+        assertThat(store.update("missing", now, 1800, Map.of("a", bytes("a")), Set.of())).isEqualTo(-1);
+    }
+
+    @Test
+    void expiredSessionsAreDeletedWithAttributes() {
+        long now = System.currentTimeMillis();
+        store.create(new StoredSession("s-old", now - 3_600_000, now - 3_600_000, 60, 1, Map.of("a", bytes("a"))));
+        store.create(new StoredSession("s-live", now, now, 60, 1, Map.of("a", bytes("a"))));
+        store.create(new StoredSession("s-touched", now - 3_600_000, now - 3_600_000, 60, 1, Map.of()));
+        store.touch("s-touched", now, 60);
+
+        assertThat(store.deleteExpired(now)).isEqualTo(1);
+        assertThat(store.findHeader("s-old")).isNull();
+        assertThat(store.findHeader("s-live")).isNotNull();
+        assertThat(store.findHeader("s-touched").getLastAccessedTime()).isEqualTo(now);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM http_session_attributes WHERE session_id = 's-old'", Integer.class)).isZero();
+    }
+
+    @Test
+    void changeIdKeepsAttributes() {
+        long now = System.currentTimeMillis();
+        store.create(new StoredSession("s-before", now, now, 1800, 1, Map.of("a", bytes("a"))));
+
+        store.changeId("s-before", "s-after");
+
+        assertThat(store.find("s-before")).isNull();
+        assertThat(store.find("s-after").getAttributes()).containsOnlyKeys("a");
+    }
+
+    @Test
+    void repositoryCommitsOnlyChangedAttributes() {
+        StoreBackedSession created = nodeA.create(servletContext);
+        created.setAttribute("user", "alice");
+        created.setAttribute("cart", new HashMap<>(Map.of(1L, 2)));
+        nodeA.commit(created);
+        String id = created.getId();
+
+        StoreBackedSession session = nodeA.find(id, servletContext);
+        assertThat(session.getAttribute("user")).isEqualTo("alice");
+        session.setAttribute("cart", new HashMap<>(Map.of(1L, 3)));
+        nodeA.commit(session);
+
+        assertThat(store.findHeader(id).getVersion()).isEqualTo(2);
+        assertThat(nodeA.getMetrics().get("changedAttributes")).isEqualTo(1L);
+
+        // 只读取、没有修改的请求不写库
+        StoreBackedSession readOnly = nodeA.find(id, servletContext);
+        assertThat(readOnly.getAttribute("cart")).isEqualTo(Map.of(1L, 3));
+        nodeA.commit(readOnly);
+        assertThat(store.findHeader(id).getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void nearCacheIsRefreshedWhenAnotherNodeWrites() {
+        StoreBackedSession created = nodeA.create(servletContext);
+        created.setAttribute("flash", "first");
+        nodeA.commit(created);
+        String id = created.getId();
+
+        // 节点A提交时已放入近端缓存，再次读取命中
+        assertThat(nodeA.find(id, servletContext).getAttribute("flash")).isEqualTo("first");
+        assertThat(nodeA.getMetrics().get("nearCacheHits")).isEqualTo(1L);
+
+        // 节点B修改后 version 变化，节点A的缓存副本不再使用
+        StoreBackedSession onB = nodeB.find(id, servletContext);
+        onB.setAttribute("flash", "second");
+        nodeB.commit(onB);
+
+        assertThat(nodeA.find(id, servletContext).getAttribute("flash")).isEqualTo("second");
+        assertThat(nodeA.getMetrics().get("nearCacheHits")).isEqualTo(1L);
+        assertThat(nodeA.getMetrics().get("storeLoads")).isEqualTo(1L);
+
+        // 节点B注销后，节点A也读不到
+        StoreBackedSession toInvalidate = nodeB.find(id, servletContext);
+        toInvalidate.invalidate();
+        nodeB.commit(toInvalidate);
+        assertThat(nodeA.find(id, servletContext)).isNull();
+    }
+
+    @Test
+    void expiredSessionIsNotReturned() {
+        StoreBackedSession created = nodeA.create(servletContext);
+        created.setMaxInactiveInterval(1);
+        created.setAttribute("a", "a");
+        nodeA.commit(created);
+        String id = created.getId();
+
+        jdbcTemplate.update("UPDATE http_sessions SET last_access_time = last_access_time - 5000 WHERE session_id = ?", id);
+
+        assertThat(nodeA.find(id, servletContext)).isNull();
+        assertThat(nodeB.find(id, servletContext)).isNull();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
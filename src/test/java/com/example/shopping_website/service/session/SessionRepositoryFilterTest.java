@@ -0,0 +1,115 @@
+package com.example.shopping_website.service.session;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 会话在响应提交之前写回：响应体写满缓冲区、达到 Content-Length 或刷新输出流时（内嵌 H2，MySQL 兼容模式）
+ */
+@JdbcTest(properties = "app.session.store=jdbc")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({JdbcSessionStore.class, SessionRepository.class})
+class SessionRepositoryFilterTest {
+
+    @Autowired
+    private JdbcSessionStore store;
+
+    // 单独的会话仓库实例：与 JdbcSessionStoreTest 共用测试上下文，不影响其中按统计值的断言
+    private SessionRepository sessionRepository;
+
+    @BeforeEach
+    void startRepository() {
+        sessionRepository = new SessionRepository();
+        ReflectionTestUtils.setField(sessionRepository, "sessionStore", store);
+        ReflectionTestUtils.setField(sessionRepository, "cookieName", "SESSION");
+        ReflectionTestUtils.setField(sessionRepository, "timeoutSeconds", 1800);
+        ReflectionTestUtils.setField(sessionRepository, "touchIntervalSeconds", 60L);
+        ReflectionTestUtils.setField(sessionRepository, "cleanupIntervalSeconds", 3600L);
+        ReflectionTestUtils.setField(sessionRepository, "nearCacheMaxEntries", 100);
+        ReflectionTestUtils.setField(sessionRepository, "nearCacheMaxBytes", 1024L * 1024);
+        sessionRepository.start();
+    }
+
+    @AfterEach
+    void stopRepository() {
+        sessionRepository.stop();
+    }
+
+    @Test
+    void sessionIsSavedBeforeBufferOverflowCommitsResponse() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setBufferSize(16);
+        AtomicReference<String> savedBeforeChainEnded = new AtomicReference<>();
+
+        new SessionRepositoryFilter(sessionRepository).doFilter(new MockHttpServletRequest(), response, (req, res) -> {
+            HttpSession session = ((HttpServletRequest) req).getSession();
+            session.setAttribute("cart", "3 items");
+            res.getOutputStream().write(new byte[64]);
+            // 容器已经把响应发给客户端，此时会话必须已经保存
+            assertThat(res.isCommitted()).isTrue();
+            StoredSession stored = store.find(session.getId());
+            savedBeforeChainEnded.set(stored != null ? session.getId() : null);
+        });
+
+        assertThat(savedBeforeChainEnded.get()).isNotNull();
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE)).contains(savedBeforeChainEnded.get());
+    }
+
+    @Test
+    void sessionIsSavedBeforeContentLengthIsReached() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<StoredSession> stored = new AtomicReference<>();
+
+        new SessionRepositoryFilter(sessionRepository).doFilter(new MockHttpServletRequest(), response, (req, res) -> {
+            HttpSession session = ((HttpServletRequest) req).getSession();
+            session.setAttribute("flash", "saved");
+            byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+            res.setContentLength(body.length);
+            res.getWriter().write("hello");
+            stored.set(store.find(session.getId()));
+        });
+
+        assertThat(stored.get()).isNotNull();
+        assertThat(stored.get().getAttributes()).containsKey("flash");
+    }
+
+    @Test
+    void logoutCookieIsWrittenBeforeWriterFlush() throws Exception {
+        StoreBackedSession existing = sessionRepository.create(new MockHttpServletRequest().getServletContext());
+        existing.setAttribute("user", "alice");
+        sessionRepository.commit(existing);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(sessionRepository.getCookieName(), existing.getId()));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new SessionRepositoryFilter(sessionRepository).doFilter(request, response, (req, res) -> {
+            ((HttpServletRequest) req).getSession().invalidate();
+            res.getWriter().print("bye");
+            res.getWriter().flush();
+            assertThat(store.findHeader(existing.getId())).isNull();
+        });
+
+        // 刷新后响应已提交，清除 Cookie 的响应头必须在这之前写入
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE)).contains("Max-Age=0");
+    }
+}